@@ -0,0 +1,155 @@
+package com.chatbot.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    @Value("${chat.context.pool-size:16}")
+    private int contextPoolSize;
+
+    @Value("${chat.context.queue-capacity:200}")
+    private int contextQueueCapacity;
+
+    @Value("${chat.stream.pool-size:32}")
+    private int streamPoolSize;
+
+    @Value("${chat.stream.queue-capacity:100}")
+    private int streamQueueCapacity;
+
+    @Value("${rag.embedding-batch.pool-size:4}")
+    private int embeddingBatchPoolSize;
+
+    @Value("${rag.embedding-batch.executor-queue-capacity:16}")
+    private int embeddingBatchQueueCapacity;
+
+    @Value("${rag.ingestion.parallelism:2}")
+    private int ingestionParallelism;
+
+    @Value("${rag.ingestion.queue-capacity:16}")
+    private int ingestionQueueCapacity;
+
+    @Value("${rag.retrieval.shadow-queue-capacity:50}")
+    private int shadowQueueCapacity;
+
+    /**
+     * Bounded executor for the independent context stages of a chat message
+     * (knowledge base retrieval and order lookups). When the queue is full the
+     * stage is rejected and the request continues without that context, so a
+     * saturated pool never ties up request threads.
+     * @return Executor for chat context retrieval
+     */
+    @Bean(name = "chatContextExecutor")
+    public ThreadPoolTaskExecutor chatContextExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(contextPoolSize);
+        executor.setMaxPoolSize(contextPoolSize);
+        executor.setQueueCapacity(contextQueueCapacity);
+        executor.setThreadNamePrefix("chat-context-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Bounded executor that drives streamed chat replies. Each task holds a
+     * thread for the lifetime of one completion stream; when both pool and
+     * queue are full new streams are rejected rather than piling up.
+     * @return Executor for streaming chat replies
+     */
+    @Bean(name = "chatStreamExecutor")
+    public ThreadPoolTaskExecutor chatStreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(streamPoolSize);
+        executor.setMaxPoolSize(streamPoolSize);
+        executor.setQueueCapacity(streamQueueCapacity);
+        executor.setThreadNamePrefix("chat-stream-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Bounded executor that sends batched embedding requests, so the next batch
+     * can be collected while earlier ones are in flight. When it is saturated or shut
+     * down it rejects the batch, and the batcher thread sends it itself, which slows
+     * down batch collection.
+     * @return Executor for embedding batches
+     */
+    @Bean(name = "embeddingBatchExecutor")
+    public ThreadPoolTaskExecutor embeddingBatchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(embeddingBatchPoolSize);
+        executor.setMaxPoolSize(embeddingBatchPoolSize);
+        executor.setQueueCapacity(embeddingBatchQueueCapacity);
+        executor.setThreadNamePrefix("embedding-batch-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor for knowledge base ingestion batches; its pool size bounds the
+     * number of document batches being embedded and stored at the same time.
+     * Batches beyond the bounded queue run on the ingestion coordinator thread,
+     * which stops it from queuing more until the pool catches up.
+     * @return Executor for knowledge base ingestion
+     */
+    @Bean(name = "knowledgeBaseIngestionExecutor")
+    public ThreadPoolTaskExecutor knowledgeBaseIngestionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(ingestionParallelism);
+        executor.setMaxPoolSize(ingestionParallelism);
+        executor.setQueueCapacity(ingestionQueueCapacity);
+        executor.setThreadNamePrefix("kb-ingestion-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Single-threaded executor for shadow retrieval comparisons. Comparisons are
+     * dropped when it falls behind, so they never slow down chat requests.
+     * @return Executor for shadow retrieval
+     */
+    @Bean(name = "retrievalShadowExecutor")
+    public ThreadPoolTaskExecutor retrievalShadowExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(shadowQueueCapacity);
+        executor.setThreadNamePrefix("retrieval-shadow-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Scheduler that closes WebSocket chat connections when their JWT expires.
+     * The tasks only close sessions, so one thread is enough.
+     * @return Scheduler for WebSocket session expiry
+     */
+    @Bean(name = "webSocketExpiryScheduler")
+    public ThreadPoolTaskScheduler webSocketExpiryScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("ws-expiry-");
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.initialize();
+        return scheduler;
+    }
+}
@@ -0,0 +1,48 @@
+package com.chatbot.config;
+
+import com.chatbot.service.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CircuitBreakerConfig {
+    
+    @Value("${resilience.circuit-breaker.failure-rate-threshold:50}")
+    private double failureRateThreshold;
+    
+    @Value("${resilience.circuit-breaker.minimum-calls:10}")
+    private int minimumCalls;
+    
+    @Value("${resilience.circuit-breaker.window-size:20}")
+    private int windowSize;
+    
+    @Value("${resilience.circuit-breaker.open-duration-ms:30000}")
+    private long openDurationMs;
+    
+    @Value("${resilience.circuit-breaker.half-open-probes:3}")
+    private int halfOpenProbes;
+    
+    /**
+     * Circuit breaker around chat completion calls
+     * @param meterRegistry Registry for breaker metrics
+     * @return Completion circuit breaker
+     */
+    @Bean(name = "completionCircuitBreaker")
+    public CircuitBreaker completionCircuitBreaker(MeterRegistry meterRegistry) {
+        return new CircuitBreaker("completion", failureRateThreshold, minimumCalls, windowSize,
+            openDurationMs, halfOpenProbes, meterRegistry);
+    }
+    
+    /**
+     * Circuit breaker around embedding calls
+     * @param meterRegistry Registry for breaker metrics
+     * @return Embedding circuit breaker
+     */
+    @Bean(name = "embeddingCircuitBreaker")
+    public CircuitBreaker embeddingCircuitBreaker(MeterRegistry meterRegistry) {
+        return new CircuitBreaker("embedding", failureRateThreshold, minimumCalls, windowSize,
+            openDurationMs, halfOpenProbes, meterRegistry);
+    }
+}
@@ -0,0 +1,29 @@
+package com.chatbot.config;
+
+import com.chatbot.service.KnowledgeBaseIngestionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports knowledge base ingestion progress under the knowledgeBase health component.
+ * Only a finished ingestion reports UP; while it is warming up the status is UNKNOWN,
+ * which does not take the application out of service since order queries work without it.
+ */
+@Component("knowledgeBase")
+public class KnowledgeBaseHealthIndicator implements HealthIndicator {
+    
+    @Autowired
+    private KnowledgeBaseIngestionService ingestionService;
+    
+    @Override
+    public Health health() {
+        Health.Builder builder = ingestionService.isReady() ? Health.up() : Health.unknown();
+        return builder
+            .withDetail("state", ingestionService.getState())
+            .withDetail("loadedDocuments", ingestionService.getLoadedDocuments())
+            .withDetail("failedDocuments", ingestionService.getFailedDocuments())
+            .build();
+    }
+}
@@ -1,33 +1,33 @@
 package com.chatbot.config;
 
-import com.chatbot.service.RagService;
+import com.chatbot.service.KnowledgeBaseIngestionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 @Component
+@ConditionalOnProperty(name = "rag.ingestion.enabled", havingValue = "true", matchIfMissing = true)
 public class KnowledgeBaseInitializer implements CommandLineRunner {
     
     private static final Logger logger = LoggerFactory.getLogger(KnowledgeBaseInitializer.class);
     
     @Autowired
-    private RagService ragService;
+    private KnowledgeBaseIngestionService ingestionService;
     
     @Override
     public void run(String... args) throws Exception {
         try {
-            logger.info("Starting knowledge base initialization...");
+            // Ingest in the background so startup does not wait for the embedding calls
+            ingestionService.start();
             
-            // Initialize knowledge base with documents from resources
-            ragService.initializeKnowledgeBase();
-            
-            logger.info("Knowledge base initialization completed successfully");
+            logger.info("Knowledge base ingestion started in the background");
             
         } catch (Exception e) {
-            logger.error("Error initializing knowledge base", e);
+            logger.error("Error starting knowledge base ingestion", e);
             // Don't fail the application startup, just log the error
         }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.chatbot.config;
+
+import com.chatbot.service.MessageFeatureExtractor;
+import com.chatbot.service.MessageSignal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+public class MessageFeatureConfig {
+    
+    @Value("${chat.features.keywords.order:}")
+    private List<String> orderKeywords;
+    
+    @Value("${chat.features.keywords.status-question:}")
+    private List<String> statusQuestionKeywords;
+    
+    @Value("${chat.features.keywords.history:}")
+    private List<String> historyKeywords;
+    
+    @Value("${chat.features.keywords.all-orders:}")
+    private List<String> allOrdersKeywords;
+    
+    @Value("${chat.features.keywords.tracking:}")
+    private List<String> trackingKeywords;
+    
+    @Value("${chat.features.keywords.help:}")
+    private List<String> helpKeywords;
+    
+    @Value("${chat.features.keywords.recency:}")
+    private List<String> recencyKeywords;
+    
+    @Value("${chat.features.keywords.follow-up:}")
+    private List<String> followUpKeywords;
+    
+    @Value("${chat.features.status-keywords:shipped,processing,delivered,cancelled}")
+    private List<String> statusKeywords;
+    
+    /**
+     * Message feature extractor with the built-in keywords of each signal plus
+     * any keywords added under chat.features.keywords
+     * @return Compiled feature extractor
+     */
+    @Bean
+    public MessageFeatureExtractor messageFeatureExtractor() {
+        Map<MessageSignal, List<String>> extraKeywords = new EnumMap<>(MessageSignal.class);
+        extraKeywords.put(MessageSignal.ORDER, orderKeywords);
+        extraKeywords.put(MessageSignal.STATUS_QUESTION, statusQuestionKeywords);
+        extraKeywords.put(MessageSignal.HISTORY, historyKeywords);
+        extraKeywords.put(MessageSignal.ALL_ORDERS, allOrdersKeywords);
+        extraKeywords.put(MessageSignal.TRACKING, trackingKeywords);
+        extraKeywords.put(MessageSignal.HELP, helpKeywords);
+        extraKeywords.put(MessageSignal.RECENCY, recencyKeywords);
+        extraKeywords.put(MessageSignal.FOLLOW_UP, followUpKeywords);
+        return new MessageFeatureExtractor(extraKeywords, statusKeywords);
+    }
+}
@@ -2,19 +2,24 @@ package com.chatbot.config;
 
 import com.theokanning.openai.service.OpenAiService;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
 
 @Configuration
+@ConditionalOnProperty(name = "llm.provider", havingValue = "openai", matchIfMissing = true)
 public class OpenAiConfig {
     
     @Value("${openai.api-key}")
     private String apiKey;
     
+    @Value("${openai.timeout-seconds:30}")
+    private long timeoutSeconds;
+    
     @Bean
     public OpenAiService openAiService() {
-        return new OpenAiService(apiKey, Duration.ofSeconds(30));
+        return new OpenAiService(apiKey, Duration.ofSeconds(timeoutSeconds));
     }
 } 
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.chatbot.config;
+
+import com.chatbot.service.IntentCategoryRouter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+public class RetrievalRoutingConfig {
+    
+    @Value("${rag.routing.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${rag.routing.categories.order-status-inquiry:order-management,fulfillment}")
+    private List<String> orderStatusCategories;
+    
+    @Value("${rag.routing.categories.order-history:order-management}")
+    private List<String> orderHistoryCategories;
+    
+    @Value("${rag.routing.categories.tracking-info:shipping,fulfillment}")
+    private List<String> trackingCategories;
+    
+    @Value("${rag.routing.categories.general-inquiry:}")
+    private List<String> generalCategories;
+    
+    /**
+     * Intent router with the categories configured under rag.routing.categories;
+     * routes nothing when rag.routing.enabled is false
+     * @return Intent to category router
+     */
+    @Bean
+    public IntentCategoryRouter intentCategoryRouter() {
+        Map<String, List<String>> categoriesByIntent = new HashMap<>();
+        if (enabled) {
+            categoriesByIntent.put("ORDER_STATUS_INQUIRY", orderStatusCategories);
+            categoriesByIntent.put("ORDER_HISTORY", orderHistoryCategories);
+            categoriesByIntent.put("TRACKING_INFO", trackingCategories);
+            categoriesByIntent.put("GENERAL_INQUIRY", generalCategories);
+        }
+        return new IntentCategoryRouter(categoriesByIntent);
+    }
+}
@@ -0,0 +1,31 @@
+package com.chatbot.config;
+
+import com.chatbot.websocket.ChatWebSocketHandler;
+import com.chatbot.websocket.JwtHandshakeInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+    
+    @Autowired
+    private ChatWebSocketHandler chatWebSocketHandler;
+    
+    @Autowired
+    private JwtHandshakeInterceptor jwtHandshakeInterceptor;
+    
+    @Value("${cors.allowed-origins:http://localhost:3000}")
+    private String allowedOrigins;
+    
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(chatWebSocketHandler, "/ws/chat")
+            .addInterceptors(jwtHandshakeInterceptor)
+            .setAllowedOriginPatterns(allowedOrigins.split(","));
+    }
+}
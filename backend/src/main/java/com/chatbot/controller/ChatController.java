@@ -3,6 +3,7 @@ package com.chatbot.controller;
 import com.chatbot.dto.ChatRequest;
 import com.chatbot.dto.ChatResponse;
 import com.chatbot.service.ChatService;
+import com.chatbot.service.ChatStreamListener;
 import io.github.bucket4j.Bucket;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -13,11 +14,20 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -31,6 +41,13 @@ public class ChatController {
     @Qualifier("chatRateLimiter")
     private Bucket rateLimiter;
 
+    @Autowired
+    @Qualifier("chatStreamExecutor")
+    private TaskExecutor chatStreamExecutor;
+    
+    @Value("${chat.stream.timeout-ms:60000}")
+    private long streamTimeoutMs;
+    
     @PostMapping("/message")
     @Operation(
         summary = "Send Chat Message",
@@ -158,6 +175,82 @@ public class ChatController {
         }
     }
 
+    @PostMapping("/stream")
+    @Operation(
+        summary = "Stream Chat Message",
+        description = "Send a message to the AI chatbot and receive the reply as Server-Sent Events. " +
+                      "Each 'token' event carries a fragment of the reply as it is generated; a final 'done' event " +
+                      "carries the complete ChatResponse with intent and confidence."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Reply stream started",
+            content = @Content(
+                mediaType = "text/event-stream",
+                examples = @ExampleObject(
+                    name = "Streamed Chat Response",
+                    value = """
+                    event:token
+                    data:{"content":"I can help"}
+                    
+                    event:token
+                    data:{"content":" you check your order status."}
+                    
+                    event:done
+                    data:{"message":"I can help you check your order status.","intent":"ORDER_STATUS_INQUIRY","confidence":0.95,"timestamp":"2024-01-20T10:30:00"}
+                    """
+                )
+            )
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Bad request - Invalid message format or content"
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "Unauthorized - Invalid or missing authentication token"
+        ),
+        @ApiResponse(
+            responseCode = "429",
+            description = "Too Many Requests - Rate limit exceeded"
+        ),
+        @ApiResponse(
+            responseCode = "503",
+            description = "Service Unavailable - Too many concurrent streams"
+        )
+    })
+    public ResponseEntity<SseEmitter> streamMessage(
+        @RequestBody ChatRequest chatRequest,
+        Authentication authentication
+    ) {
+        // Check rate limit
+        if (!rateLimiter.tryConsume(1)) {
+            return ResponseEntity.status(429).body(errorEmitter(
+                "Rate limit exceeded. Please wait a moment before sending another message.", 429));
+        }
+        
+        // Validate request
+        if (chatRequest.getMessage() == null || chatRequest.getMessage().trim().isEmpty()) {
+            return ResponseEntity.badRequest().body(errorEmitter("Message cannot be empty", 400));
+        }
+        
+        // Get customer ID from authentication
+        String customerEmail = authentication.getName();
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        SseChatStreamListener listener = new SseChatStreamListener(emitter);
+        
+        try {
+            chatStreamExecutor.execute(() -> chatService.streamMessage(
+                chatRequest.getMessage(), customerEmail, listener));
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(503).body(errorEmitter(
+                "I'm having trouble processing your request right now. Please try again in a moment.", 503));
+        }
+        
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
+    }
+    
     @GetMapping("/health")
     @Operation(
         summary = "Chat Service Health Check",
@@ -189,4 +282,84 @@ public class ChatController {
         );
         return ResponseEntity.ok(response);
     }
+    
+    /**
+     * Create an emitter that sends a single error event and completes
+     * @param error Error message
+     * @param status HTTP status code
+     * @return Completed SseEmitter
+     */
+    private SseEmitter errorEmitter(String error, int status) {
+        SseEmitter emitter = new SseEmitter();
+        try {
+            emitter.send(SseEmitter.event()
+                .name("error")
+                .data(Map.of(
+                    "error", error,
+                    "timestamp", java.time.LocalDateTime.now().toString(),
+                    "status", status
+                ), MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+    
+    /**
+     * Forwards streamed chat replies to an SSE connection. Once the emitter has timed out,
+     * failed or completed, the client is no longer listening: further tokens throw, which
+     * aborts the upstream completion stream, and the final event is dropped.
+     */
+    private static class SseChatStreamListener implements ChatStreamListener {
+        
+        private final SseEmitter emitter;
+        
+        private final AtomicBoolean closed = new AtomicBoolean();
+        
+        SseChatStreamListener(SseEmitter emitter) {
+            this.emitter = emitter;
+            emitter.onTimeout(() -> {
+                closed.set(true);
+                emitter.complete();
+            });
+            emitter.onError(e -> closed.set(true));
+            emitter.onCompletion(() -> closed.set(true));
+        }
+        
+        @Override
+        public boolean isCancelled() {
+            return closed.get();
+        }
+        
+        @Override
+        public void onToken(String token) {
+            if (closed.get()) {
+                throw new CancellationException("Client is no longer listening");
+            }
+            try {
+                emitter.send(SseEmitter.event()
+                    .name("token")
+                    .data(Map.of("content", token), MediaType.APPLICATION_JSON));
+            } catch (IOException e) {
+                // Client went away - abort the upstream completion stream
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        @Override
+        public void onComplete(ChatResponse response) {
+            if (closed.get()) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event()
+                    .name("done")
+                    .data(response, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
 } 
\ No newline at end of file
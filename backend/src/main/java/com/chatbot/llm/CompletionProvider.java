@@ -0,0 +1,26 @@
+package com.chatbot.llm;
+
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+
+import java.util.function.Consumer;
+
+/**
+ * Source of chat completions used by the chat pipeline.
+ */
+public interface CompletionProvider {
+    
+    /**
+     * Generate a complete reply
+     * @param request Chat completion request
+     * @return Content of the reply
+     */
+    String complete(ChatCompletionRequest request);
+    
+    /**
+     * Generate a reply and pass each fragment to the consumer as it is produced.
+     * Blocks until the reply is complete; an exception thrown by the consumer aborts the stream.
+     * @param request Chat completion request
+     * @param onDelta Receives reply fragments in order
+     */
+    void stream(ChatCompletionRequest request, Consumer<String> onDelta);
+}
@@ -0,0 +1,33 @@
+package com.chatbot.llm;
+
+import java.util.List;
+
+/**
+ * Source of text embeddings used for knowledge base retrieval.
+ */
+public interface EmbeddingProvider {
+    
+    /**
+     * Embed several texts in one call
+     * @param texts Texts to embed
+     * @return One embedding vector per text, in the same order
+     */
+    List<float[]> embed(List<String> texts);
+    
+    /**
+     * Identifier of the embedding model; vectors from different models are not comparable
+     * @return Model identifier
+     */
+    String getModel();
+    
+    /**
+     * Thrown when the provider refuses a request because of its input, such as a
+     * text over the model's token limit; the same texts sent again fail again
+     */
+    class InvalidInputException extends RuntimeException {
+        
+        public InvalidInputException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.chatbot.llm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Local embedding model based on feature hashing; no network calls and no model files.
+ *
+ * Each word of at least two letters or digits contributes itself as a unigram and its
+ * character trigrams, taken with boundary markers so "#ship#" yields "#sh", "shi",
+ * "hip" and "ip#". Every feature is hashed into one of a fixed number of dimensions with
+ * a hash-derived sign, so colliding features tend to cancel instead of adding up, and
+ * the vector is L2-normalized. Texts sharing words, or only word stems and misspelled
+ * variants through their trigrams, are close under cosine similarity. A text embeds in
+ * microseconds, and vectors only depend on the text and the dimensions.
+ */
+public final class HashedNgramEmbedder implements EmbeddingProvider {
+    
+    private static final float WORD_WEIGHT = 1.0f;
+    
+    // A word has several trigrams; together they should not outweigh the word itself
+    private static final float TRIGRAM_WEIGHT = 0.35f;
+    
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "and", "are", "as", "at", "be", "by", "can", "do", "does", "for", "from",
+        "how", "i", "if", "in", "is", "it", "me", "my", "of", "on", "or", "our", "so", "that",
+        "the", "this", "to", "was", "we", "what", "when", "where", "which", "will", "with",
+        "you", "your");
+    
+    private final int dimensions;
+    
+    /**
+     * Create an embedder producing vectors of a fixed length
+     * @param dimensions Length of the embedding vectors
+     */
+    public HashedNgramEmbedder(int dimensions) {
+        if (dimensions < 1) {
+            throw new IllegalArgumentException("Embedding dimensions must be positive");
+        }
+        this.dimensions = dimensions;
+    }
+    
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embed(text));
+        }
+        return vectors;
+    }
+    
+    /**
+     * Whether a word is too common in questions to say anything about their topic
+     * @param word Lower-case word
+     * @return true for stop words
+     */
+    public static boolean isStopWord(String word) {
+        return STOP_WORDS.contains(word);
+    }
+    
+    @Override
+    public String getModel() {
+        return "hashed-ngram-" + dimensions;
+    }
+    
+    /**
+     * Embed one text
+     * @param text Text to embed, may be null
+     * @return Unit vector, or the zero vector if the text has no features
+     */
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        if (text == null) {
+            return vector;
+        }
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^a-z0-9]+")) {
+            if (word.length() < 2 || STOP_WORDS.contains(word)) {
+                continue;
+            }
+            add(vector, hash(word, 0, word.length(), 0x9E3779B97F4A7C15L), WORD_WEIGHT);
+            String marked = "#" + word + "#";
+            for (int i = 0; i + 3 <= marked.length(); i++) {
+                add(vector, hash(marked, i, i + 3, 0xC2B2AE3D27D4EB4FL), TRIGRAM_WEIGHT);
+            }
+        }
+        
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < dimensions; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+    
+    private void add(float[] vector, long hash, float weight) {
+        // Low bit picks the sign, the remaining bits the dimension
+        int index = (int) Math.floorMod(hash >>> 1, (long) dimensions);
+        vector[index] += (hash & 1) == 0 ? weight : -weight;
+    }
+    
+    /**
+     * FNV-1a over a range of characters, seeded per feature type so that a word and an
+     * identical trigram land in different dimensions, with a final avalanche step
+     */
+    private static long hash(String text, int from, int to, long seed) {
+        long hash = 0xCBF29CE484222325L ^ seed;
+        for (int i = from; i < to; i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
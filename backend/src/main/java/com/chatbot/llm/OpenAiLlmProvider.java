@@ -0,0 +1,88 @@
+package com.chatbot.llm;
+
+import com.theokanning.openai.OpenAiHttpException;
+import com.theokanning.openai.completion.chat.ChatCompletionChoice;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.embedding.Embedding;
+import com.theokanning.openai.embedding.EmbeddingRequest;
+import com.theokanning.openai.embedding.EmbeddingResult;
+import com.theokanning.openai.service.OpenAiService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Completion and embedding provider backed by the OpenAI API.
+ * Used unless llm.provider selects another implementation.
+ */
+@Component
+@ConditionalOnProperty(name = "llm.provider", havingValue = "openai", matchIfMissing = true)
+public class OpenAiLlmProvider implements CompletionProvider, EmbeddingProvider {
+    
+    @Autowired
+    private OpenAiService openAiService;
+    
+    @Value("${openai.embedding-model:text-embedding-ada-002}")
+    private String embeddingModel;
+    
+    @Override
+    public String complete(ChatCompletionRequest request) {
+        return openAiService.createChatCompletion(request).getChoices().get(0).getMessage().getContent();
+    }
+    
+    @Override
+    public void stream(ChatCompletionRequest request, Consumer<String> onDelta) {
+        openAiService.streamChatCompletion(request).blockingForEach(chunk -> {
+            for (ChatCompletionChoice choice : chunk.getChoices()) {
+                String delta = choice.getMessage() != null ? choice.getMessage().getContent() : null;
+                if (delta != null && !delta.isEmpty()) {
+                    onDelta.accept(delta);
+                }
+            }
+        });
+    }
+    
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        EmbeddingRequest request = EmbeddingRequest.builder()
+            .model(embeddingModel)
+            .input(texts)
+            .build();
+        
+        EmbeddingResult result;
+        try {
+            result = openAiService.createEmbeddings(request);
+        } catch (OpenAiHttpException e) {
+            if (e.statusCode == 400) {
+                throw new InvalidInputException(e.getMessage(), e);
+            }
+            throw e;
+        }
+        
+        // Results carry the index of their input and are not guaranteed to be in order
+        List<Embedding> data = new ArrayList<>(result.getData());
+        data.sort(Comparator.comparing(Embedding::getIndex, Comparator.nullsLast(Comparator.naturalOrder())));
+        
+        List<float[]> vectors = new ArrayList<>(data.size());
+        for (Embedding embedding : data) {
+            List<Double> values = embedding.getEmbedding();
+            float[] vector = new float[values.size()];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = values.get(i).floatValue();
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+    
+    @Override
+    public String getModel() {
+        return embeddingModel;
+    }
+}
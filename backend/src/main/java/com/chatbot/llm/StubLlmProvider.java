@@ -0,0 +1,219 @@
+package com.chatbot.llm;
+
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * In-process completion and embedding provider for offline load testing and profiling.
+ * Enabled with llm.provider=stub; no network calls are made and no API key is needed.
+ *
+ * Replies and embeddings are deterministic functions of their input: the reply is
+ * assembled from canned sentences chosen by a hash of the last user message, and each
+ * word of a text adds a fixed pseudo-random direction to its embedding, so texts that
+ * share words are similar under cosine distance. Latency is sampled per call from a
+ * constant, uniform or log-normal distribution, and a configurable share of calls fails.
+ */
+@Component
+@ConditionalOnProperty(name = "llm.provider", havingValue = "stub")
+public class StubLlmProvider implements CompletionProvider, EmbeddingProvider {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StubLlmProvider.class);
+    
+    private static final String[] REPLY_SENTENCES = {
+        "You can check the status of any order by sharing its order number, for example ORD-001.",
+        "Orders usually move from processing to shipped within one or two business days.",
+        "Tracking details become available as soon as the carrier picks up the package.",
+        "Standard shipping takes five to seven business days after the order has shipped.",
+        "If anything looks wrong with an order, our support team is happy to help.",
+        "You can see all of your past orders in your order history at any time."
+    };
+    
+    public enum LatencyDistribution {
+        CONSTANT, UNIFORM, LOGNORMAL
+    }
+    
+    @Value("${llm.stub.latency-distribution:LOGNORMAL}")
+    private LatencyDistribution latencyDistribution;
+    
+    @Value("${llm.stub.completion-latency-ms:800}")
+    private double completionLatencyMs;
+    
+    @Value("${llm.stub.completion-latency-spread-ms:400}")
+    private double completionLatencySpreadMs;
+    
+    @Value("${llm.stub.embedding-latency-ms:40}")
+    private double embeddingLatencyMs;
+    
+    @Value("${llm.stub.embedding-latency-spread-ms:20}")
+    private double embeddingLatencySpreadMs;
+    
+    @Value("${llm.stub.stream-chunk-delay-ms:15}")
+    private long streamChunkDelayMs;
+    
+    @Value("${llm.stub.reply-words:60}")
+    private int replyWords;
+    
+    @Value("${llm.stub.error-rate:0.0}")
+    private double errorRate;
+    
+    @Value("${llm.stub.embedding-dimensions:1536}")
+    private int embeddingDimensions;
+    
+    @Override
+    public String complete(ChatCompletionRequest request) {
+        maybeFail("completion");
+        sleep(sampleLatency(completionLatencyMs, completionLatencySpreadMs));
+        return String.join(" ", replyWords(request));
+    }
+    
+    /**
+     * Sends the reply word by word: the first word after the sampled completion
+     * latency, then one word per stream-chunk-delay-ms
+     */
+    @Override
+    public void stream(ChatCompletionRequest request, Consumer<String> onDelta) {
+        maybeFail("completion");
+        sleep(sampleLatency(completionLatencyMs, completionLatencySpreadMs));
+        List<String> words = replyWords(request);
+        for (int i = 0; i < words.size(); i++) {
+            if (i > 0) {
+                sleep(streamChunkDelayMs);
+            }
+            onDelta.accept(i == 0 ? words.get(i) : " " + words.get(i));
+        }
+    }
+    
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        maybeFail("embedding");
+        sleep(sampleLatency(embeddingLatencyMs, embeddingLatencySpreadMs));
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(pseudoEmbedding(text));
+        }
+        return vectors;
+    }
+    
+    @Override
+    public String getModel() {
+        return "stub-" + embeddingDimensions;
+    }
+    
+    /**
+     * Deterministic unit vector built from the words of a text
+     * @param text Text to embed
+     * @return Embedding vector
+     */
+    private float[] pseudoEmbedding(String text) {
+        float[] vector = new float[embeddingDimensions];
+        String[] words = text.toLowerCase(Locale.ROOT).split("[^a-z0-9]+");
+        boolean empty = true;
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                addDirection(vector, word.hashCode());
+                empty = false;
+            }
+        }
+        if (empty) {
+            addDirection(vector, text.hashCode());
+        }
+        
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+    
+    private static void addDirection(float[] vector, int seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] += (float) (random.nextDouble() * 2 - 1);
+        }
+    }
+    
+    /**
+     * Reply words chosen by a hash of the last user message, capped at the request's max tokens
+     * @param request Chat completion request
+     * @return Reply words
+     */
+    private List<String> replyWords(ChatCompletionRequest request) {
+        String userMessage = "";
+        for (ChatMessage message : request.getMessages()) {
+            if ("user".equals(message.getRole())) {
+                userMessage = message.getContent();
+            }
+        }
+        int limit = request.getMaxTokens() != null ? Math.min(replyWords, request.getMaxTokens()) : replyWords;
+        
+        SplittableRandom random = new SplittableRandom(userMessage.hashCode());
+        List<String> words = new ArrayList<>(limit);
+        while (words.size() < limit) {
+            for (String word : REPLY_SENTENCES[random.nextInt(REPLY_SENTENCES.length)].split(" ")) {
+                if (words.size() == limit) {
+                    break;
+                }
+                words.add(word);
+            }
+        }
+        return words;
+    }
+    
+    /**
+     * Sample a latency in milliseconds from the configured distribution
+     * @param meanMs Mean latency
+     * @param spreadMs Half-width for the uniform distribution, standard deviation for the log-normal one
+     * @return Latency in milliseconds, never negative
+     */
+    private long sampleLatency(double meanMs, double spreadMs) {
+        if (meanMs <= 0) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (latencyDistribution) {
+            case UNIFORM:
+                return Math.max(0, Math.round(meanMs - spreadMs + random.nextDouble() * 2 * spreadMs));
+            case LOGNORMAL:
+                double sigmaSquared = Math.log(1 + (spreadMs * spreadMs) / (meanMs * meanMs));
+                double mu = Math.log(meanMs) - sigmaSquared / 2;
+                return Math.round(Math.exp(mu + Math.sqrt(sigmaSquared) * random.nextGaussian()));
+            default:
+                return Math.round(meanMs);
+        }
+    }
+    
+    private void maybeFail(String operation) {
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            logger.debug("Injecting stub {} failure", operation);
+            throw new RuntimeException("Injected stub " + operation + " failure");
+        }
+    }
+    
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted during simulated latency", e);
+        }
+    }
+}
@@ -8,7 +8,8 @@ import java.time.LocalDateTime;
 public class Conversation {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "conversation_seq")
+    @SequenceGenerator(name = "conversation_seq", sequenceName = "conversations_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "customer_id", nullable = false)
@@ -29,6 +29,12 @@ public class KnowledgeBase {
     @Column(name = "embedding", columnDefinition = "TEXT")
     private String embedding; // Store as JSON string
     
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // SHA-256 of the embedded content
+    
+    @Column(name = "embedding_model", length = 100)
+    private String embeddingModel;
+    
     @Column(name = "created_date", nullable = false)
     private LocalDateTime createdDate;
     
@@ -106,6 +112,22 @@ public class KnowledgeBase {
         this.embedding = embedding;
     }
     
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    public String getEmbeddingModel() {
+        return embeddingModel;
+    }
+    
+    public void setEmbeddingModel(String embeddingModel) {
+        this.embeddingModel = embeddingModel;
+    }
+    
     public LocalDateTime getCreatedDate() {
         return createdDate;
     }
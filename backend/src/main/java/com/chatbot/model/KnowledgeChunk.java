@@ -0,0 +1,110 @@
+package com.chatbot.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "knowledge_chunk", indexes = @Index(name = "idx_knowledge_chunk_knowledge_base_id", columnList = "knowledge_base_id"))
+public class KnowledgeChunk {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "knowledge_base_id", nullable = false)
+    private Long knowledgeBaseId;
+    
+    @Column(name = "chunk_index", nullable = false)
+    private int chunkIndex; // Position of the chunk within its document
+    
+    @Column(name = "content", columnDefinition = "TEXT", nullable = false)
+    private String content;
+    
+    @Column(name = "embedding", columnDefinition = "TEXT")
+    private String embedding; // Store as JSON string
+    
+    @Column(name = "source_hash", length = 64)
+    private String sourceHash; // SHA-256 of the document content hash and chunking settings
+    
+    @Column(name = "embedding_model", length = 100)
+    private String embeddingModel;
+    
+    @Column(name = "created_date", nullable = false)
+    private LocalDateTime createdDate;
+    
+    // Default constructor
+    public KnowledgeChunk() {}
+    
+    // Constructor with fields
+    public KnowledgeChunk(Long knowledgeBaseId, int chunkIndex, String content) {
+        this.knowledgeBaseId = knowledgeBaseId;
+        this.chunkIndex = chunkIndex;
+        this.content = content;
+        this.createdDate = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getKnowledgeBaseId() {
+        return knowledgeBaseId;
+    }
+    
+    public void setKnowledgeBaseId(Long knowledgeBaseId) {
+        this.knowledgeBaseId = knowledgeBaseId;
+    }
+    
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+    
+    public void setChunkIndex(int chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+    
+    public String getContent() {
+        return content;
+    }
+    
+    public void setContent(String content) {
+        this.content = content;
+    }
+    
+    public String getEmbedding() {
+        return embedding;
+    }
+    
+    public void setEmbedding(String embedding) {
+        this.embedding = embedding;
+    }
+    
+    public String getSourceHash() {
+        return sourceHash;
+    }
+    
+    public void setSourceHash(String sourceHash) {
+        this.sourceHash = sourceHash;
+    }
+    
+    public String getEmbeddingModel() {
+        return embeddingModel;
+    }
+    
+    public void setEmbeddingModel(String embeddingModel) {
+        this.embeddingModel = embeddingModel;
+    }
+    
+    public LocalDateTime getCreatedDate() {
+        return createdDate;
+    }
+    
+    public void setCreatedDate(LocalDateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+}
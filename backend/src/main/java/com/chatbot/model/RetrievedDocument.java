@@ -0,0 +1,23 @@
+package com.chatbot.model;
+
+/**
+ * Knowledge base document returned by retrieval, with only the fields a prompt needs
+ * @param id Knowledge base entry ID
+ * @param title Document title
+ * @param content Document content
+ * @param category Document category
+ * @param similarity Relevance to the query from 0.0 to 1.0, higher is more relevant
+ */
+public record RetrievedDocument(Long id, String title, String content, String category, double similarity) {
+    
+    /**
+     * Retrieval result for a stored knowledge base entry
+     * @param document Knowledge base entry
+     * @param similarity Relevance to the query
+     * @return Retrieved document
+     */
+    public static RetrievedDocument of(KnowledgeBase document, double similarity) {
+        return new RetrievedDocument(document.getId(), document.getTitle(), document.getContent(),
+            document.getCategory(), similarity);
+    }
+}
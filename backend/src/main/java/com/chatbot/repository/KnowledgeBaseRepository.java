@@ -32,35 +32,4 @@ public interface KnowledgeBaseRepository extends JpaRepository<KnowledgeBase, Lo
      */
     @Query("SELECT kb FROM KnowledgeBase kb WHERE kb.tags LIKE %:tag%")
     List<KnowledgeBase> findByTag(@Param("tag") String tag);
-    
-    /**
-     * Vector similarity search using cosine similarity
-     * @param embedding Query embedding vector
-     * @param limit Maximum number of results
-     * @return List of similar knowledge base entries
-     */
-    @Query(value = "SELECT kb.id, kb.document_id, kb.title, kb.content, kb.category, kb.tags, kb.embedding, kb.created_date, kb.updated_date, " +
-                   "(kb.embedding_vector <=> json_to_vector(:embedding)) as similarity " +
-                   "FROM knowledge_base kb " +
-                   "WHERE kb.embedding_vector IS NOT NULL " +
-                   "ORDER BY kb.embedding_vector <=> json_to_vector(:embedding) " +
-                   "LIMIT :limit", nativeQuery = true)
-    List<Object[]> findSimilarDocuments(@Param("embedding") String embedding, @Param("limit") int limit);
-    
-    /**
-     * Vector similarity search with category filter
-     * @param embedding Query embedding vector
-     * @param category Category to filter by
-     * @param limit Maximum number of results
-     * @return List of similar knowledge base entries
-     */
-    @Query(value = "SELECT kb.id, kb.document_id, kb.title, kb.content, kb.category, kb.tags, kb.embedding, kb.created_date, kb.updated_date, " +
-                   "(kb.embedding_vector <=> json_to_vector(:embedding)) as similarity " +
-                   "FROM knowledge_base kb " +
-                   "WHERE kb.category = :category AND kb.embedding_vector IS NOT NULL " +
-                   "ORDER BY kb.embedding_vector <=> json_to_vector(:embedding) " +
-                   "LIMIT :limit", nativeQuery = true)
-    List<Object[]> findSimilarDocumentsByCategory(@Param("embedding") String embedding, 
-                                                @Param("category") String category, 
-                                                @Param("limit") int limit);
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,170 @@
+package com.chatbot.repository;
+
+import com.chatbot.model.RetrievedDocument;
+import com.pgvector.PGvector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * pgvector access to the knowledge base embedding_vector column.
+ *
+ * Query and stored vectors are bound as PGvector parameters, so PostgreSQL receives a
+ * typed vector value instead of a JSON string that has to be parsed by json_to_vector.
+ * Similarity queries return {@link RetrievedDocument} projections with only the columns
+ * needed to build a prompt, leaving out the TEXT embedding column, which is several
+ * times larger than the content itself.
+ */
+@Repository
+public class KnowledgeBaseVectorRepository {
+    
+    private static final String SIMILAR_DOCUMENTS_SQL =
+        "SELECT kb.id, kb.title, kb.content, kb.category, kb.embedding_vector <=> ? AS distance " +
+        "FROM knowledge_base kb " +
+        "WHERE kb.embedding_vector IS NOT NULL " +
+        "ORDER BY distance " +
+        "LIMIT ?";
+    
+    private static final String SIMILAR_DOCUMENTS_IN_CATEGORIES_SQL =
+        "SELECT kb.id, kb.title, kb.content, kb.category, kb.embedding_vector <=> ? AS distance " +
+        "FROM knowledge_base kb " +
+        "WHERE kb.category = ANY(?) AND kb.embedding_vector IS NOT NULL " +
+        "ORDER BY distance " +
+        "LIMIT ?";
+    
+    private static final String SIMILAR_CANDIDATES_SQL =
+        "SELECT kb.id, kb.title, kb.content, kb.category, kb.embedding_vector <=> ? AS distance " +
+        "FROM knowledge_base kb " +
+        "WHERE kb.id = ANY(?) AND kb.embedding_vector IS NOT NULL " +
+        "ORDER BY distance " +
+        "LIMIT ?";
+    
+    // Cosine distance ranges from 0 to 2; similarity is reported as 1 - distance, clamped at 0.
+    // Also maps chunk search rows, which carry the same columns
+    static final RowMapper<RetrievedDocument> RETRIEVED_DOCUMENT_MAPPER = (rs, rowNum) -> new RetrievedDocument(
+        rs.getLong("id"),
+        rs.getString("title"),
+        rs.getString("content"),
+        rs.getString("category"),
+        Math.max(0.0, 1.0 - rs.getDouble("distance")));
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Vector similarity search using cosine distance
+     * @param embedding Query embedding vector
+     * @param limit Maximum number of results
+     * @return Most similar knowledge base entries, closest first
+     */
+    public List<RetrievedDocument> findSimilarDocuments(float[] embedding, int limit) {
+        return jdbcTemplate.query(con -> {
+            PGvector.addVectorType(con);
+            PreparedStatement ps = con.prepareStatement(SIMILAR_DOCUMENTS_SQL);
+            ps.setObject(1, new PGvector(embedding));
+            ps.setInt(2, limit);
+            return ps;
+        }, RETRIEVED_DOCUMENT_MAPPER);
+    }
+    
+    /**
+     * Vector similarity search within some categories, in one query
+     * @param embedding Query embedding vector
+     * @param categories Categories to filter by
+     * @param limit Maximum number of results
+     * @return Most similar knowledge base entries in the categories, closest first
+     */
+    public List<RetrievedDocument> findSimilarDocumentsInCategories(float[] embedding, Collection<String> categories, int limit) {
+        return jdbcTemplate.query(con -> {
+            PGvector.addVectorType(con);
+            PreparedStatement ps = con.prepareStatement(SIMILAR_DOCUMENTS_IN_CATEGORIES_SQL);
+            ps.setObject(1, new PGvector(embedding));
+            ps.setArray(2, con.createArrayOf("varchar", categories.toArray()));
+            ps.setInt(3, limit);
+            return ps;
+        }, RETRIEVED_DOCUMENT_MAPPER);
+    }
+    
+    /**
+     * Vector similarity ranking of a given set of knowledge base entries
+     * @param embedding Query embedding vector
+     * @param ids Knowledge base IDs of the candidates
+     * @param limit Maximum number of results
+     * @return Most similar candidates, closest first
+     */
+    public List<RetrievedDocument> findSimilarDocumentsAmong(float[] embedding, Collection<Long> ids, int limit) {
+        return jdbcTemplate.query(con -> {
+            PGvector.addVectorType(con);
+            PreparedStatement ps = con.prepareStatement(SIMILAR_CANDIDATES_SQL);
+            ps.setObject(1, new PGvector(embedding));
+            ps.setArray(2, con.createArrayOf("bigint", ids.toArray()));
+            ps.setInt(3, limit);
+            return ps;
+        }, RETRIEVED_DOCUMENT_MAPPER);
+    }
+    
+    /**
+     * Retrieval fields of every knowledge base entry, without reading any embedding column
+     * @return All entries with a similarity of 0
+     */
+    public List<RetrievedDocument> findAllDocuments() {
+        return jdbcTemplate.query("SELECT id, title, content, category FROM knowledge_base",
+            (rs, rowNum) -> new RetrievedDocument(
+                rs.getLong("id"), rs.getString("title"), rs.getString("content"), rs.getString("category"), 0.0));
+    }
+    
+    /**
+     * ID, content hash and embedding model of every knowledge base entry, which change
+     * whenever an entry is added, removed or embedded again
+     * @return One "id/contentHash/model" value per entry, by ID
+     */
+    public List<String> findEmbeddingSources() {
+        return jdbcTemplate.query("SELECT id, content_hash, embedding_model FROM knowledge_base ORDER BY id",
+            (rs, rowNum) -> rs.getLong("id") + "/" + rs.getString("content_hash") + "/" + rs.getString("embedding_model"));
+    }
+    
+    /**
+     * Whether the knowledge base table has the embedding_vector column. init-rag.sql
+     * creates it in PostgreSQL; schemas generated from the entities, as on H2, lack it.
+     * @return true if vectors can be stored and searched in the database
+     */
+    public boolean hasVectorColumn() {
+        Integer columns = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM information_schema.columns " +
+            "WHERE LOWER(table_name) = 'knowledge_base' AND LOWER(column_name) = 'embedding_vector'",
+            Integer.class);
+        return columns != null && columns > 0;
+    }
+    
+    /**
+     * IDs of the knowledge base entries whose vector column is not populated
+     * @return Entry IDs
+     */
+    public Set<Long> findIdsWithoutVector() {
+        return new HashSet<>(jdbcTemplate.queryForList(
+            "SELECT id FROM knowledge_base WHERE embedding_vector IS NULL", Long.class));
+    }
+    
+    /**
+     * Store the vector of a knowledge base entry
+     * @param id Knowledge base entry ID
+     * @param embedding Embedding vector
+     * @return Number of rows updated
+     */
+    public int updateEmbeddingVector(Long id, float[] embedding) {
+        return jdbcTemplate.update(con -> {
+            PGvector.addVectorType(con);
+            PreparedStatement ps = con.prepareStatement("UPDATE knowledge_base SET embedding_vector = ? WHERE id = ?");
+            ps.setObject(1, new PGvector(embedding));
+            ps.setLong(2, id);
+            return ps;
+        });
+    }
+}
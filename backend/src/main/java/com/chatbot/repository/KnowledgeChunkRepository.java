@@ -0,0 +1,33 @@
+package com.chatbot.repository;
+
+import com.chatbot.model.KnowledgeChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface KnowledgeChunkRepository extends JpaRepository<KnowledgeChunk, Long> {
+    
+    /**
+     * Find the chunks of a knowledge base entry
+     * @param knowledgeBaseId Knowledge base entry ID
+     * @return Chunks in document order
+     */
+    List<KnowledgeChunk> findByKnowledgeBaseIdOrderByChunkIndex(Long knowledgeBaseId);
+    
+    /**
+     * Delete the chunks of several knowledge base entries
+     * @param knowledgeBaseIds Knowledge base entry IDs
+     * @return Number of chunks deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM KnowledgeChunk c WHERE c.knowledgeBaseId IN :knowledgeBaseIds")
+    int deleteByKnowledgeBaseIds(@Param("knowledgeBaseIds") Collection<Long> knowledgeBaseIds);
+}
@@ -0,0 +1,172 @@
+package com.chatbot.repository;
+
+import com.chatbot.model.RetrievedDocument;
+import com.pgvector.PGvector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * pgvector access to the knowledge_chunk embedding_vector column.
+ *
+ * Similarity queries rank chunks and join their parent knowledge base entry, returning
+ * {@link RetrievedDocument} projections with the entry ID, title and category and the
+ * chunk text as content, so callers treat chunks like small documents.
+ */
+@Repository
+public class KnowledgeChunkVectorRepository {
+    
+    private static final String SIMILAR_CHUNKS_SQL =
+        "SELECT kb.id, kb.title, c.content, kb.category, c.embedding_vector <=> ? AS distance " +
+        "FROM knowledge_chunk c JOIN knowledge_base kb ON kb.id = c.knowledge_base_id " +
+        "WHERE c.embedding_vector IS NOT NULL " +
+        "ORDER BY distance " +
+        "LIMIT ?";
+    
+    private static final String SIMILAR_CHUNKS_IN_CATEGORIES_SQL =
+        "SELECT kb.id, kb.title, c.content, kb.category, c.embedding_vector <=> ? AS distance " +
+        "FROM knowledge_chunk c JOIN knowledge_base kb ON kb.id = c.knowledge_base_id " +
+        "WHERE kb.category = ANY(?) AND c.embedding_vector IS NOT NULL " +
+        "ORDER BY distance " +
+        "LIMIT ?";
+    
+    private static final String SIMILAR_CANDIDATE_CHUNKS_SQL =
+        "SELECT kb.id, kb.title, c.content, kb.category, c.embedding_vector <=> ? AS distance " +
+        "FROM knowledge_chunk c JOIN knowledge_base kb ON kb.id = c.knowledge_base_id " +
+        "WHERE c.knowledge_base_id = ANY(?) AND c.embedding_vector IS NOT NULL " +
+        "ORDER BY distance " +
+        "LIMIT ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Chunk similarity search using cosine distance
+     * @param embedding Query embedding vector
+     * @param limit Maximum number of results
+     * @return Most similar chunks with their entry's fields, closest first
+     */
+    public List<RetrievedDocument> findSimilarChunks(float[] embedding, int limit) {
+        return jdbcTemplate.query(con -> {
+            PGvector.addVectorType(con);
+            PreparedStatement ps = con.prepareStatement(SIMILAR_CHUNKS_SQL);
+            ps.setObject(1, new PGvector(embedding));
+            ps.setInt(2, limit);
+            return ps;
+        }, KnowledgeBaseVectorRepository.RETRIEVED_DOCUMENT_MAPPER);
+    }
+    
+    /**
+     * Chunk similarity search within some categories, in one query
+     * @param embedding Query embedding vector
+     * @param categories Categories of the parent entry
+     * @param limit Maximum number of results
+     * @return Most similar chunks in the categories, closest first
+     */
+    public List<RetrievedDocument> findSimilarChunksInCategories(float[] embedding, Collection<String> categories, int limit) {
+        return jdbcTemplate.query(con -> {
+            PGvector.addVectorType(con);
+            PreparedStatement ps = con.prepareStatement(SIMILAR_CHUNKS_IN_CATEGORIES_SQL);
+            ps.setObject(1, new PGvector(embedding));
+            ps.setArray(2, con.createArrayOf("varchar", categories.toArray()));
+            ps.setInt(3, limit);
+            return ps;
+        }, KnowledgeBaseVectorRepository.RETRIEVED_DOCUMENT_MAPPER);
+    }
+    
+    /**
+     * Chunk similarity ranking within a given set of knowledge base entries
+     * @param embedding Query embedding vector
+     * @param knowledgeBaseIds Knowledge base IDs of the candidate entries
+     * @param limit Maximum number of results
+     * @return Most similar chunks of the candidates, closest first
+     */
+    public List<RetrievedDocument> findSimilarChunksAmong(float[] embedding, Collection<Long> knowledgeBaseIds, int limit) {
+        return jdbcTemplate.query(con -> {
+            PGvector.addVectorType(con);
+            PreparedStatement ps = con.prepareStatement(SIMILAR_CANDIDATE_CHUNKS_SQL);
+            ps.setObject(1, new PGvector(embedding));
+            ps.setArray(2, con.createArrayOf("bigint", knowledgeBaseIds.toArray()));
+            ps.setInt(3, limit);
+            return ps;
+        }, KnowledgeBaseVectorRepository.RETRIEVED_DOCUMENT_MAPPER);
+    }
+    
+    /**
+     * Retrieval fields of every chunk, without reading any embedding column
+     * @return Chunk ID to the chunk with its entry's fields and a similarity of 0
+     */
+    public Map<Long, RetrievedDocument> findAllChunkDocuments() {
+        Map<Long, RetrievedDocument> chunks = new HashMap<>();
+        jdbcTemplate.query(
+            "SELECT c.id AS chunk_id, kb.id, kb.title, c.content, kb.category " +
+            "FROM knowledge_chunk c JOIN knowledge_base kb ON kb.id = c.knowledge_base_id",
+            rs -> {
+                chunks.put(rs.getLong("chunk_id"), new RetrievedDocument(
+                    rs.getLong("id"), rs.getString("title"), rs.getString("content"), rs.getString("category"), 0.0));
+            });
+        return chunks;
+    }
+    
+    /**
+     * Source hash and embedding model combinations of the embedded chunks of each entry
+     * @return Knowledge base ID to its distinct "sourceHash/model" values
+     */
+    public Map<Long, Set<String>> findChunkSources() {
+        Map<Long, Set<String>> sources = new HashMap<>();
+        jdbcTemplate.query(
+            "SELECT DISTINCT knowledge_base_id, source_hash, embedding_model FROM knowledge_chunk",
+            rs -> {
+                sources.computeIfAbsent(rs.getLong("knowledge_base_id"), id -> new HashSet<>())
+                    .add(rs.getString("source_hash") + "/" + rs.getString("embedding_model"));
+            });
+        return sources;
+    }
+    
+    /**
+     * ID, source hash and embedding model of every chunk, which change whenever a
+     * document's chunks are replaced
+     * @return One "id/sourceHash/model" value per chunk, by ID
+     */
+    public List<String> findEmbeddingSources() {
+        return jdbcTemplate.query("SELECT id, source_hash, embedding_model FROM knowledge_chunk ORDER BY id",
+            (rs, rowNum) -> rs.getLong("id") + "/" + rs.getString("source_hash") + "/" + rs.getString("embedding_model"));
+    }
+    
+    /**
+     * Whether the chunk table has the embedding_vector column. init-rag.sql creates it
+     * in PostgreSQL; schemas generated from the entities, as on H2, lack it.
+     * @return true if chunk vectors can be stored and searched in the database
+     */
+    public boolean hasVectorColumn() {
+        Integer columns = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM information_schema.columns " +
+            "WHERE LOWER(table_name) = 'knowledge_chunk' AND LOWER(column_name) = 'embedding_vector'",
+            Integer.class);
+        return columns != null && columns > 0;
+    }
+    
+    /**
+     * Store the vector of a chunk
+     * @param id Chunk ID
+     * @param embedding Embedding vector
+     * @return Number of rows updated
+     */
+    public int updateEmbeddingVector(Long id, float[] embedding) {
+        return jdbcTemplate.update(con -> {
+            PGvector.addVectorType(con);
+            PreparedStatement ps = con.prepareStatement("UPDATE knowledge_chunk SET embedding_vector = ? WHERE id = ?");
+            ps.setObject(1, new PGvector(embedding));
+            ps.setLong(2, id);
+            return ps;
+        });
+    }
+}
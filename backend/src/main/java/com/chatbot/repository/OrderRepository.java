@@ -1,6 +1,7 @@
 package com.chatbot.repository;
 
 import com.chatbot.model.Order;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -26,6 +27,21 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
      */
     List<Order> findByCustomerId(Long customerId);
     
+    /**
+     * Find a page of a customer's orders, newest first
+     * @param customerId Customer ID
+     * @param pageable Page to read
+     * @return Orders of the customer on that page
+     */
+    List<Order> findByCustomerIdOrderByCreatedDateDescIdDesc(Long customerId, Pageable pageable);
+    
+    /**
+     * Count the orders of a customer
+     * @param customerId Customer ID
+     * @return Number of orders
+     */
+    long countByCustomerId(Long customerId);
+    
     /**
      * Find orders by status
      * @param status Order status to search for
@@ -56,4 +72,4 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
      */
     @Query("SELECT o FROM Order o WHERE o.customerId = :customerId AND o.createdDate >= CURRENT_DATE - 30 ORDER BY o.createdDate DESC")
     List<Order> findRecentOrdersByCustomerId(@Param("customerId") Long customerId);
-} 
\ No newline at end of file
+}
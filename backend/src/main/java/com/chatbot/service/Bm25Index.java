@@ -0,0 +1,200 @@
+package com.chatbot.service;
+
+import com.chatbot.llm.HashedNgramEmbedder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+/**
+ * In-memory inverted index ranking documents by Okapi BM25.
+ *
+ * Each document is a list of fields with a weight; a term occurring in a field adds the
+ * field weight to its term frequency, so title matches can count more than content
+ * matches (BM25F with shared length normalization). The postings of every term are two
+ * primitive int arrays, document numbers in increasing order and the weighted term
+ * frequency in hundredths, and scores are accumulated in one float array per search, so
+ * the index holds no boxed values. The index is built once and not modified afterwards,
+ * so any number of threads can search it concurrently.
+ */
+final class Bm25Index {
+    
+    private static final float K1 = 1.2f;
+    
+    private static final float B = 0.75f;
+    
+    private final Map<String, Integer> termIds;
+    
+    private final int[][] postingDocs;
+    
+    // Weighted term frequency times 100, so postings stay integral
+    private final int[][] postingFrequencies;
+    
+    private final float[] idf;
+    
+    private final float[] lengthNorm;
+    
+    private Bm25Index(Map<String, Integer> termIds, int[][] postingDocs, int[][] postingFrequencies,
+                      float[] idf, float[] lengthNorm) {
+        this.termIds = termIds;
+        this.postingDocs = postingDocs;
+        this.postingFrequencies = postingFrequencies;
+        this.idf = idf;
+        this.lengthNorm = lengthNorm;
+    }
+    
+    /**
+     * Build an index; document numbers are positions in the list
+     * @param documents Per document, its field texts in the order of fieldWeights
+     * @param fieldWeights Weight of a term occurrence in each field
+     * @return Index over all documents
+     */
+    static Bm25Index build(List<String[]> documents, float[] fieldWeights) {
+        Map<String, Integer> termIds = new HashMap<>();
+        List<Map<Integer, Float>> termFrequencies = new ArrayList<>(documents.size());
+        float[] lengths = new float[documents.size()];
+        int[] documentCounts = new int[0];
+        
+        for (int doc = 0; doc < documents.size(); doc++) {
+            String[] fields = documents.get(doc);
+            Map<Integer, Float> frequencies = new HashMap<>();
+            for (int field = 0; field < fields.length && field < fieldWeights.length; field++) {
+                for (String token : tokens(fields[field])) {
+                    int termId = termIds.computeIfAbsent(token, t -> termIds.size());
+                    frequencies.merge(termId, fieldWeights[field], Float::sum);
+                    lengths[doc] += fieldWeights[field];
+                }
+            }
+            if (documentCounts.length < termIds.size()) {
+                documentCounts = Arrays.copyOf(documentCounts, Math.max(termIds.size(), documentCounts.length * 2));
+            }
+            for (int termId : frequencies.keySet()) {
+                documentCounts[termId]++;
+            }
+            termFrequencies.add(frequencies);
+        }
+        
+        int terms = termIds.size();
+        int[][] postingDocs = new int[terms][];
+        int[][] postingFrequencies = new int[terms][];
+        float[] idf = new float[terms];
+        for (int termId = 0; termId < terms; termId++) {
+            int count = documentCounts[termId];
+            postingDocs[termId] = new int[count];
+            postingFrequencies[termId] = new int[count];
+            idf[termId] = (float) Math.log(1.0 + (documents.size() - count + 0.5) / (count + 0.5));
+        }
+        // Documents are visited in order, so every posting list ends up sorted
+        int[] filled = new int[terms];
+        for (int doc = 0; doc < termFrequencies.size(); doc++) {
+            for (Map.Entry<Integer, Float> entry : termFrequencies.get(doc).entrySet()) {
+                int termId = entry.getKey();
+                postingDocs[termId][filled[termId]] = doc;
+                postingFrequencies[termId][filled[termId]] = Math.round(entry.getValue() * 100);
+                filled[termId]++;
+            }
+        }
+        
+        float averageLength = 0;
+        for (float length : lengths) {
+            averageLength += length;
+        }
+        averageLength = documents.isEmpty() ? 0 : averageLength / documents.size();
+        float[] lengthNorm = new float[documents.size()];
+        for (int doc = 0; doc < lengths.length; doc++) {
+            lengthNorm[doc] = averageLength == 0 ? K1 : K1 * (1 - B + B * lengths[doc] / averageLength);
+        }
+        return new Bm25Index(termIds, postingDocs, postingFrequencies, idf, lengthNorm);
+    }
+    
+    /**
+     * Number of indexed documents
+     * @return Index size
+     */
+    int size() {
+        return lengthNorm.length;
+    }
+    
+    /**
+     * Rank documents containing any query term by BM25
+     * @param query Query text
+     * @param k Maximum number of results
+     * @param accept Documents that may be returned
+     * @return Up to k accepted documents with a positive score, best first
+     */
+    List<ScoredNode> search(String query, int k, IntPredicate accept) {
+        if (k <= 0 || size() == 0) {
+            return List.of();
+        }
+        float[] scores = null;
+        for (int termId : queryTermIds(query)) {
+            if (scores == null) {
+                scores = new float[size()];
+            }
+            int[] docs = postingDocs[termId];
+            int[] frequencies = postingFrequencies[termId];
+            for (int i = 0; i < docs.length; i++) {
+                float tf = frequencies[i] / 100f;
+                scores[docs[i]] += idf[termId] * tf * (K1 + 1) / (tf + lengthNorm[docs[i]]);
+            }
+        }
+        if (scores == null) {
+            return List.of();
+        }
+        
+        List<ScoredNode> results = new ArrayList<>();
+        for (int doc = 0; doc < scores.length; doc++) {
+            if (scores[doc] > 0 && accept.test(doc)) {
+                results.add(new ScoredNode(doc, scores[doc]));
+            }
+        }
+        results.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return results.size() > k ? results.subList(0, k) : results;
+    }
+    
+    /**
+     * Highest score a document could reach for a query: every indexed query term with an
+     * unbounded term frequency contributes idf * (k1 + 1)
+     * @param query Query text
+     * @return Upper bound of the scores of the query, 0 if no query term is indexed
+     */
+    float maxScore(String query) {
+        float max = 0;
+        for (int termId : queryTermIds(query)) {
+            max += idf[termId] * (K1 + 1);
+        }
+        return max;
+    }
+    
+    private int[] queryTermIds(String query) {
+        return tokens(query).stream()
+            .distinct()
+            .map(termIds::get)
+            .filter(Objects::nonNull)
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+    
+    /**
+     * Lower-case words of at least two letters or digits, without stop words
+     * @param text Text to split
+     * @return Tokens in text order, with repetitions
+     */
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^a-z0-9]+")) {
+            if (word.length() >= 2 && !HashedNgramEmbedder.isStopWord(word)) {
+                tokens.add(word);
+            }
+        }
+        return tokens;
+    }
+}
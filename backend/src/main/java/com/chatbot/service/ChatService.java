@@ -1,37 +1,58 @@
 package com.chatbot.service;
 
 import com.chatbot.dto.ChatResponse;
+import com.chatbot.llm.CompletionProvider;
 import com.chatbot.model.Conversation;
 import com.chatbot.model.Customer;
 import com.chatbot.model.Order;
-import com.chatbot.repository.ConversationRepository;
+import com.chatbot.model.RetrievedDocument;
 import com.chatbot.repository.CustomerRepository;
 import com.chatbot.repository.OrderRepository;
 import com.theokanning.openai.completion.chat.ChatCompletionRequest;
 import com.theokanning.openai.completion.chat.ChatMessage;
-import com.theokanning.openai.service.OpenAiService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 @Service
 public class ChatService {
     
     private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
     
+    // Prompt packing priorities, lower values are kept first when the token budget runs out
+    private static final int SPECIFIC_ORDER_PRIORITY = 0;
+    private static final int ORDERS_BY_STATUS_PRIORITY = 1;
+    private static final int RECENT_ORDERS_PRIORITY = 2;
+    private static final int KNOWLEDGE_PRIORITY = 3;
+    private static final int ORDER_HISTORY_PRIORITY = 4;
+    
+    // Order entries listed per section when answering without the LLM
+    private static final int LOCAL_ANSWER_MAX_ORDER_ENTRIES = 10;
+    
     @Autowired
-    private OpenAiService openAiService;
+    private CompletionProvider completionProvider;
     
     @Autowired
-    private ConversationRepository conversationRepository;
+    private ConversationWriter conversationWriter;
     
     @Autowired
     private CustomerRepository customerRepository;
@@ -42,6 +63,32 @@ public class ChatService {
     @Autowired
     private RagService ragService;
     
+    @Autowired
+    private SemanticResponseCache semanticResponseCache;
+    
+    @Autowired
+    private OrderAnswerService orderAnswerService;
+    
+    @Autowired
+    private MessageFeatureExtractor messageFeatureExtractor;
+    
+    @Autowired
+    private IntentCategoryRouter intentCategoryRouter;
+    
+    @Autowired
+    private PromptBuilder promptBuilder;
+    
+    @Autowired
+    private LlmBulkhead llmBulkhead;
+    
+    @Autowired
+    @Qualifier("completionCircuitBreaker")
+    private CircuitBreaker completionCircuitBreaker;
+    
+    @Autowired
+    @Qualifier("chatContextExecutor")
+    private Executor chatContextExecutor;
+    
     @Value("${openai.model:gpt-3.5-turbo}")
     private String model;
     
@@ -51,6 +98,25 @@ public class ChatService {
     @Value("${openai.temperature:0.7}")
     private Double temperature;
     
+    @Value("${chat.context.rag-timeout-ms:5000}")
+    private long ragTimeoutMs;
+    
+    @Value("${chat.context.order-timeout-ms:2000}")
+    private long orderTimeoutMs;
+    
+    @Value("${chat.singleflight.timeout-ms:30000}")
+    private long completionFlightTimeoutMs;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private SingleFlight<String, String> completionFlight;
+    
+    @PostConstruct
+    public void init() {
+        completionFlight = new SingleFlight<>("completion", completionFlightTimeoutMs, meterRegistry);
+    }
+    
     /**
      * Process customer message and generate AI response with RAG
      * @param message Customer message
@@ -63,45 +129,70 @@ public class ChatService {
             
             // Get customer ID
             Long customerId = getCustomerIdFromEmail(customerEmail);
+            if (customerId == null) {
+                return customerNotFoundResponse();
+            }
             
-            // Retrieve relevant knowledge base documents
-            List<com.chatbot.model.KnowledgeBase> relevantDocs = ragService.retrieveRelevantDocuments(message, 3);
-            String knowledgeContext = ragService.buildContext(relevantDocs);
-            
-            // Retrieve actual order data based on message content
-            String orderContext = retrieveOrderContext(message, customerId);
-            
-            // Combine knowledge base and order data context
-            String combinedContext = knowledgeContext + "\n\n" + orderContext;
+            // Extract keyword signals and order numbers in one pass, then analyze intent
+            MessageFeatures features = messageFeatureExtractor.extract(message);
+            String intent = analyzeIntent(features);
             
-            // Create system prompt with combined context
-            String systemPrompt = createSystemPromptWithRAG(combinedContext);
+            // Answer simple order questions straight from order data
+            ChatResponse direct = orderAnswerService.tryAnswer(intent, features, customerId);
+            if (direct != null) {
+                saveConversation(customerEmail, message, direct.getMessage(), direct.getIntent(), direct.getConfidence());
+                return direct;
+            }
             
-            // Create user message
-            ChatMessage userMessage = new ChatMessage("user", message);
+            // Retrieve knowledge base and order context
+            MessageContext context = retrieveContext(message, intent, features, customerId);
+            
+            // Answer non-personalized paraphrases of earlier questions from the semantic cache
+            boolean cacheable = isSemanticCacheable(intent, context);
+            float[] questionEmbedding = null;
+            if (cacheable) {
+                questionEmbedding = ragService.embedQueryIfAvailable(message);
+                ChatResponse cached = semanticResponseCache.lookup(questionEmbedding, intent);
+                if (cached != null) {
+                    saveConversation(customerEmail, message, cached.getMessage(), cached.getIntent(), cached.getConfidence());
+                    logger.info("Answered message from semantic cache. Intent: {}", intent);
+                    return cached;
+                }
+            }
             
-            // Create chat completion request
-            ChatCompletionRequest request = ChatCompletionRequest.builder()
-                .model(model)
-                .messages(Arrays.asList(
-                    new ChatMessage("system", systemPrompt),
-                    userMessage
-                ))
-                .maxTokens(maxTokens)
-                .temperature(temperature)
-                .build();
+            // Answer from local data while the completion provider is unavailable
+            if (!completionCircuitBreaker.isCallPermitted()) {
+                ChatResponse local = answerLocally(intent, context);
+                saveConversation(customerEmail, message, local.getMessage(), local.getIntent(), local.getConfidence());
+                return local;
+            }
             
-            // Get AI response
-            String aiResponse = openAiService.createChatCompletion(request)
-                .getChoices().get(0).getMessage().getContent();
+            // Build completion request with knowledge base and order context
+            ChatCompletionRequest request = buildCompletionRequest(message, context);
+            
+            // Get AI response; identical non-personalized prompts in flight share one completion
+            String aiResponse;
+            try {
+                aiResponse = cacheable
+                    ? completionFlight.execute(completionKey(request), () -> requestCompletion(request))
+                    : requestCompletion(request);
+            } catch (CircuitBreaker.CircuitOpenException e) {
+                // The breaker opened while this message was being prepared
+                ChatResponse local = answerLocally(intent, context);
+                saveConversation(customerEmail, message, local.getMessage(), local.getIntent(), local.getConfidence());
+                return local;
+            }
             
-            // Analyze intent and confidence
-            String intent = analyzeIntent(message);
+            // Calculate confidence
             Double confidence = calculateConfidence(message, aiResponse);
             
             // Create response
             ChatResponse response = new ChatResponse(aiResponse, intent, confidence);
             
+            if (cacheable) {
+                semanticResponseCache.put(questionEmbedding, response);
+            }
+            
             // Save conversation to database
             saveConversation(customerEmail, message, aiResponse, intent, confidence);
             
@@ -109,106 +200,365 @@ public class ChatService {
             
             return response;
             
+        } catch (LlmBulkhead.BulkheadRejectedException e) {
+            logger.warn("Answering with fallback response, LLM at capacity: {}", e.getMessage());
+            return fallbackResponse();
+            
         } catch (Exception e) {
             logger.error("Error processing message: {}", e.getMessage(), e);
             
             // Return fallback response
-            return new ChatResponse(
-                "I apologize, but I'm having trouble processing your request right now. Please try again in a moment.",
-                "UNKNOWN",
-                0.0
-            );
+            return fallbackResponse();
         }
     }
     
     /**
-     * Create system prompt with RAG context for order status service
-     * @param context Combined knowledge base and order data context
-     * @return System prompt string
+     * Process customer message and stream the AI response token by token.
+     * Blocks the calling thread until the completion stream finishes, so callers
+     * should invoke it from a dedicated executor rather than a request thread.
+     * @param message Customer message
+     * @param customerEmail Customer email for context
+     * @param listener Receives completion deltas and the final ChatResponse
      */
-    private String createSystemPromptWithRAG(String context) {
-        return """
-            You are a helpful and polite customer service AI assistant for an online order status service. 
-            Your role is to help customers with their order-related inquiries.
-            
-            Key guidelines:
-            1. Always be polite, professional, and customer-focused
-            2. Help customers check order status, order history, and tracking information
-            3. Ask for order numbers when needed to provide specific information
-            4. Provide clear, concise, and helpful responses
-            5. If you don't have specific order information, guide customers to provide their order number
-            6. Be empathetic and understanding of customer concerns
-            7. Keep responses conversational but professional
-            8. If you can't help with a specific request, politely redirect to human support
-            9. Use the provided knowledge base information to give accurate and detailed responses
-            10. When order data is available, provide specific details about order status, amounts, and dates
-            11. If an order is not found, politely inform the customer and ask them to verify the order number
-            
-            Common customer inquiries you can help with:
-            - Order status checks (provide specific order number like ORD-001)
-            - Order history requests
-            - Tracking information
-            - General order-related questions
-            
-            Available order statuses:
-            - PROCESSING: Order is being prepared
-            - SHIPPED: Order has been shipped
-            - DELIVERED: Order has been delivered
-            - CANCELLED: Order has been cancelled
-            
-            Knowledge Base Context and Order Data:
-            %s
-            
-            Remember: You're here to make the customer experience smooth and helpful! 
-            Use the knowledge base information and order data to provide accurate and helpful responses.
-            If specific order information is provided, use it to give detailed, personalized responses.
-            """.formatted(context);
+    public void streamMessage(String message, String customerEmail, ChatStreamListener listener) {
+        StringBuilder aiResponse = new StringBuilder();
+        try {
+            logger.info("Streaming message for customer: {}", customerEmail);
+            
+            // Get customer ID
+            Long customerId = getCustomerIdFromEmail(customerEmail);
+            if (customerId == null) {
+                ChatResponse notFound = customerNotFoundResponse();
+                listener.onToken(notFound.getMessage());
+                listener.onComplete(notFound);
+                return;
+            }
+            
+            // Extract keyword signals and order numbers in one pass, then analyze intent
+            MessageFeatures features = messageFeatureExtractor.extract(message);
+            String intent = analyzeIntent(features);
+            
+            // Answer simple order questions straight from order data
+            ChatResponse direct = orderAnswerService.tryAnswer(intent, features, customerId);
+            if (direct != null) {
+                saveConversation(customerEmail, message, direct.getMessage(), direct.getIntent(), direct.getConfidence());
+                listener.onToken(direct.getMessage());
+                listener.onComplete(direct);
+                return;
+            }
+            
+            // Retrieve knowledge base and order context
+            MessageContext context = retrieveContext(message, intent, features, customerId);
+            
+            // Answer non-personalized paraphrases of earlier questions from the semantic cache
+            boolean cacheable = isSemanticCacheable(intent, context);
+            float[] questionEmbedding = null;
+            if (cacheable) {
+                questionEmbedding = ragService.embedQueryIfAvailable(message);
+                ChatResponse cached = semanticResponseCache.lookup(questionEmbedding, intent);
+                if (cached != null) {
+                    saveConversation(customerEmail, message, cached.getMessage(), cached.getIntent(), cached.getConfidence());
+                    logger.info("Answered streamed message from semantic cache. Intent: {}", intent);
+                    listener.onToken(cached.getMessage());
+                    listener.onComplete(cached);
+                    return;
+                }
+            }
+            
+            // Answer from local data while the completion provider is unavailable
+            if (!completionCircuitBreaker.isCallPermitted()) {
+                streamLocalAnswer(customerEmail, message, intent, context, listener);
+                return;
+            }
+            
+            // Do not start a completion nobody is waiting for
+            if (listener.isCancelled()) {
+                logger.info("Client went away before the completion started, skipping it");
+                return;
+            }
+            
+            // Build completion request with knowledge base and order context
+            ChatCompletionRequest request = buildCompletionRequest(message, context);
+            
+            // Forward completion deltas as they arrive; the stream holds an LLM bulkhead permit until it ends.
+            // A listener failure means the client went away, which says nothing about the provider.
+            AtomicBoolean listenerFailed = new AtomicBoolean();
+            try {
+                llmBulkhead.executeIgnoringLatency(() -> completionCircuitBreaker.execute(() -> {
+                    completionProvider.stream(request, delta -> {
+                        aiResponse.append(delta);
+                        try {
+                            listener.onToken(delta);
+                        } catch (RuntimeException e) {
+                            listenerFailed.set(true);
+                            throw e;
+                        }
+                    });
+                    return null;
+                }, e -> !listenerFailed.get()));
+            } catch (CircuitBreaker.CircuitOpenException e) {
+                // The breaker opened while this message was being prepared
+                streamLocalAnswer(customerEmail, message, intent, context, listener);
+                return;
+            }
+            
+            // Calculate confidence on the complete answer
+            Double confidence = calculateConfidence(message, aiResponse.toString());
+            ChatResponse response = new ChatResponse(aiResponse.toString(), intent, confidence);
+            
+            if (cacheable) {
+                semanticResponseCache.put(questionEmbedding, response);
+            }
+            
+            // Save conversation once the stream has completed
+            saveConversation(customerEmail, message, aiResponse.toString(), intent, confidence);
+            
+            logger.info("Successfully streamed message with RAG and order data. Intent: {}, Confidence: {}", intent, confidence);
+            
+            listener.onComplete(response);
+            
+        } catch (LlmBulkhead.BulkheadRejectedException e) {
+            logger.warn("Finishing stream with fallback response, LLM at capacity: {}", e.getMessage());
+            listener.onComplete(fallbackResponse());
+            
+        } catch (Exception e) {
+            logger.error("Error streaming message: {}", e.getMessage(), e);
+            
+            // Finish the stream with the fallback response
+            listener.onComplete(fallbackResponse());
+        }
     }
     
     /**
-     * Create system prompt for chatbot persona (fallback)
-     * @return System prompt string
+     * Answer from order data and the best knowledge base match without calling the LLM
+     * @param intent Detected intent
+     * @param context Knowledge base and order context
+     * @return Locally assembled ChatResponse
      */
-    private String createSystemPrompt() {
-        return """
-            You are a helpful and polite customer service AI assistant for an online order status service. 
-            Your role is to help customers with their order-related inquiries.
-            
-            Key guidelines:
-            1. Always be polite, professional, and customer-focused
-            2. Help customers check order status, order history, and tracking information
-            3. Ask for order numbers when needed to provide specific information
-            4. Provide clear, concise, and helpful responses
-            5. If you don't have specific order information, guide customers to provide their order number
-            6. Be empathetic and understanding of customer concerns
-            7. Keep responses conversational but professional
-            8. If you can't help with a specific request, politely redirect to human support
-            
-            Common customer inquiries you can help with:
-            - Order status checks
-            - Order history requests
-            - Tracking information
-            - General order-related questions
-            
-            Remember: You're here to make the customer experience smooth and helpful!
-            """;
+    private ChatResponse answerLocally(String intent, MessageContext context) {
+        StringBuilder answer = new StringBuilder(
+            "Our assistant is running in limited mode right now, so here is what I found in our records.\n\n");
+        
+        for (PromptSection section : context.orderSections) {
+            answer.append(section.render(LOCAL_ANSWER_MAX_ORDER_ENTRIES));
+        }
+        
+        if (!context.documents.isEmpty()) {
+            RetrievedDocument best = context.documents.get(0);
+            answer.append(best.title()).append(":\n").append(best.content()).append("\n\n");
+        }
+        
+        if (context.orderSections.isEmpty() && context.documents.isEmpty()) {
+            answer.append("I couldn't find anything matching your question. Please include your order number "
+                + "(for example ORD-001) or try again in a few minutes.");
+        }
+        
+        meterRegistry.counter("chat.degraded.answers", "intent", intent).increment();
+        logger.info("Answered message locally while the completion circuit is open. Intent: {}", intent);
+        return new ChatResponse(answer.toString().trim(), intent, 0.5);
     }
     
     /**
-     * Analyze the intent of the customer message
+     * Send a locally assembled answer to a stream listener as a single token
+     * @param customerEmail Customer email
      * @param message Customer message
-     * @return Detected intent
+     * @param intent Detected intent
+     * @param context Knowledge base and order context
+     * @param listener Stream listener
      */
-    private String analyzeIntent(String message) {
-        String lowerMessage = message.toLowerCase();
+    private void streamLocalAnswer(String customerEmail, String message, String intent,
+                                   MessageContext context, ChatStreamListener listener) {
+        ChatResponse local = answerLocally(intent, context);
+        saveConversation(customerEmail, message, local.getMessage(), local.getIntent(), local.getConfidence());
+        listener.onToken(local.getMessage());
+        listener.onComplete(local);
+    }
+    
+    /**
+     * Reply for a sender without an active customer account, whose orders cannot be looked up
+     * @return ChatResponse asking the sender to sign in again
+     */
+    private ChatResponse customerNotFoundResponse() {
+        return new ChatResponse(
+            "I couldn't find an active customer account for you, so I can't look up any orders. "
+                + "Please sign in again or contact customer service.",
+            "UNKNOWN",
+            0.0
+        );
+    }
+    
+    /**
+     * Generic apology returned when a message cannot be answered
+     * @return Fallback ChatResponse
+     */
+    private ChatResponse fallbackResponse() {
+        return new ChatResponse(
+            "I apologize, but I'm having trouble processing your request right now. Please try again in a moment.",
+            "UNKNOWN",
+            0.0
+        );
+    }
+    
+    /**
+     * Retrieve knowledge base and order context for a customer message concurrently
+     * @param message Customer message
+     * @param intent Detected intent, used to choose the knowledge base categories
+     * @param features Features extracted from the message
+     * @param customerId Customer ID
+     * @return Knowledge base and order context
+     */
+    private MessageContext retrieveContext(String message, String intent, MessageFeatures features, Long customerId) {
+        CompletableFuture<List<RetrievedDocument>> knowledgeFuture = retrieveKnowledgeContextAsync(message, intent);
+        CompletableFuture<List<PromptSection>> orderFuture = retrieveOrderContextAsync(features, customerId);
+        List<RetrievedDocument> documents = knowledgeFuture.join();
+        return new MessageContext(documents, knowledgeSection(documents), orderFuture.join());
+    }
+    
+    /**
+     * Build the chat completion request for a customer message
+     * @param message Customer message
+     * @param context Knowledge base and order context
+     * @return Chat completion request with system prompt and user message
+     */
+    private ChatCompletionRequest buildCompletionRequest(String message, MessageContext context) {
+        // Knowledge base first, then order data; sections are packed into the prompt token budget by priority
+        List<PromptSection> sections = new ArrayList<>();
+        sections.add(context.knowledgeSection);
+        sections.addAll(context.orderSections);
         
-        if (lowerMessage.contains("order") && (lowerMessage.contains("status") || lowerMessage.contains("where") || lowerMessage.contains("track"))) {
+        // Create chat completion request
+        return ChatCompletionRequest.builder()
+            .model(model)
+            .messages(promptBuilder.buildMessages(message, sections))
+            .maxTokens(maxTokens)
+            .temperature(temperature)
+            .build();
+    }
+    
+    /**
+     * Request a chat completion within the LLM bulkhead and the completion circuit breaker
+     * @param request Chat completion request
+     * @return Content of the reply
+     */
+    private String requestCompletion(ChatCompletionRequest request) {
+        return llmBulkhead.execute(() -> completionCircuitBreaker.execute(() -> completionProvider.complete(request)));
+    }
+    
+    /**
+     * Key identifying identical completion requests
+     * @param request Chat completion request
+     * @return Model and message contents
+     */
+    private String completionKey(ChatCompletionRequest request) {
+        StringBuilder key = new StringBuilder(request.getModel());
+        for (ChatMessage chatMessage : request.getMessages()) {
+            key.append('\u0000').append(chatMessage.getRole()).append('\u0000').append(chatMessage.getContent());
+        }
+        return key.toString();
+    }
+    
+    /**
+     * Whether a reply may be served from or stored in the semantic response cache.
+     * Only general and tracking questions answered without any customer order data qualify.
+     * @param intent Detected intent
+     * @param context Knowledge base and order context
+     * @return true if the reply does not depend on the customer
+     */
+    private boolean isSemanticCacheable(String intent, MessageContext context) {
+        return ("GENERAL_INQUIRY".equals(intent) || "TRACKING_INFO".equals(intent))
+            && context.orderSections.isEmpty();
+    }
+    
+    /**
+     * Retrieve knowledge base context on the context executor, restricted to the
+     * categories the intent is routed to, if any. While the completion circuit is open
+     * the reply is assembled locally, so the documents are found without calling the
+     * embedding provider either.
+     * Falls back to no documents if retrieval fails, exceeds its timeout or is
+     * rejected by a saturated executor.
+     * @param message Customer message
+     * @param intent Detected intent
+     * @return Future completing with the relevant knowledge base documents
+     */
+    private CompletableFuture<List<RetrievedDocument>> retrieveKnowledgeContextAsync(String message, String intent) {
+        List<RetrievedDocument> emptyContext = Collections.emptyList();
+        List<String> categories = intentCategoryRouter.categoriesFor(intent);
+        boolean completionAvailable = completionCircuitBreaker.isCallPermitted();
+        return supplyContextAsync(() -> {
+            if (!completionAvailable) {
+                return ragService.retrieveWithoutProvider(message, categories, 3);
+            }
+            return categories.isEmpty()
+                ? ragService.retrieveRelevantDocuments(message, 3)
+                : ragService.retrieveRoutedDocuments(message, categories, 3);
+        })
+            .completeOnTimeout(null, ragTimeoutMs, TimeUnit.MILLISECONDS)
+            .handle((context, ex) -> {
+                if (ex != null) {
+                    logger.error("Knowledge base retrieval failed, continuing without it: {}", ex.getMessage());
+                    return emptyContext;
+                }
+                if (context == null) {
+                    logger.warn("Knowledge base retrieval timed out after {} ms, continuing without it", ragTimeoutMs);
+                    return emptyContext;
+                }
+                return context;
+            });
+    }
+    
+    /**
+     * Retrieve order context on the context executor.
+     * Falls back to an error notice if the lookup fails, exceeds its timeout or is
+     * rejected by a saturated executor.
+     * @param features Features extracted from the customer message
+     * @param customerId Customer ID
+     * @return Future completing with the order context sections
+     */
+    private CompletableFuture<List<PromptSection>> retrieveOrderContextAsync(MessageFeatures features, Long customerId) {
+        List<PromptSection> unavailableContext = List.of(orderContextUnavailable());
+        return supplyContextAsync(() -> retrieveOrderContext(features, customerId))
+            .completeOnTimeout(null, orderTimeoutMs, TimeUnit.MILLISECONDS)
+            .handle((context, ex) -> {
+                if (ex != null) {
+                    logger.error("Order context retrieval failed: {}", ex.getMessage());
+                    return unavailableContext;
+                }
+                if (context == null) {
+                    logger.warn("Order context retrieval timed out after {} ms", orderTimeoutMs);
+                    return unavailableContext;
+                }
+                return context;
+            });
+    }
+    
+    /**
+     * Run a context stage on the context executor. A saturated executor rejects the
+     * stage instead of running it on the request thread, and the rejection completes
+     * the future exceptionally so the stage falls back like any other failure.
+     * @param stage Context stage
+     * @return Future completing with the result of the stage
+     */
+    private <T> CompletableFuture<T> supplyContextAsync(Supplier<T> stage) {
+        try {
+            return CompletableFuture.supplyAsync(stage, chatContextExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    /**
+     * Analyze the intent of the customer message
+     * @param features Features extracted from the customer message
+     * @return Detected intent
+     */
+    private String analyzeIntent(MessageFeatures features) {
+        if (features.has(MessageSignal.ORDER) && features.has(MessageSignal.STATUS_QUESTION)) {
             return "ORDER_STATUS_INQUIRY";
-        } else if (lowerMessage.contains("order") && (lowerMessage.contains("history") || lowerMessage.contains("past") || lowerMessage.contains("previous"))) {
+        } else if (features.has(MessageSignal.ORDER) && features.has(MessageSignal.HISTORY)) {
             return "ORDER_HISTORY";
-        } else if (lowerMessage.contains("track") || lowerMessage.contains("shipping") || lowerMessage.contains("delivery")) {
+        } else if (features.has(MessageSignal.TRACKING)) {
             return "TRACKING_INFO";
-        } else if (lowerMessage.contains("help") || lowerMessage.contains("support")) {
+        } else if (features.has(MessageSignal.HELP)) {
             return "GENERAL_INQUIRY";
         } else {
             return "GENERAL_INQUIRY";
@@ -241,7 +591,7 @@ public class ChatService {
     }
     
     /**
-     * Save conversation to database
+     * Queue conversation for asynchronous batched persistence
      * @param customerEmail Customer email
      * @param userMessage User message
      * @param aiResponse AI response
@@ -252,29 +602,33 @@ public class ChatService {
         try {
             // Get customer ID from email
             Long customerId = getCustomerIdFromEmail(customerEmail);
+            if (customerId == null) {
+                return;
+            }
             
             // Generate session ID (in a real app, you'd manage sessions)
             String sessionId = UUID.randomUUID().toString();
             
-            // Save user message
+            // User message
             Conversation userConversation = new Conversation();
             userConversation.setCustomerId(customerId);
             userConversation.setSessionId(sessionId);
             userConversation.setMessage(userMessage);
             userConversation.setIsBotMessage(false);
             userConversation.setCreatedDate(LocalDateTime.now());
-            conversationRepository.save(userConversation);
             
-            // Save AI response
+            // AI response
             Conversation aiConversation = new Conversation();
             aiConversation.setCustomerId(customerId);
             aiConversation.setSessionId(sessionId);
             aiConversation.setMessage(aiResponse);
             aiConversation.setIsBotMessage(true);
             aiConversation.setCreatedDate(LocalDateTime.now());
-            conversationRepository.save(aiConversation);
             
-            logger.info("Saved conversation for customer: {}", customerEmail);
+            // Written in the background in JDBC batches
+            conversationWriter.enqueue(userConversation, aiConversation);
+            
+            logger.debug("Queued conversation for customer: {}", customerEmail);
             
         } catch (Exception e) {
             logger.error("Error saving conversation: {}", e.getMessage(), e);
@@ -285,33 +639,29 @@ public class ChatService {
     /**
      * Get customer ID from email
      * @param email Customer email
-     * @return Customer ID
+     * @return Customer ID, or null if there is no enabled customer with this email
      */
     private Long getCustomerIdFromEmail(String email) {
-        try {
-            Customer customer = customerRepository.findByEmailAndEnabled(email, true)
-                .orElseThrow(() -> new RuntimeException("Customer not found: " + email));
-            return customer.getId();
-        } catch (Exception e) {
-            logger.error("Error finding customer by email: {}", email, e);
-            // Return default customer ID as fallback
-            return 1L;
+        Optional<Customer> customer = customerRepository.findByEmailAndEnabled(email, true);
+        if (customer.isEmpty()) {
+            logger.warn("No enabled customer found for email: {}", email);
+            return null;
         }
+        return customer.get().getId();
     }
     
     /**
      * Retrieve order context based on message content
-     * @param message Customer message
+     * @param features Features extracted from the customer message
      * @param customerId Customer ID
-     * @return Order context string
+     * @return Order context sections, empty if the message needs no order data
      */
-    private String retrieveOrderContext(String message, Long customerId) {
-        StringBuilder context = new StringBuilder();
-        String lowerMessage = message.toLowerCase();
+    private List<PromptSection> retrieveOrderContext(MessageFeatures features, Long customerId) {
+        List<PromptSection> sections = new ArrayList<>();
         
         try {
             // Check if message contains specific order number
-            String orderNumber = extractOrderNumber(message);
+            String orderNumber = features.getFirstOrderNumber();
             if (orderNumber != null) {
                 Optional<Order> order = orderRepository.findByOrderNumber(orderNumber);
                 if (order.isPresent()) {
@@ -319,106 +669,124 @@ public class ChatService {
                     
                     // Security check: ensure order belongs to authenticated customer
                     if (!o.getCustomerId().equals(customerId)) {
-                        context.append("ACCESS DENIED: I'm sorry, but I can only provide information about your own orders. The order number '").append(orderNumber).append("' does not belong to your account.\n\n");
+                        sections.add(PromptSection.text("order", SPECIFIC_ORDER_PRIORITY,
+                            "ACCESS DENIED: I'm sorry, but I can only provide information about your own orders. The order number '" + orderNumber + "' does not belong to your account.\n\n"));
                     } else {
-                        context.append("SPECIFIC ORDER INFORMATION:\n");
-                        context.append(String.format("- Order Number: %s\n", o.getOrderNumber()));
-                        context.append(String.format("- Status: %s\n", o.getStatus()));
-                        context.append(String.format("- Total Amount: $%.2f\n", o.getTotalAmount()));
-                        context.append(String.format("- Shipping Address: %s\n", o.getShippingAddress()));
-                        context.append(String.format("- Created Date: %s\n", o.getCreatedDate()));
+                        StringBuilder details = new StringBuilder("SPECIFIC ORDER INFORMATION:\n");
+                        details.append(String.format("- Order Number: %s\n", o.getOrderNumber()));
+                        details.append(String.format("- Status: %s\n", o.getStatus()));
+                        details.append(String.format("- Total Amount: $%.2f\n", o.getTotalAmount()));
+                        details.append(String.format("- Shipping Address: %s\n", o.getShippingAddress()));
+                        details.append(String.format("- Created Date: %s\n", o.getCreatedDate()));
                         if (o.getUpdatedDate() != null) {
-                            context.append(String.format("- Last Updated: %s\n", o.getUpdatedDate()));
+                            details.append(String.format("- Last Updated: %s\n", o.getUpdatedDate()));
                         }
-                        context.append("\n");
+                        details.append("\n");
+                        sections.add(PromptSection.text("order", SPECIFIC_ORDER_PRIORITY, details.toString()));
                     }
                 } else {
-                    context.append("ORDER NOT FOUND: The order number '").append(orderNumber).append("' was not found in our system.\n\n");
+                    sections.add(PromptSection.text("order", SPECIFIC_ORDER_PRIORITY,
+                        "ORDER NOT FOUND: The order number '" + orderNumber + "' was not found in our system.\n\n"));
                 }
             }
             
             // If asking for order history or all orders
-            if (lowerMessage.contains("order") && (lowerMessage.contains("history") || lowerMessage.contains("all") || lowerMessage.contains("my orders"))) {
+            if (features.has(MessageSignal.ORDER) && features.has(MessageSignal.ALL_ORDERS)) {
                 List<Order> customerOrders = orderRepository.findByCustomerId(customerId);
                 if (!customerOrders.isEmpty()) {
-                    context.append("CUSTOMER ORDER HISTORY:\n");
+                    List<String> entries = new ArrayList<>(customerOrders.size());
                     for (Order o : customerOrders) {
-                        context.append(String.format("- Order %s: %s, $%.2f, %s\n", 
+                        entries.add(String.format("- Order %s: %s, $%.2f, %s\n", 
                             o.getOrderNumber(), o.getStatus(), o.getTotalAmount(), o.getCreatedDate()));
                     }
-                    context.append("\n");
+                    sections.add(new PromptSection("order-history", ORDER_HISTORY_PRIORITY, "CUSTOMER ORDER HISTORY:\n", entries, "\n"));
                 } else {
-                    context.append("ORDER HISTORY: No orders found for this customer.\n\n");
+                    sections.add(PromptSection.text("order-history", ORDER_HISTORY_PRIORITY, "ORDER HISTORY: No orders found for this customer.\n\n"));
                 }
             }
             
             // If asking for recent orders
-            if (lowerMessage.contains("recent") || lowerMessage.contains("latest")) {
+            if (features.has(MessageSignal.RECENCY)) {
                 List<Order> recentOrders = orderRepository.findRecentOrdersByCustomerId(customerId);
                 if (!recentOrders.isEmpty()) {
-                    context.append("RECENT ORDERS (Last 30 days):\n");
+                    List<String> entries = new ArrayList<>(recentOrders.size());
                     for (Order o : recentOrders) {
-                        context.append(String.format("- Order %s: %s, $%.2f, %s\n", 
+                        entries.add(String.format("- Order %s: %s, $%.2f, %s\n", 
                             o.getOrderNumber(), o.getStatus(), o.getTotalAmount(), o.getCreatedDate()));
                     }
-                    context.append("\n");
+                    sections.add(new PromptSection("recent-orders", RECENT_ORDERS_PRIORITY, "RECENT ORDERS (Last 30 days):\n", entries, "\n"));
                 } else {
-                    context.append("RECENT ORDERS: No recent orders found.\n\n");
+                    sections.add(PromptSection.text("recent-orders", RECENT_ORDERS_PRIORITY, "RECENT ORDERS: No recent orders found.\n\n"));
                 }
             }
             
             // If asking for orders by status
-            if (lowerMessage.contains("shipped") || lowerMessage.contains("processing") || lowerMessage.contains("delivered")) {
-                String status = extractStatus(lowerMessage);
-                if (status != null) {
-                    List<Order> statusOrders = orderRepository.findByCustomerIdAndStatus(customerId, status.toUpperCase());
-                    if (!statusOrders.isEmpty()) {
-                        context.append(String.format("ORDERS WITH STATUS '%s':\n", status.toUpperCase()));
-                        for (Order o : statusOrders) {
-                            context.append(String.format("- Order %s: $%.2f, %s\n", 
-                                o.getOrderNumber(), o.getTotalAmount(), o.getCreatedDate()));
-                        }
-                        context.append("\n");
-                    } else {
-                        context.append(String.format("No orders found with status '%s'.\n\n", status.toUpperCase()));
+            String status = features.getStatus();
+            if (status != null) {
+                List<Order> statusOrders = orderRepository.findByCustomerIdAndStatus(customerId, status);
+                if (!statusOrders.isEmpty()) {
+                    List<String> entries = new ArrayList<>(statusOrders.size());
+                    for (Order o : statusOrders) {
+                        entries.add(String.format("- Order %s: $%.2f, %s\n", 
+                            o.getOrderNumber(), o.getTotalAmount(), o.getCreatedDate()));
                     }
+                    sections.add(new PromptSection("orders-by-status", ORDERS_BY_STATUS_PRIORITY,
+                        String.format("ORDERS WITH STATUS '%s':\n", status), entries, "\n"));
+                } else {
+                    sections.add(PromptSection.text("orders-by-status", ORDERS_BY_STATUS_PRIORITY,
+                        String.format("No orders found with status '%s'.\n\n", status)));
                 }
             }
             
         } catch (Exception e) {
             logger.error("Error retrieving order context: {}", e.getMessage(), e);
-            context.append("ERROR: Unable to retrieve order information at this time.\n\n");
+            sections.add(orderContextUnavailable());
         }
         
-        return context.toString();
+        return sections;
     }
     
     /**
-     * Extract order number from message
-     * @param message Customer message
-     * @return Order number if found, null otherwise
+     * Order context section used when order data could not be retrieved
+     * @return Error notice section
      */
-    private String extractOrderNumber(String message) {
-        // Look for patterns like "ORD-001", "order ORD-001", "check ORD-001"
-        String[] words = message.split("\\s+");
-        for (String word : words) {
-            if (word.matches("ORD-\\d+")) {
-                return word;
-            }
+    private PromptSection orderContextUnavailable() {
+        return PromptSection.text("order", SPECIFIC_ORDER_PRIORITY, "ERROR: Unable to retrieve order information at this time.\n\n");
+    }
+    
+    /**
+     * Knowledge base context section with one entry per document, including its relevance
+     * so the model can weigh weak matches accordingly
+     * @param documents Retrieved knowledge base documents, most relevant first
+     * @return Knowledge base section
+     */
+    private PromptSection knowledgeSection(List<RetrievedDocument> documents) {
+        if (documents.isEmpty()) {
+            return PromptSection.text("knowledge", KNOWLEDGE_PRIORITY, "No relevant information found.\n\n");
+        }
+        List<String> entries = new ArrayList<>(documents.size());
+        for (RetrievedDocument doc : documents) {
+            entries.add("Document: " + doc.title() + "\n"
+                + "Category: " + doc.category() + "\n"
+                + "Relevance: " + String.format(Locale.ROOT, "%.2f", doc.similarity()) + "\n"
+                + "Content: " + doc.content() + "\n\n");
         }
-        return null;
+        return new PromptSection("knowledge", KNOWLEDGE_PRIORITY, "Based on the following knowledge base information:\n\n", entries, "\n");
     }
     
     /**
-     * Extract status from message
-     * @param message Customer message
-     * @return Status if found, null otherwise
+     * Knowledge base and order context retrieved for a message
      */
-    private String extractStatus(String message) {
-        if (message.contains("shipped")) return "SHIPPED";
-        if (message.contains("processing")) return "PROCESSING";
-        if (message.contains("delivered")) return "DELIVERED";
-        if (message.contains("cancelled")) return "CANCELLED";
-        return null;
+    private static class MessageContext {
+        
+        private final List<RetrievedDocument> documents;
+        private final PromptSection knowledgeSection;
+        private final List<PromptSection> orderSections;
+        
+        MessageContext(List<RetrievedDocument> documents, PromptSection knowledgeSection, List<PromptSection> orderSections) {
+            this.documents = documents;
+            this.knowledgeSection = knowledgeSection;
+            this.orderSections = orderSections;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package com.chatbot.service;
+
+import com.chatbot.dto.ChatResponse;
+
+/**
+ * Callback for streamed chat replies produced by {@link ChatService#streamMessage}.
+ */
+public interface ChatStreamListener {
+    
+    /**
+     * Called for every completion delta as it arrives from the model
+     * @param token Text fragment of the reply
+     */
+    void onToken(String token);
+    
+    /**
+     * Called once after the stream has finished, with the complete reply,
+     * detected intent and confidence (or the fallback response on failure)
+     * @param response Final chat response
+     */
+    void onComplete(ChatResponse response);
+    
+    /**
+     * Whether the receiver has gone away, so the reply no longer needs to be produced
+     * @return true once the client has disconnected or timed out
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+}
@@ -0,0 +1,254 @@
+package com.chatbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Count-based circuit breaker for calls to an external provider.
+ *
+ * While CLOSED the outcomes of the last window-size calls are recorded; once at least
+ * minimum-calls have been made and the failure rate reaches the threshold the breaker
+ * OPENs and rejects calls without running them. After the open duration it lets a few
+ * probe calls through (HALF_OPEN): if all of them succeed it closes again, otherwise it
+ * re-opens. Callers can check {@link #isCallPermitted()} up front to skip work that is
+ * only useful if the call can be made.
+ * Every state change starts a new generation, and each call remembers the generation it
+ * was let through in. Outcomes of calls from an earlier generation are still counted in
+ * the metrics but do not change the state, so a slow call that started while the breaker
+ * was closed cannot count as a half-open probe or re-open a breaker that has since closed.
+ * The state is published as circuit.breaker.state (0 closed, 1 half-open, 2 open) and
+ * calls as circuit.breaker.calls tagged with the outcome.
+ */
+public class CircuitBreaker {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+    
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+    
+    private final String name;
+    
+    private final double failureRateThreshold;
+    
+    private final int minimumCalls;
+    
+    private final long openDurationNanos;
+    
+    private final int halfOpenProbes;
+    
+    private final boolean[] window;
+    
+    private final Counter successes;
+    
+    private final Counter failures;
+    
+    private final Counter rejections;
+    
+    private final MeterRegistry meterRegistry;
+    
+    private State state = State.CLOSED;
+    
+    private int windowPosition;
+    
+    private int windowCount;
+    
+    private int windowFailures;
+    
+    private long openedAt;
+    
+    private int probesStarted;
+    
+    private int probesSucceeded;
+    
+    private long generation;
+    
+    /**
+     * @param name Name used in metric tags and log messages
+     * @param failureRateThreshold Failure percentage (0-100) that opens the breaker
+     * @param minimumCalls Calls required in the window before the failure rate is evaluated
+     * @param windowSize Number of most recent calls considered
+     * @param openDurationMs Time the breaker stays open before probing
+     * @param halfOpenProbes Number of successful probe calls required to close again
+     * @param meterRegistry Registry for state and call metrics
+     */
+    public CircuitBreaker(String name, double failureRateThreshold, int minimumCalls, int windowSize,
+                          long openDurationMs, int halfOpenProbes, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.window = new boolean[windowSize];
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+        this.halfOpenProbes = halfOpenProbes;
+        this.meterRegistry = meterRegistry;
+        this.successes = Counter.builder("circuit.breaker.calls").tag("name", name).tag("outcome", "success").register(meterRegistry);
+        this.failures = Counter.builder("circuit.breaker.calls").tag("name", name).tag("outcome", "failure").register(meterRegistry);
+        this.rejections = Counter.builder("circuit.breaker.calls").tag("name", name).tag("outcome", "rejected").register(meterRegistry);
+        Gauge.builder("circuit.breaker.state", this, breaker -> breaker.getState().ordinal())
+            .tag("name", name)
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Run a call through the breaker
+     * @param call Provider call
+     * @return Result of the call
+     * @throws CircuitOpenException if the breaker is open or all probe slots are taken
+     */
+    public <T> T execute(Supplier<T> call) {
+        return execute(call, e -> true);
+    }
+    
+    /**
+     * Run a call through the breaker, counting only some exceptions as provider failures
+     * @param call Provider call
+     * @param isFailure Whether an exception thrown by the call counts as a failure
+     * @return Result of the call
+     * @throws CircuitOpenException if the breaker is open or all probe slots are taken
+     */
+    public <T> T execute(Supplier<T> call, Predicate<Throwable> isFailure) {
+        long callGeneration = acquirePermission();
+        try {
+            T result = call.get();
+            onSuccess(callGeneration);
+            return result;
+        } catch (RuntimeException | Error e) {
+            if (isFailure.test(e)) {
+                onFailure(callGeneration);
+            } else {
+                onSuccess(callGeneration);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Whether a call would currently be let through, without taking a probe slot
+     * @return false while the breaker is open or all probe slots are taken
+     */
+    public synchronized boolean isCallPermitted() {
+        switch (currentState()) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                return probesStarted < halfOpenProbes;
+            default:
+                return false;
+        }
+    }
+    
+    public synchronized State getState() {
+        return currentState();
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Let a call through or reject it
+     * @return Generation the call was let through in
+     */
+    private synchronized long acquirePermission() {
+        State current = currentState();
+        if (current == State.CLOSED) {
+            return generation;
+        }
+        if (current == State.HALF_OPEN && probesStarted < halfOpenProbes) {
+            probesStarted++;
+            return generation;
+        }
+        rejections.increment();
+        throw new CircuitOpenException("Circuit breaker " + name + " is " + current);
+    }
+    
+    private synchronized void onSuccess(long callGeneration) {
+        successes.increment();
+        if (callGeneration != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            probesSucceeded++;
+            if (probesSucceeded >= halfOpenProbes) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        record(false);
+    }
+    
+    private synchronized void onFailure(long callGeneration) {
+        failures.increment();
+        if (callGeneration != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+            return;
+        }
+        record(true);
+        if (windowCount >= minimumCalls && windowFailures * 100.0 / windowCount >= failureRateThreshold) {
+            transitionTo(State.OPEN);
+        }
+    }
+    
+    /**
+     * Move from OPEN to HALF_OPEN once the open duration has elapsed
+     * @return Current state
+     */
+    private State currentState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+        return state;
+    }
+    
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowPosition]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowPosition] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+    }
+    
+    private void transitionTo(State next) {
+        logger.warn("Circuit breaker {} changed from {} to {}", name, state, next);
+        state = next;
+        generation++;
+        if (next == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+        probesStarted = 0;
+        probesSucceeded = 0;
+        if (next == State.CLOSED) {
+            windowPosition = 0;
+            windowCount = 0;
+            windowFailures = 0;
+        }
+        meterRegistry.counter("circuit.breaker.transitions", "name", name, "state", next.name()).increment();
+    }
+    
+    /**
+     * Thrown when a call is not permitted by an open circuit breaker
+     */
+    public static class CircuitOpenException extends RuntimeException {
+        
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+}
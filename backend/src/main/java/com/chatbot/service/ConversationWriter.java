@@ -0,0 +1,159 @@
+package com.chatbot.service;
+
+import com.chatbot.model.Conversation;
+import com.chatbot.repository.ConversationRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind persistence for chat conversations.
+ *
+ * Messages are queued by the request thread and written by a single background
+ * thread in batches, flushed when a batch is full or the flush interval elapses.
+ * Together with the pooled conversation sequence this lets Hibernate send the
+ * inserts as JDBC batches instead of two round-trips per chat message.
+ * The queue is drained on shutdown.
+ */
+@Service
+public class ConversationWriter {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ConversationWriter.class);
+    
+    @Autowired
+    private ConversationRepository conversationRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Value("${chat.persistence.queue-capacity:10000}")
+    private int queueCapacity;
+    
+    @Value("${chat.persistence.batch-size:50}")
+    private int batchSize;
+    
+    @Value("${chat.persistence.flush-interval-ms:200}")
+    private long flushIntervalMs;
+    
+    private BlockingQueue<Conversation> queue;
+    
+    private Thread writerThread;
+    
+    private volatile boolean running;
+    
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writerThread = new Thread(this::runWriter, "conversation-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+    
+    /**
+     * Queue a user message and the bot reply for persistence.
+     * If the queue is full the messages are written synchronously so nothing is lost.
+     * @param userMessage Customer message
+     * @param botMessage AI response
+     */
+    public void enqueue(Conversation userMessage, Conversation botMessage) {
+        List<Conversation> overflow = new ArrayList<>(2);
+        if (!running || !queue.offer(userMessage)) {
+            overflow.add(userMessage);
+        }
+        if (!running || !queue.offer(botMessage)) {
+            overflow.add(botMessage);
+        }
+        if (!overflow.isEmpty()) {
+            logger.warn("Conversation queue full or closed, writing {} message(s) synchronously", overflow.size());
+            writeBatch(overflow);
+        }
+    }
+    
+    /**
+     * Number of messages waiting to be written
+     * @return Pending message count
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+    
+    /**
+     * Stop accepting work and flush everything still queued
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        // Write anything the writer thread could not get to before the deadline
+        List<Conversation> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            writeBatch(remaining);
+        }
+        logger.info("Conversation writer stopped");
+    }
+    
+    /**
+     * Writer loop: collect up to batchSize messages or until the flush interval
+     * elapses, then write them in one transaction
+     */
+    private void runWriter() {
+        List<Conversation> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Conversation next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // Write what has been collected so far; the loop exits once stopped and drained
+                logger.debug("Conversation writer interrupted");
+            }
+            
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+    
+    /**
+     * Write a batch of conversations in a single transaction
+     * @param batch Conversations to write
+     */
+    private void writeBatch(List<Conversation> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> conversationRepository.saveAll(batch));
+            logger.debug("Saved {} conversation messages", batch.size());
+        } catch (Exception e) {
+            logger.error("Error saving {} conversation messages: {}", batch.size(), e.getMessage(), e);
+            // Don't throw exception - conversation saving is not critical
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.chatbot.service;
+
+import com.chatbot.llm.EmbeddingProvider;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Combines concurrent embedding requests into batched provider calls.
+ *
+ * Callers queue their text and wait for its vector. A single dispatcher thread
+ * collects queued texts until max-size is reached or max-wait-ms has passed since
+ * the first one arrived, then sends them as one embeddings request on the batch
+ * executor and completes each caller with its own vector. Every batch goes through
+ * the embedding circuit breaker as one call. A batch the executor rejects is sent by
+ * the dispatcher thread itself, and a batch the provider refuses because of its input
+ * is retried one text at a time so that one bad text fails only its own caller.
+ * Batch sizes are recorded in rag.embedding.batch.size.
+ */
+@Service
+public class EmbeddingBatcher {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingBatcher.class);
+    
+    @Autowired
+    private EmbeddingProvider embeddingProvider;
+    
+    @Autowired
+    @Qualifier("embeddingCircuitBreaker")
+    private CircuitBreaker embeddingCircuitBreaker;
+    
+    @Autowired
+    @Qualifier("embeddingBatchExecutor")
+    private Executor embeddingBatchExecutor;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${rag.embedding-batch.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${rag.embedding-batch.max-size:64}")
+    private int maxBatchSize;
+    
+    @Value("${rag.embedding-batch.max-wait-ms:5}")
+    private long maxWaitMs;
+    
+    @Value("${rag.embedding-batch.queue-capacity:1000}")
+    private int queueCapacity;
+    
+    @Value("${rag.embedding-batch.timeout-ms:10000}")
+    private long timeoutMs;
+    
+    private BlockingQueue<PendingEmbedding> queue;
+    
+    private DistributionSummary batchSizes;
+    
+    private Thread dispatcherThread;
+    
+    private volatile boolean running;
+    
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        batchSizes = DistributionSummary.builder("rag.embedding.batch.size").register(meterRegistry);
+        Gauge.builder("rag.embedding.batch.queued", this, EmbeddingBatcher::getPendingCount).register(meterRegistry);
+        running = true;
+        dispatcherThread = new Thread(this::runDispatcher, "embedding-batcher");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
+    }
+    
+    /**
+     * Embed a text as part of the next batch.
+     * If batching is disabled, or the queue is full or closed, the text is embedded on its own.
+     * @param text Text to embed
+     * @return Embedding vector
+     */
+    public float[] embed(String text) {
+        PendingEmbedding pending = new PendingEmbedding(text);
+        if (!enabled || !running || !queue.offer(pending)) {
+            return embedBatch(List.of(text)).get(0);
+        }
+        
+        try {
+            return pending.future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Timed out waiting for batched embedding");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for batched embedding");
+        }
+    }
+    
+    /**
+     * Embed texts that are already grouped, such as documents being ingested, in one call
+     * @param texts Texts to embed
+     * @return One vector per text, in order
+     */
+    public List<float[]> embedAll(List<String> texts) {
+        return embedBatch(texts);
+    }
+    
+    /**
+     * Number of texts waiting to be sent
+     * @return Pending text count
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+    
+    /**
+     * Stop accepting work and send everything still queued
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            dispatcherThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        List<PendingEmbedding> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            dispatch(remaining);
+        }
+        logger.info("Embedding batcher stopped");
+    }
+    
+    /**
+     * Dispatcher loop: wait for a first text, collect more until the batch is full
+     * or max-wait-ms has passed, then hand the batch to the batch executor
+     */
+    private void runDispatcher() {
+        while (running || !queue.isEmpty()) {
+            List<PendingEmbedding> batch = new ArrayList<>(maxBatchSize);
+            try {
+                PendingEmbedding first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingEmbedding next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // Send what has been collected so far; the loop exits once stopped and drained
+                logger.debug("Embedding batcher interrupted");
+            }
+            
+            if (!batch.isEmpty()) {
+                List<PendingEmbedding> ready = batch;
+                try {
+                    embeddingBatchExecutor.execute(() -> dispatch(ready));
+                } catch (RejectedExecutionException e) {
+                    // Saturated or shut down: send it here so no caller is left waiting
+                    dispatch(ready);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Embed a batch and complete each caller with its vector, or with the failure
+     * @param batch Queued texts
+     */
+    private void dispatch(List<PendingEmbedding> batch) {
+        List<String> texts = new ArrayList<>(batch.size());
+        for (PendingEmbedding pending : batch) {
+            texts.add(pending.text);
+        }
+        
+        try {
+            List<float[]> vectors = embedBatch(texts);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(vectors.get(i));
+            }
+        } catch (EmbeddingProvider.InvalidInputException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            logger.warn("Embedding batch of {} texts was refused, retrying one by one: {}", batch.size(), e.getMessage());
+            for (PendingEmbedding pending : batch) {
+                dispatch(List.of(pending));
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error embedding batch of {} texts: {}", batch.size(), e.getMessage());
+            for (PendingEmbedding pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+    
+    /**
+     * Send texts to the embedding provider in one call through the circuit breaker
+     * @param texts Texts to embed
+     * @return One vector per text, in order
+     */
+    private List<float[]> embedBatch(List<String> texts) {
+        batchSizes.record(texts.size());
+        // Refused input says nothing about the provider's health
+        List<float[]> vectors = embeddingCircuitBreaker.execute(() -> embeddingProvider.embed(texts),
+            e -> !(e instanceof EmbeddingProvider.InvalidInputException));
+        if (vectors.size() != texts.size()) {
+            throw new RuntimeException("Embedding provider returned " + vectors.size() + " vectors for " + texts.size() + " texts");
+        }
+        return vectors;
+    }
+    
+    private static class PendingEmbedding {
+        
+        private final String text;
+        private final CompletableFuture<float[]> future = new CompletableFuture<>();
+        
+        PendingEmbedding(String text) {
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.chatbot.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Binary file of normalized knowledge base embeddings, read through a memory mapping.
+ *
+ * Layout, all little-endian: a header with the magic number, format version, embedding
+ * model name and source fingerprint (each length-prefixed UTF-8), dimensions and vector
+ * count, padded to 64 bytes; then count x dimensions float32 values row by row; then
+ * one knowledge base ID (int64) per row. Opening a snapshot maps the file read-only and reads only the header and the
+ * ID table, so the vectors are never parsed or copied onto the heap, and every process
+ * mapping the same file shares its pages in the operating system's page cache.
+ * Snapshots are written to a temporary file and moved into place, so readers never see
+ * a partial file; processes that mapped the previous file keep reading it until they
+ * open the new one.
+ */
+public final class EmbeddingSnapshot {
+    
+    private static final int MAGIC = 0x4B42454D;
+    
+    private static final int VERSION = 2;
+    
+    private static final int ALIGNMENT = 64;
+    
+    private final String model;
+    
+    private final String source;
+    
+    private final int dimensions;
+    
+    private final long[] ids;
+    
+    private final ByteBuffer vectors;
+    
+    private EmbeddingSnapshot(String model, String source, int dimensions, long[] ids, ByteBuffer vectors) {
+        this.model = model;
+        this.source = source;
+        this.dimensions = dimensions;
+        this.ids = ids;
+        this.vectors = vectors;
+    }
+    
+    /**
+     * Map a snapshot file
+     * @param path Snapshot file
+     * @return Snapshot backed by the mapping
+     * @throws IOException If the file cannot be read or is not a valid snapshot
+     */
+    public static EmbeddingSnapshot open(Path path) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Embedding snapshot larger than 2 GB: " + path);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        
+        ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not an embedding snapshot: " + path);
+            }
+            byte[] modelBytes = new byte[buffer.getInt()];
+            buffer.get(modelBytes);
+            byte[] sourceBytes = new byte[buffer.getInt()];
+            buffer.get(sourceBytes);
+            int dimensions = buffer.getInt();
+            int count = buffer.getInt();
+            
+            int vectorsOffset = align(buffer.position());
+            int vectorsLength = Math.multiplyExact(Math.multiplyExact(count, dimensions), Float.BYTES);
+            if ((long) vectorsOffset + vectorsLength + (long) count * Long.BYTES != buffer.capacity()) {
+                throw new IOException("Truncated embedding snapshot: " + path);
+            }
+            
+            long[] ids = new long[count];
+            buffer.position(vectorsOffset + vectorsLength);
+            buffer.asLongBuffer().get(ids);
+            ByteBuffer vectors = buffer.position(vectorsOffset).slice().limit(vectorsLength).order(ByteOrder.LITTLE_ENDIAN);
+            return new EmbeddingSnapshot(new String(modelBytes, StandardCharsets.UTF_8),
+                new String(sourceBytes, StandardCharsets.UTF_8), dimensions, ids, vectors);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid embedding snapshot: " + path, e);
+        }
+    }
+    
+    /**
+     * Write a snapshot file, replacing any existing one
+     * @param path Snapshot file
+     * @param model Embedding model of the vectors
+     * @param source Fingerprint of the table rows the vectors were read from
+     * @param ids Knowledge base ID of each vector
+     * @param vectors Vectors of equal length, normalized before writing
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(Path path, String model, String source, long[] ids, List<float[]> vectors) throws IOException {
+        if (ids.length != vectors.size()) {
+            throw new IllegalArgumentException(ids.length + " IDs for " + vectors.size() + " vectors");
+        }
+        int dimensions = vectors.isEmpty() ? 0 : vectors.get(0).length;
+        byte[] modelBytes = model.getBytes(StandardCharsets.UTF_8);
+        byte[] sourceBytes = source.getBytes(StandardCharsets.UTF_8);
+        int headerLength = align(6 * Integer.BYTES + modelBytes.length + sourceBytes.length);
+        
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(headerLength).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(modelBytes.length).put(modelBytes)
+                    .putInt(sourceBytes.length).put(sourceBytes).putInt(dimensions).putInt(vectors.size());
+                writeFully(channel, header.clear());
+                
+                ByteBuffer row = ByteBuffer.allocate(dimensions * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (float[] vector : vectors) {
+                    if (vector.length != dimensions) {
+                        throw new IllegalArgumentException("Vectors have different dimensions");
+                    }
+                    row.clear();
+                    for (float value : VectorMath.normalize(vector)) {
+                        row.putFloat(value);
+                    }
+                    writeFully(channel, row.flip());
+                }
+                
+                ByteBuffer idTable = ByteBuffer.allocate(ids.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (long id : ids) {
+                    idTable.putLong(id);
+                }
+                writeFully(channel, idTable.flip());
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+    
+    public String getModel() {
+        return model;
+    }
+    
+    /**
+     * Fingerprint of the table rows the snapshot was written from
+     * @return Source fingerprint
+     */
+    public String getSource() {
+        return source;
+    }
+    
+    public int getDimensions() {
+        return dimensions;
+    }
+    
+    public int size() {
+        return ids.length;
+    }
+    
+    /**
+     * Knowledge base ID of a row
+     * @param row Row number
+     * @return Knowledge base entry ID
+     */
+    public long getId(int row) {
+        return ids[row];
+    }
+    
+    /**
+     * Normalized vectors as a read-only little-endian float32 matrix over the mapping
+     * @return Row-major vector buffer
+     */
+    public ByteBuffer getVectors() {
+        return vectors.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+    
+    private static int align(int offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
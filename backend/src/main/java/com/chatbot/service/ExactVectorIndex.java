@@ -0,0 +1,290 @@
+package com.chatbot.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Exact cosine similarity search by scanning every vector.
+ *
+ * Normalized vectors are packed row by row as little-endian float32 values in one
+ * byte buffer, either allocated off-heap or memory-mapped from an
+ * {@link EmbeddingSnapshot}, so a scan reads memory sequentially and each row is
+ * scored with a single {@link VectorMath#dot} call. Buffers are addressed with int
+ * offsets, which limits an index to 2 GB of vectors. The best k rows are kept in a
+ * bounded min-heap. Indexes with more than minRowsPerTask rows per core are split into ranges scanned in parallel on the
+ * common fork-join pool, whose partial results are merged. A search can also be limited
+ * to a list of rows, such as one category's partition, and then reads only those rows.
+ * Recall is always 1.
+ */
+public final class ExactVectorIndex {
+    
+    private final int size;
+    
+    private final int dimensions;
+    
+    private final ByteBuffer matrix;
+    
+    private final int minRowsPerTask;
+    
+    private ExactVectorIndex(int size, int dimensions, ByteBuffer matrix, int minRowsPerTask) {
+        this.size = size;
+        this.dimensions = dimensions;
+        this.matrix = matrix;
+        this.minRowsPerTask = minRowsPerTask;
+    }
+    
+    /**
+     * Pack a list of vectors into an off-heap buffer; node numbers are positions in the list
+     * @param vectors Vectors of equal length
+     * @param minRowsPerTask Minimum rows scanned by one parallel task
+     * @return Index over all vectors
+     */
+    public static ExactVectorIndex build(List<float[]> vectors, int minRowsPerTask) {
+        int dimensions = vectors.isEmpty() ? 0 : vectors.get(0).length;
+        ByteBuffer matrix = ByteBuffer.allocateDirect(byteSize(vectors.size(), dimensions)).order(ByteOrder.LITTLE_ENDIAN);
+        for (int node = 0; node < vectors.size(); node++) {
+            float[] vector = vectors.get(node);
+            if (vector.length != dimensions) {
+                throw new IllegalArgumentException("Vector " + node + " has " + vector.length
+                    + " dimensions, expected " + dimensions);
+            }
+            for (float value : VectorMath.normalize(vector)) {
+                matrix.putFloat(value);
+            }
+        }
+        return new ExactVectorIndex(vectors.size(), dimensions, matrix.clear(), Math.max(1, minRowsPerTask));
+    }
+    
+    /**
+     * Index vectors that are already normalized and packed, without copying them
+     * @param matrix Row-major little-endian float32 matrix starting at position 0
+     * @param size Number of rows
+     * @param dimensions Length of each row
+     * @param minRowsPerTask Minimum rows scanned by one parallel task
+     * @return Index over the buffer
+     */
+    public static ExactVectorIndex wrap(ByteBuffer matrix, int size, int dimensions, int minRowsPerTask) {
+        if (matrix.capacity() < byteSize(size, dimensions)) {
+            throw new IllegalArgumentException("Buffer holds fewer than " + size + " vectors of " + dimensions + " dimensions");
+        }
+        return new ExactVectorIndex(size, dimensions, matrix.duplicate().order(ByteOrder.LITTLE_ENDIAN),
+            Math.max(1, minRowsPerTask));
+    }
+    
+    /**
+     * Read one stored vector into a new array
+     * @param node Row number
+     * @return Normalized vector
+     */
+    public float[] vector(int node) {
+        float[] vector = new float[dimensions];
+        int offset = node * dimensions * Float.BYTES;
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = matrix.getFloat(offset + i * Float.BYTES);
+        }
+        return vector;
+    }
+    
+    /**
+     * Dimensions of the indexed vectors
+     * @return Vector length, 0 for an empty index
+     */
+    public int dimensions() {
+        return dimensions;
+    }
+    
+    private static int byteSize(int size, int dimensions) {
+        long bytes = (long) size * dimensions * Float.BYTES;
+        if (bytes > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many vectors for one packed matrix: " + size);
+        }
+        return (int) bytes;
+    }
+    
+    /**
+     * Number of indexed vectors
+     * @return Index size
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Find the nodes most similar to a query vector
+     * @param query Query vector, need not be normalized
+     * @param k Maximum number of results
+     * @param accept Nodes that may be returned
+     * @return Up to k accepted nodes, most similar first
+     */
+    public List<ScoredNode> search(float[] query, int k, IntPredicate accept) {
+        if (size == 0 || k <= 0) {
+            return List.of();
+        }
+        float[] normalized = normalizeQuery(query);
+        return scanInTasks(size, (from, to) -> scan(normalized, from, to, k, accept));
+    }
+    
+    /**
+     * Find the most similar nodes within a subset, such as the rows of one category,
+     * scanning only those rows
+     * @param query Query vector, need not be normalized
+     * @param k Maximum number of results
+     * @param nodes Nodes to search, in ascending order for sequential memory access
+     * @return Up to k of the given nodes, most similar first
+     */
+    public List<ScoredNode> search(float[] query, int k, int[] nodes) {
+        if (nodes.length == 0 || k <= 0) {
+            return List.of();
+        }
+        float[] normalized = normalizeQuery(query);
+        return scanInTasks(nodes.length, (from, to) -> {
+            TopK top = new TopK(k);
+            for (int i = from; i < to; i++) {
+                top.offer(nodes[i], VectorMath.dot(matrix, nodes[i] * dimensions * Float.BYTES, normalized));
+            }
+            return top;
+        });
+    }
+    
+    /**
+     * Score a few given nodes against a query without scanning the rest of the index
+     * @param query Query vector, need not be normalized
+     * @param nodes Nodes to score
+     * @return The given nodes, most similar first
+     */
+    public List<ScoredNode> score(float[] query, int[] nodes) {
+        float[] normalized = normalizeQuery(query);
+        TopK top = new TopK(Math.max(1, nodes.length));
+        for (int node : nodes) {
+            top.offer(node, VectorMath.dot(matrix, node * dimensions * Float.BYTES, normalized));
+        }
+        return top.toSortedList();
+    }
+    
+    private float[] normalizeQuery(float[] query) {
+        if (query.length != dimensions) {
+            throw new IllegalArgumentException("Query has " + query.length + " dimensions, index has " + dimensions);
+        }
+        return VectorMath.normalize(query);
+    }
+    
+    /**
+     * Split positions 0 to count into ranges of at least minRowsPerTask, scan them in
+     * parallel when there is more than one, and merge the partial results
+     * @param count Number of positions to scan
+     * @param scanRange Scan of the positions from (inclusive) to (exclusive)
+     * @return Best nodes over all ranges, most similar first
+     */
+    private List<ScoredNode> scanInTasks(int count, BiFunction<Integer, Integer, TopK> scanRange) {
+        int tasks = Math.min(ForkJoinPool.getCommonPoolParallelism() + 1, count / minRowsPerTask);
+        if (tasks <= 1) {
+            return scanRange.apply(0, count).toSortedList();
+        }
+        
+        int rowsPerTask = (count + tasks - 1) / tasks;
+        return IntStream.range(0, tasks)
+            .parallel()
+            .mapToObj(task -> scanRange.apply(task * rowsPerTask, Math.min(count, (task + 1) * rowsPerTask)))
+            .reduce(TopK::merge)
+            .orElseThrow()
+            .toSortedList();
+    }
+    
+    private TopK scan(float[] query, int from, int to, int k, IntPredicate accept) {
+        TopK top = new TopK(k);
+        for (int node = from; node < to; node++) {
+            if (accept.test(node)) {
+                top.offer(node, VectorMath.dot(matrix, node * dimensions * Float.BYTES, query));
+            }
+        }
+        return top;
+    }
+    
+    /**
+     * Min-heap of the k highest scores seen, on primitive arrays
+     */
+    private static final class TopK {
+        
+        private final int[] nodes;
+        private final float[] scores;
+        private int count;
+        
+        TopK(int k) {
+            nodes = new int[k];
+            scores = new float[k];
+        }
+        
+        void offer(int node, float score) {
+            if (count < nodes.length) {
+                nodes[count] = node;
+                scores[count] = score;
+                siftUp(count++);
+            } else if (score > scores[0]) {
+                nodes[0] = node;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+        
+        TopK merge(TopK other) {
+            for (int i = 0; i < other.count; i++) {
+                offer(other.nodes[i], other.scores[i]);
+            }
+            return this;
+        }
+        
+        List<ScoredNode> toSortedList() {
+            List<ScoredNode> sorted = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                sorted.add(new ScoredNode(nodes[i], scores[i]));
+            }
+            sorted.sort((a, b) -> Float.compare(b.score(), a.score()));
+            return sorted;
+        }
+        
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (scores[parent] <= scores[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+        
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < count && scores[left] < scores[smallest]) {
+                    smallest = left;
+                }
+                if (right < count && scores[right] < scores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+        
+        private void swap(int a, int b) {
+            int node = nodes[a];
+            nodes[a] = nodes[b];
+            nodes[b] = node;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.chatbot.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph for approximate nearest-neighbour search
+ * by cosine similarity.
+ *
+ * Vectors are normalized on insertion and kept as primitive float arrays; the links of
+ * each node are int arrays per layer, holding at most m neighbours on the upper layers
+ * and 2m on the bottom layer. A search descends greedily through the upper layers and
+ * then explores the bottom layer with a candidate list of ef nodes. The index is built
+ * once and not modified afterwards, so any number of threads can search it concurrently;
+ * a changed knowledge base is handled by building a new index.
+ */
+final class HnswIndex {
+    
+    private static final int[] NO_LINKS = new int[0];
+    
+    private static final IntPredicate ANY_NODE = node -> true;
+    
+    private final int dimensions;
+    
+    private final int maxConnections;
+    
+    private final int maxBaseConnections;
+    
+    private final int efConstruction;
+    
+    private final double levelMultiplier;
+    
+    private final float[][] vectors;
+    
+    // links[node][layer] holds the neighbours of a node on each layer it belongs to
+    private final int[][][] links;
+    
+    private int entryPoint = -1;
+    
+    private int topLayer = -1;
+    
+    private HnswIndex(int size, int dimensions, int m, int efConstruction) {
+        this.dimensions = dimensions;
+        this.maxConnections = m;
+        this.maxBaseConnections = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.vectors = new float[size][];
+        this.links = new int[size][][];
+    }
+    
+    /**
+     * Build an index over a list of vectors; node numbers are positions in the list
+     * @param vectors Vectors of equal length
+     * @param m Maximum neighbours per node on the upper layers
+     * @param efConstruction Candidate list size while linking new nodes
+     * @param seed Seed for the layer assignment, so builds are reproducible
+     * @return Index over all vectors
+     */
+    static HnswIndex build(List<float[]> vectors, int m, int efConstruction, long seed) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW m must be at least 2");
+        }
+        int dimensions = vectors.isEmpty() ? 0 : vectors.get(0).length;
+        HnswIndex index = new HnswIndex(vectors.size(), dimensions, m, efConstruction);
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int node = 0; node < vectors.size(); node++) {
+            float[] vector = vectors.get(node);
+            if (vector.length != dimensions) {
+                throw new IllegalArgumentException("Vector " + node + " has " + vector.length
+                    + " dimensions, expected " + dimensions);
+            }
+            index.vectors[node] = VectorMath.normalize(vector);
+            index.insert(node, index.randomLayer(random));
+        }
+        return index;
+    }
+    
+    /**
+     * Number of indexed vectors
+     * @return Index size
+     */
+    int size() {
+        return vectors.length;
+    }
+    
+    /**
+     * Dimensions of the indexed vectors
+     * @return Vector length, 0 for an empty index
+     */
+    int dimensions() {
+        return dimensions;
+    }
+    
+    /**
+     * Find the nodes most similar to a query vector
+     * @param query Query vector, need not be normalized
+     * @param k Maximum number of results
+     * @param ef Candidate list size on the bottom layer; larger values improve recall and cost time
+     * @param accept Nodes that may be returned; rejected nodes are still traversed
+     * @return Up to k accepted nodes, most similar first
+     */
+    List<ScoredNode> search(float[] query, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0 || k <= 0) {
+            return List.of();
+        }
+        if (query.length != dimensions) {
+            throw new IllegalArgumentException("Query has " + query.length + " dimensions, index has " + dimensions);
+        }
+        
+        float[] normalized = VectorMath.normalize(query);
+        int entry = entryPoint;
+        for (int layer = topLayer; layer > 0; layer--) {
+            entry = searchLayer(normalized, entry, 1, layer, ANY_NODE).get(0).node();
+        }
+        List<ScoredNode> found = searchLayer(normalized, entry, Math.max(ef, k), 0, accept);
+        return found.size() > k ? found.subList(0, k) : found;
+    }
+    
+    /**
+     * Score a few given nodes against a query without searching the graph
+     * @param query Query vector, need not be normalized
+     * @param nodes Nodes to score
+     * @return The given nodes, most similar first
+     */
+    List<ScoredNode> score(float[] query, int[] nodes) {
+        if (query.length != dimensions) {
+            throw new IllegalArgumentException("Query has " + query.length + " dimensions, index has " + dimensions);
+        }
+        float[] normalized = VectorMath.normalize(query);
+        List<ScoredNode> scored = new ArrayList<>(nodes.length);
+        for (int node : nodes) {
+            scored.add(new ScoredNode(node, dot(normalized, vectors[node])));
+        }
+        scored.sort(Comparator.comparingDouble(ScoredNode::score).reversed());
+        return scored;
+    }
+    
+    /**
+     * Link a new node into every layer from its own level down to the bottom layer
+     * @param node Node number, with its vector already stored
+     * @param level Highest layer of the node
+     */
+    private void insert(int node, int level) {
+        links[node] = new int[level + 1][];
+        Arrays.fill(links[node], NO_LINKS);
+        if (entryPoint < 0) {
+            entryPoint = node;
+            topLayer = level;
+            return;
+        }
+        
+        float[] vector = vectors[node];
+        int entry = entryPoint;
+        for (int layer = topLayer; layer > level; layer--) {
+            entry = searchLayer(vector, entry, 1, layer, ANY_NODE).get(0).node();
+        }
+        for (int layer = Math.min(level, topLayer); layer >= 0; layer--) {
+            List<ScoredNode> found = searchLayer(vector, entry, efConstruction, layer, ANY_NODE);
+            int[] neighbours = selectNeighbours(found, maxConnections);
+            links[node][layer] = neighbours;
+            int maxLinks = layer == 0 ? maxBaseConnections : maxConnections;
+            for (int neighbour : neighbours) {
+                addLink(neighbour, node, layer, maxLinks);
+            }
+            entry = found.get(0).node();
+        }
+        
+        if (level > topLayer) {
+            entryPoint = node;
+            topLayer = level;
+        }
+    }
+    
+    /**
+     * Add a link from one node to another, pruning the node's links if it has too many
+     * @param node Node gaining a link
+     * @param neighbour Linked node
+     * @param layer Layer of the link
+     * @param maxLinks Maximum links of a node on this layer
+     */
+    private void addLink(int node, int neighbour, int layer, int maxLinks) {
+        int[] current = links[node][layer];
+        int[] extended = Arrays.copyOf(current, current.length + 1);
+        extended[current.length] = neighbour;
+        if (extended.length > maxLinks) {
+            List<ScoredNode> candidates = new ArrayList<>(extended.length);
+            for (int linked : extended) {
+                candidates.add(new ScoredNode(linked, dot(vectors[node], vectors[linked])));
+            }
+            candidates.sort(Comparator.comparingDouble(ScoredNode::score).reversed());
+            extended = selectNeighbours(candidates, maxLinks);
+        }
+        links[node][layer] = extended;
+    }
+    
+    /**
+     * Choose neighbours with the HNSW heuristic: a candidate is skipped when it is closer
+     * to an already chosen neighbour than to the base node, which keeps links spread out.
+     * Remaining slots are filled with the closest skipped candidates.
+     * @param candidates Candidates, most similar first
+     * @param max Maximum number of neighbours
+     * @return Chosen neighbours
+     */
+    private int[] selectNeighbours(List<ScoredNode> candidates, int max) {
+        int[] selected = new int[Math.min(max, candidates.size())];
+        boolean[] chosen = new boolean[candidates.size()];
+        int count = 0;
+        for (int i = 0; i < candidates.size() && count < selected.length; i++) {
+            ScoredNode candidate = candidates.get(i);
+            boolean diverse = true;
+            for (int j = 0; j < count; j++) {
+                if (dot(vectors[candidate.node()], vectors[selected[j]]) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = candidate.node();
+                chosen[i] = true;
+            }
+        }
+        for (int i = 0; i < candidates.size() && count < selected.length; i++) {
+            if (!chosen[i]) {
+                selected[count++] = candidates.get(i).node();
+            }
+        }
+        return selected;
+    }
+    
+    /**
+     * Best-first search of one layer from an entry node
+     * @param query Normalized query vector
+     * @param entry Entry node
+     * @param ef Number of results to keep
+     * @param layer Layer to search
+     * @param accept Nodes that may be returned
+     * @return Up to ef accepted nodes, most similar first
+     */
+    private List<ScoredNode> searchLayer(float[] query, int entry, int ef, int layer, IntPredicate accept) {
+        boolean[] visited = new boolean[vectors.length];
+        PriorityQueue<ScoredNode> candidates = new PriorityQueue<>(
+            Comparator.comparingDouble(ScoredNode::score).reversed());
+        PriorityQueue<ScoredNode> results = new PriorityQueue<>(Comparator.comparingDouble(ScoredNode::score));
+        
+        ScoredNode start = new ScoredNode(entry, dot(query, vectors[entry]));
+        visited[entry] = true;
+        candidates.add(start);
+        if (accept.test(entry)) {
+            results.add(start);
+        }
+        
+        while (!candidates.isEmpty()) {
+            ScoredNode current = candidates.poll();
+            if (results.size() >= ef && current.score() < results.peek().score()) {
+                break;
+            }
+            for (int neighbour : links[current.node()][layer]) {
+                if (visited[neighbour]) {
+                    continue;
+                }
+                visited[neighbour] = true;
+                float score = dot(query, vectors[neighbour]);
+                if (results.size() < ef || score > results.peek().score()) {
+                    ScoredNode next = new ScoredNode(neighbour, score);
+                    candidates.add(next);
+                    if (accept.test(neighbour)) {
+                        results.add(next);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        
+        List<ScoredNode> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(ScoredNode::score).reversed());
+        return sorted;
+    }
+    
+    private int randomLayer(SplittableRandom random) {
+        return (int) Math.floor(-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+    }
+    
+    private static float dot(float[] a, float[] b) {
+        return VectorMath.dot(a, 0, b);
+    }
+}
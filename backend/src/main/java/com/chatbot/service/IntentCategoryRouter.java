@@ -0,0 +1,47 @@
+package com.chatbot.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapping from a detected chat intent to the knowledge base categories that can answer it.
+ *
+ * Messages with a mapped intent are retrieved only from those categories, falling back
+ * to the whole knowledge base when the scoped matches are weak (see
+ * {@link RagService#retrieveRoutedDocuments}). Intents without categories, such as
+ * general inquiries, search every document.
+ */
+public class IntentCategoryRouter {
+    
+    private final Map<String, List<String>> categoriesByIntent;
+    
+    /**
+     * Create the router
+     * @param categoriesByIntent Categories of each intent; intents that are missing or map to no categories are not routed
+     */
+    public IntentCategoryRouter(Map<String, List<String>> categoriesByIntent) {
+        Map<String, List<String>> routes = new HashMap<>();
+        categoriesByIntent.forEach((intent, categories) -> {
+            List<String> cleaned = categories.stream()
+                .map(String::trim)
+                .filter(category -> !category.isEmpty())
+                .distinct()
+                .toList();
+            if (!cleaned.isEmpty()) {
+                routes.put(intent, cleaned);
+            }
+        });
+        this.categoriesByIntent = routes;
+    }
+    
+    /**
+     * Knowledge base categories to search for an intent
+     * @param intent Detected intent, such as ORDER_STATUS_INQUIRY
+     * @return Categories to search, or an empty list to search all documents
+     */
+    public List<String> categoriesFor(String intent) {
+        return categoriesByIntent.getOrDefault(intent, Collections.emptyList());
+    }
+}
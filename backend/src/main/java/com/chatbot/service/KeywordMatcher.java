@@ -0,0 +1,158 @@
+package com.chatbot.service;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over lowercase ASCII keywords.
+ *
+ * The automaton is compiled into a dense transition table, so matching is one
+ * array lookup per character with no backtracking and no allocation. Callers
+ * drive it themselves with {@link #next(int, char)} and read the keywords that
+ * end in a state with {@link #outputs(int)}; this lets a caller combine keyword
+ * matching with its own per-character scanning in a single pass.
+ * Keywords match anywhere in the text, like {@link String#contains}.
+ */
+public class KeywordMatcher {
+    
+    private static final int ALPHABET = 128;
+    
+    private static final int[] NO_OUTPUTS = new int[0];
+    
+    private final List<String> keywords;
+    
+    private final int[] transitions;
+    
+    private final int[][] outputs;
+    
+    /**
+     * Compile the automaton
+     * @param keywords Lowercase ASCII keywords; the index of each keyword is reported on a match
+     */
+    public KeywordMatcher(List<String> keywords) {
+        this.keywords = List.copyOf(keywords);
+        
+        int maxStates = 1;
+        for (String keyword : this.keywords) {
+            if (keyword.isEmpty()) {
+                throw new IllegalArgumentException("Keywords must not be empty");
+            }
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (c >= ALPHABET || Character.isUpperCase(c)) {
+                    throw new IllegalArgumentException("Keywords must be lowercase ASCII: " + keyword);
+                }
+            }
+            maxStates += keyword.length();
+        }
+        
+        int[] table = new int[maxStates * ALPHABET];
+        Arrays.fill(table, -1);
+        int[][] stateOutputs = new int[maxStates][];
+        Arrays.fill(stateOutputs, NO_OUTPUTS);
+        
+        // Build the keyword trie
+        int stateCount = 1;
+        for (int k = 0; k < this.keywords.size(); k++) {
+            String keyword = this.keywords.get(k);
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                int index = state * ALPHABET + keyword.charAt(i);
+                if (table[index] < 0) {
+                    table[index] = stateCount++;
+                }
+                state = table[index];
+            }
+            stateOutputs[state] = append(stateOutputs[state], k);
+        }
+        
+        // Breadth-first pass: resolve failure links into direct transitions and
+        // inherit the outputs of the failure state
+        int[] failure = new int[stateCount];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int child = table[c];
+            if (child < 0) {
+                table[c] = 0;
+            } else {
+                failure[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int c = 0; c < ALPHABET; c++) {
+                int index = state * ALPHABET + c;
+                int child = table[index];
+                int fallback = table[failure[state] * ALPHABET + c];
+                if (child < 0) {
+                    table[index] = fallback;
+                } else {
+                    failure[child] = fallback;
+                    for (int output : stateOutputs[fallback]) {
+                        stateOutputs[child] = append(stateOutputs[child], output);
+                    }
+                    queue.add(child);
+                }
+            }
+        }
+        
+        this.transitions = Arrays.copyOf(table, stateCount * ALPHABET);
+        this.outputs = Arrays.copyOf(stateOutputs, stateCount);
+    }
+    
+    /**
+     * Advance the automaton by one character, ignoring case.
+     * Characters outside ASCII reset the automaton to the start state.
+     * @param state Current state, 0 at the start of the text
+     * @param c Next character
+     * @return Next state
+     */
+    public int next(int state, char c) {
+        if (c >= ALPHABET) {
+            return 0;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            c = (char) (c + ('a' - 'A'));
+        }
+        return transitions[state * ALPHABET + c];
+    }
+    
+    /**
+     * Keywords that end at a state
+     * @param state Automaton state
+     * @return Indexes of the matched keywords, empty if none
+     */
+    public int[] outputs(int state) {
+        return outputs[state];
+    }
+    
+    /**
+     * Number of automaton states
+     * @return State count
+     */
+    public int stateCount() {
+        return outputs.length;
+    }
+    
+    /**
+     * Keywords in index order
+     * @return Keywords
+     */
+    public List<String> getKeywords() {
+        return keywords;
+    }
+    
+    private static int[] append(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return values;
+            }
+        }
+        int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+}
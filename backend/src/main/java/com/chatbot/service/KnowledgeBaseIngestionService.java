@@ -0,0 +1,546 @@
+package com.chatbot.service;
+
+import com.chatbot.llm.EmbeddingProvider;
+import com.chatbot.model.KnowledgeBase;
+import com.chatbot.model.KnowledgeChunk;
+import com.chatbot.repository.KnowledgeBaseRepository;
+import com.chatbot.repository.KnowledgeBaseVectorRepository;
+import com.chatbot.repository.KnowledgeChunkRepository;
+import com.chatbot.repository.KnowledgeChunkVectorRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Synchronizes the knowledge base table with the source documents in the background.
+ *
+ * Documents are read from the configured resource location and compared with the
+ * stored rows by document ID. A row keeps its embedding when the SHA-256 hash of the
+ * content and the embedding model are unchanged; its other fields are updated in
+ * place. New and changed documents are embedded in batches of batch-size texts per
+ * provider call with up to parallelism batches in flight, and rows whose document
+ * no longer exists in the source are deleted, unless a source document could not be
+ * read or the location matched no documents at all. The application serves requests while
+ * the sync runs; the progress is exposed through {@link #getState()} and the
+ * rag.ingestion.ready gauge, and document outcomes are counted in rag.ingestion.documents.
+ *
+ * With rag.chunking.enabled, every synced document is also split by a {@link TextChunker}
+ * into knowledge_chunk rows with their own embeddings, computed from the document title
+ * and the chunk text. A document is re-chunked when its content, the chunking settings or
+ * the embedding model have changed; its old chunks are replaced only once all new chunks
+ * are embedded. Chunk outcomes are counted in rag.ingestion.chunks.
+ */
+@Service
+public class KnowledgeBaseIngestionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(KnowledgeBaseIngestionService.class);
+    
+    public enum State {
+        NOT_STARTED, WARMING, READY, FAILED
+    }
+    
+    @Autowired
+    private KnowledgeBaseRepository knowledgeBaseRepository;
+    
+    @Autowired
+    private EmbeddingBatcher embeddingBatcher;
+    
+    @Autowired
+    private EmbeddingProvider embeddingProvider;
+    
+    @Autowired
+    private RagService ragService;
+    
+    @Autowired
+    private VectorIndexService vectorIndexService;
+    
+    @Autowired
+    private SemanticResponseCache semanticResponseCache;
+    
+    @Autowired
+    private ResourceLoader resourceLoader;
+    
+    @Autowired
+    private KnowledgeBaseVectorRepository knowledgeBaseVectorRepository;
+    
+    @Autowired
+    private KnowledgeChunkRepository knowledgeChunkRepository;
+    
+    @Autowired
+    private KnowledgeChunkVectorRepository knowledgeChunkVectorRepository;
+    
+    @Autowired
+    private PromptBuilder promptBuilder;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    @Qualifier("knowledgeBaseIngestionExecutor")
+    private Executor ingestionExecutor;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${rag.ingestion.location:classpath:knowledge-base/*.json}")
+    private String location;
+    
+    @Value("${rag.ingestion.batch-size:16}")
+    private int batchSize;
+    
+    @Value("${rag.chunking.enabled:false}")
+    private boolean chunkingEnabled;
+    
+    @Value("${rag.chunking.max-tokens:200}")
+    private int chunkMaxTokens;
+    
+    @Value("${rag.chunking.overlap-tokens:40}")
+    private int chunkOverlapTokens;
+    
+    private TextChunker chunker;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private volatile State state = State.NOT_STARTED;
+    
+    private final AtomicInteger loadedDocuments = new AtomicInteger();
+    
+    private final AtomicInteger failedDocuments = new AtomicInteger();
+    
+    private CompletableFuture<Void> currentRun;
+    
+    @PostConstruct
+    public void init() {
+        Gauge.builder("rag.ingestion.ready", this, service -> service.isReady() ? 1 : 0).register(meterRegistry);
+        chunker = new TextChunker(promptBuilder::countTokens, chunkMaxTokens, chunkOverlapTokens);
+    }
+    
+    /**
+     * Start ingesting the knowledge base in the background, unless a run is already in progress
+     * @return Future completing when the run has finished
+     */
+    public synchronized CompletableFuture<Void> start() {
+        if (currentRun != null && !currentRun.isDone()) {
+            return currentRun;
+        }
+        state = State.WARMING;
+        loadedDocuments.set(0);
+        failedDocuments.set(0);
+        
+        CompletableFuture<Void> run = new CompletableFuture<>();
+        Thread coordinator = new Thread(() -> {
+            try {
+                ingest();
+            } finally {
+                run.complete(null);
+            }
+        }, "knowledge-base-ingestion");
+        coordinator.setDaemon(true);
+        currentRun = run;
+        coordinator.start();
+        return run;
+    }
+    
+    public State getState() {
+        return state;
+    }
+    
+    public boolean isReady() {
+        return state == State.READY;
+    }
+    
+    public int getLoadedDocuments() {
+        return loadedDocuments.get();
+    }
+    
+    public int getFailedDocuments() {
+        return failedDocuments.get();
+    }
+    
+    /**
+     * Compare the source documents with the stored rows, embed and store the new and
+     * changed ones batch by batch, delete removed ones, then publish the result
+     */
+    private void ingest() {
+        long start = System.nanoTime();
+        try {
+            logger.info("Synchronizing knowledge base from {}", location);
+            String model = embeddingProvider.getModel();
+            List<KnowledgeBase> documents = readDocuments();
+            // An empty source is more likely a wrong location than a deliberately emptied knowledge base
+            boolean sourceComplete = failedDocuments.get() == 0 && !documents.isEmpty();
+            if (documents.isEmpty()) {
+                logger.warn("No knowledge base documents found at {}, keeping the stored documents", location);
+            }
+            
+            Map<String, KnowledgeBase> stored = new HashMap<>();
+            for (KnowledgeBase kb : knowledgeBaseRepository.findAll()) {
+                stored.put(kb.getDocumentId(), kb);
+            }
+            // Rows without a stored vector are invisible to the pgvector search, so they are embedded again
+            boolean storeVectors = knowledgeBaseVectorRepository.hasVectorColumn();
+            Set<Long> missingVectors = storeVectors ? knowledgeBaseVectorRepository.findIdsWithoutVector() : Set.of();
+            
+            List<KnowledgeBase> toEmbed = new ArrayList<>();
+            Collection<KnowledgeBase> synced = new ConcurrentLinkedQueue<>();
+            int unchanged = 0;
+            int updated = 0;
+            for (KnowledgeBase document : documents) {
+                KnowledgeBase existing = stored.remove(document.getDocumentId());
+                if (existing == null) {
+                    toEmbed.add(document);
+                } else if (document.getContentHash().equals(existing.getContentHash())
+                        && model.equals(existing.getEmbeddingModel())
+                        && existing.getEmbedding() != null
+                        && !missingVectors.contains(existing.getId())) {
+                    if (!sameFields(existing, document)) {
+                        updated++;
+                    }
+                    if (updateUnchanged(existing, document)) {
+                        synced.add(existing);
+                    }
+                    unchanged++;
+                } else {
+                    copyFields(document, existing);
+                    toEmbed.add(existing);
+                }
+            }
+            recordDocuments("unchanged", unchanged);
+            
+            List<CompletableFuture<Void>> batches = new ArrayList<>();
+            for (int from = 0; from < toEmbed.size(); from += batchSize) {
+                List<KnowledgeBase> batch = toEmbed.subList(from, Math.min(from + batchSize, toEmbed.size()));
+                batches.add(CompletableFuture.runAsync(() -> ingestBatch(batch, model, storeVectors, synced), ingestionExecutor));
+            }
+            CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).join();
+            
+            // Only delete when every source document was read, so a broken file or location does not remove rows
+            int deleted = 0;
+            if (sourceComplete && !stored.isEmpty()) {
+                knowledgeChunkRepository.deleteByKnowledgeBaseIds(
+                    stored.values().stream().map(KnowledgeBase::getId).toList());
+                knowledgeBaseRepository.deleteAll(stored.values());
+                deleted = stored.size();
+                recordDocuments("deleted", deleted);
+                logger.info("Deleted knowledge base documents no longer in the source: {}", stored.keySet());
+            }
+            
+            int rechunked = chunkingEnabled ? syncChunks(synced, model) : 0;
+            
+            ragService.invalidateLexicalIndex();
+            if (!toEmbed.isEmpty() || updated > 0 || deleted > 0 || rechunked > 0) {
+                // Cached replies may quote documents that have just changed
+                semanticResponseCache.invalidateAll();
+            }
+            vectorIndexService.refresh(!toEmbed.isEmpty() || deleted > 0 || rechunked > 0);
+            state = failedDocuments.get() > 0 && loadedDocuments.get() == 0 ? State.FAILED : State.READY;
+            logger.info("Knowledge base sync finished in {} ms: {} unchanged, {} embedded, {} deleted, {} failed",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), unchanged,
+                loadedDocuments.get() - unchanged, deleted, failedDocuments.get());
+        
+        } catch (Exception e) {
+            state = State.FAILED;
+            logger.error("Error ingesting knowledge base", e);
+        }
+    }
+    
+    /**
+     * Parse every JSON document at the configured location
+     * @return Parsed documents without embeddings
+     */
+    private List<KnowledgeBase> readDocuments() throws Exception {
+        Resource[] resources = ResourcePatternUtils.getResourcePatternResolver(resourceLoader).getResources(location);
+        List<KnowledgeBase> documents = new ArrayList<>(resources.length);
+        for (Resource resource : resources) {
+            try {
+                String content = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                Map<?, ?> document = objectMapper.readValue(content, Map.class);
+                KnowledgeBase kb = new KnowledgeBase(
+                    (String) document.get("id"),
+                    (String) document.get("title"),
+                    (String) document.get("content"),
+                    (String) document.get("category"),
+                    objectMapper.writeValueAsString(document.get("tags"))
+                );
+                kb.setContentHash(contentHash(kb.getContent()));
+                documents.add(kb);
+            } catch (Exception e) {
+                failedDocuments.incrementAndGet();
+                recordDocuments("failed", 1);
+                logger.error("Error reading knowledge base document: {}", resource.getFilename(), e);
+            }
+        }
+        return documents;
+    }
+    
+    /**
+     * Keep the stored embedding of an unchanged document, updating its other fields if needed
+     * @param existing Stored row
+     * @param document Source document
+     * @return Whether the row is up to date
+     */
+    private boolean updateUnchanged(KnowledgeBase existing, KnowledgeBase document) {
+        if (sameFields(existing, document)) {
+            loadedDocuments.incrementAndGet();
+            return true;
+        }
+        try {
+            copyFields(document, existing);
+            knowledgeBaseRepository.save(existing);
+            loadedDocuments.incrementAndGet();
+            return true;
+        } catch (Exception e) {
+            failedDocuments.incrementAndGet();
+            recordDocuments("failed", 1);
+            logger.error("Error updating knowledge base document: {}", document.getDocumentId(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Whether a stored row has the title, category and tags of its source document
+     * @param existing Stored row
+     * @param document Source document
+     * @return true if none of these fields changed
+     */
+    private static boolean sameFields(KnowledgeBase existing, KnowledgeBase document) {
+        return Objects.equals(existing.getTitle(), document.getTitle())
+            && Objects.equals(existing.getCategory(), document.getCategory())
+            && Objects.equals(existing.getTags(), document.getTags());
+    }
+    
+    /**
+     * Copy the source fields of a document onto its stored row
+     * @param document Source document
+     * @param existing Stored row
+     */
+    private void copyFields(KnowledgeBase document, KnowledgeBase existing) {
+        existing.setTitle(document.getTitle());
+        existing.setContent(document.getContent());
+        existing.setCategory(document.getCategory());
+        existing.setTags(document.getTags());
+        existing.setContentHash(document.getContentHash());
+        existing.setUpdatedDate(LocalDateTime.now());
+    }
+    
+    /**
+     * Embed a batch of new or changed documents in one provider call and store them
+     * @param batch Documents to embed, either new entities or stored rows with updated fields
+     * @param model Embedding model the vectors come from
+     * @param storeVectors Whether to store the vectors in the pgvector column too
+     * @param synced Receives the documents stored successfully
+     */
+    private void ingestBatch(List<KnowledgeBase> batch, String model, boolean storeVectors, Collection<KnowledgeBase> synced) {
+        List<float[]> vectors;
+        try {
+            List<String> contents = new ArrayList<>(batch.size());
+            for (KnowledgeBase document : batch) {
+                contents.add(document.getContent());
+            }
+            vectors = embeddingBatcher.embedAll(contents);
+        } catch (Exception e) {
+            failedDocuments.addAndGet(batch.size());
+            recordDocuments("failed", batch.size());
+            logger.error("Error embedding batch of {} knowledge base documents", batch.size(), e);
+            return;
+        }
+        
+        for (int i = 0; i < batch.size(); i++) {
+            KnowledgeBase document = batch.get(i);
+            try {
+                synced.add(store(document, vectors.get(i), model, storeVectors));
+                loadedDocuments.incrementAndGet();
+                recordDocuments("embedded", 1);
+                logger.info("Embedded knowledge base document: {}", document.getDocumentId());
+            } catch (Exception e) {
+                failedDocuments.incrementAndGet();
+                recordDocuments("failed", 1);
+                logger.error("Error storing knowledge base document: {}", document.getDocumentId(), e);
+            }
+        }
+    }
+    
+    /**
+     * Save a document with its new embedding. The row and its vector column are written
+     * in one transaction, so a failed vector update leaves the previous row in place and
+     * the document is embedded again on the next sync.
+     * @param document New document or stored row
+     * @param vector Embedding vector
+     * @param model Embedding model the vector comes from
+     * @param storeVectors Whether to store the vector in the pgvector column too
+     * @return Stored row
+     */
+    private KnowledgeBase store(KnowledgeBase document, float[] vector, String model, boolean storeVectors) throws Exception {
+        document.setEmbedding(objectMapper.writeValueAsString(vector));
+        document.setEmbeddingModel(model);
+        return transactionTemplate.execute(status -> {
+            KnowledgeBase kb = knowledgeBaseRepository.save(document);
+            if (storeVectors) {
+                knowledgeBaseVectorRepository.updateEmbeddingVector(kb.getId(), vector);
+            }
+            return kb;
+        });
+    }
+    
+    /**
+     * Re-chunk the documents whose stored chunks are missing or stale. New chunks are
+     * embedded in batches first; a document's old chunks are then replaced in one
+     * transaction, or kept if any of its new chunks could not be embedded or stored.
+     * Chunks are stale when the document's title, content or chunker settings change,
+     * since the title is part of every embedded chunk text.
+     * @param documents Stored documents that are up to date
+     * @param model Embedding model for the chunk vectors
+     * @return Number of documents whose chunks were replaced
+     */
+    private int syncChunks(Collection<KnowledgeBase> documents, String model) {
+        Map<Long, Set<String>> sources = knowledgeChunkVectorRepository.findChunkSources();
+        Map<Long, List<PendingChunk>> pendingByDocument = new LinkedHashMap<>();
+        List<PendingChunk> pending = new ArrayList<>();
+        for (KnowledgeBase document : documents) {
+            String sourceHash = contentHash(document.getTitle() + "/" + document.getContentHash() + "/" + chunker.describe());
+            if (Set.of(sourceHash + "/" + model).equals(sources.get(document.getId()))) {
+                continue;
+            }
+            List<String> texts = chunker.chunk(document.getContent());
+            List<PendingChunk> chunks = new ArrayList<>(texts.size());
+            for (int i = 0; i < texts.size(); i++) {
+                KnowledgeChunk chunk = new KnowledgeChunk(document.getId(), i, texts.get(i));
+                chunk.setSourceHash(sourceHash);
+                chunk.setEmbeddingModel(model);
+                chunks.add(new PendingChunk(chunk, document.getTitle() + "\n\n" + texts.get(i)));
+            }
+            pendingByDocument.put(document.getId(), chunks);
+            pending.addAll(chunks);
+        }
+        if (pendingByDocument.isEmpty()) {
+            return 0;
+        }
+        
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<PendingChunk> batch = pending.subList(from, Math.min(from + batchSize, pending.size()));
+            batches.add(CompletableFuture.runAsync(() -> embedChunks(batch), ingestionExecutor));
+        }
+        CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).join();
+        
+        boolean storeVectors = knowledgeChunkVectorRepository.hasVectorColumn();
+        int replaced = 0;
+        for (Map.Entry<Long, List<PendingChunk>> entry : pendingByDocument.entrySet()) {
+            List<PendingChunk> chunks = entry.getValue();
+            if (chunks.stream().anyMatch(chunk -> chunk.vector == null)) {
+                recordChunks("failed", chunks.size());
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    knowledgeChunkRepository.deleteByKnowledgeBaseIds(List.of(entry.getKey()));
+                    for (PendingChunk pendingChunk : chunks) {
+                        KnowledgeChunk chunk = knowledgeChunkRepository.save(pendingChunk.chunk);
+                        if (storeVectors) {
+                            knowledgeChunkVectorRepository.updateEmbeddingVector(chunk.getId(), pendingChunk.vector);
+                        }
+                    }
+                });
+                recordChunks("embedded", chunks.size());
+                replaced++;
+            } catch (Exception e) {
+                recordChunks("failed", chunks.size());
+                logger.error("Error storing chunks of knowledge base entry: {}", entry.getKey(), e);
+            }
+        }
+        logger.info("Chunked {} knowledge base documents into {} chunks", replaced, pending.size());
+        return replaced;
+    }
+    
+    /**
+     * Embed a batch of chunks in one provider call, leaving their vectors unset on failure
+     * @param batch Chunks to embed
+     */
+    private void embedChunks(List<PendingChunk> batch) {
+        try {
+            List<String> texts = new ArrayList<>(batch.size());
+            for (PendingChunk chunk : batch) {
+                texts.add(chunk.text);
+            }
+            List<float[]> vectors = embeddingBatcher.embedAll(texts);
+            for (int i = 0; i < batch.size(); i++) {
+                PendingChunk chunk = batch.get(i);
+                chunk.vector = vectors.get(i);
+                chunk.chunk.setEmbedding(objectMapper.writeValueAsString(chunk.vector));
+            }
+        } catch (Exception e) {
+            logger.error("Error embedding batch of {} knowledge base chunks", batch.size(), e);
+        }
+    }
+    
+    /**
+     * Hex-encoded SHA-256 of document content
+     * @param content Document content
+     * @return Content hash
+     */
+    static String contentHash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private void recordDocuments(String result, int count) {
+        if (count > 0) {
+            meterRegistry.counter("rag.ingestion.documents", "result", result).increment(count);
+        }
+    }
+    
+    private void recordChunks(String result, int count) {
+        if (count > 0) {
+            meterRegistry.counter("rag.ingestion.chunks", "result", result).increment(count);
+        }
+    }
+    
+    /**
+     * Chunk waiting for its embedding, with the text that is embedded for it
+     */
+    private static class PendingChunk {
+        
+        private final KnowledgeChunk chunk;
+        private final String text;
+        private volatile float[] vector;
+        
+        PendingChunk(KnowledgeChunk chunk, String text) {
+            this.chunk = chunk;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.chatbot.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead with an adaptive concurrency limit around LLM calls.
+ *
+ * At most {@code limit} calls run at once; further callers wait in a bounded queue for
+ * at most max-wait-ms and are rejected immediately when the queue is full, so a slow
+ * provider cannot tie up every request thread. The limit follows AIMD: it grows by
+ * 1/limit for every call that completes within the latency threshold and is cut by
+ * the backoff ratio when a call fails or is slower than the threshold. Calls turned
+ * away by the completion circuit breaker leave the limit unchanged, since they never
+ * reached the provider.
+ * In-flight, queued, limit and rejection metrics are published under chat.llm.bulkhead.
+ */
+@Component
+public class LlmBulkhead {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LlmBulkhead.class);
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${chat.llm.bulkhead.initial-limit:16}")
+    private int initialLimit;
+    
+    @Value("${chat.llm.bulkhead.min-limit:2}")
+    private int minLimit;
+    
+    @Value("${chat.llm.bulkhead.max-limit:64}")
+    private int maxLimit;
+    
+    @Value("${chat.llm.bulkhead.max-queue:32}")
+    private int maxQueue;
+    
+    @Value("${chat.llm.bulkhead.max-wait-ms:2000}")
+    private long maxWaitMs;
+    
+    @Value("${chat.llm.bulkhead.latency-threshold-ms:8000}")
+    private long latencyThresholdMs;
+    
+    @Value("${chat.llm.bulkhead.backoff-ratio:0.75}")
+    private double backoffRatio;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    
+    private final Condition permitReleased = lock.newCondition();
+    
+    private double limit;
+    
+    private int inFlight;
+    
+    private int queued;
+    
+    @PostConstruct
+    public void init() {
+        limit = initialLimit;
+        Gauge.builder("chat.llm.bulkhead.limit", this, LlmBulkhead::getLimit).register(meterRegistry);
+        Gauge.builder("chat.llm.bulkhead.in-flight", this, LlmBulkhead::getInFlight).register(meterRegistry);
+        Gauge.builder("chat.llm.bulkhead.queued", this, LlmBulkhead::getQueued).register(meterRegistry);
+    }
+    
+    /**
+     * Run an LLM call within the bulkhead, adapting the limit to its latency
+     * @param call LLM call
+     * @return Result of the call
+     * @throws BulkheadRejectedException if no permit became available in time
+     */
+    public <T> T execute(Supplier<T> call) {
+        return execute(call, true);
+    }
+    
+    /**
+     * Run a long-lived LLM call, such as a streamed completion, within the bulkhead.
+     * Only failures adapt the limit, since the duration depends on the reply length.
+     * @param call LLM call
+     * @return Result of the call
+     * @throws BulkheadRejectedException if no permit became available in time
+     */
+    public <T> T executeIgnoringLatency(Supplier<T> call) {
+        return execute(call, false);
+    }
+    
+    private <T> T execute(Supplier<T> call, boolean measureLatency) {
+        acquire();
+        long start = System.nanoTime();
+        boolean success = false;
+        boolean circuitOpen = false;
+        try {
+            T result = call.get();
+            success = true;
+            return result;
+        } catch (CircuitBreaker.CircuitOpenException e) {
+            circuitOpen = true;
+            throw e;
+        } finally {
+            if (circuitOpen) {
+                releaseUnchanged();
+            } else {
+                long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                release(success && (!measureLatency || latencyMs <= latencyThresholdMs));
+            }
+        }
+    }
+    
+    /**
+     * Take a permit, waiting in the queue for at most max-wait-ms
+     */
+    private void acquire() {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+            if (queued >= maxQueue) {
+                reject("queue-full");
+            }
+            
+            queued++;
+            try {
+                long remainingNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (inFlight >= (int) limit) {
+                    if (remainingNanos <= 0) {
+                        reject("timeout");
+                    }
+                    remainingNanos = permitReleased.awaitNanos(remainingNanos);
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reject("interrupted");
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Return a permit and adjust the limit
+     * @param healthy Whether the call succeeded within the latency threshold
+     */
+    private void release(boolean healthy) {
+        lock.lock();
+        try {
+            inFlight--;
+            double previous = limit;
+            if (healthy) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            } else {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            }
+            if ((int) limit != (int) previous) {
+                logger.debug("LLM concurrency limit changed from {} to {}", (int) previous, (int) limit);
+            }
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Return a permit without adjusting the limit
+     */
+    private void releaseUnchanged() {
+        lock.lock();
+        try {
+            inFlight--;
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void reject(String reason) {
+        meterRegistry.counter("chat.llm.bulkhead.rejected", "reason", reason).increment();
+        logger.warn("LLM call rejected by bulkhead ({}): {} in flight, {} queued, limit {}", reason, inFlight, queued, (int) limit);
+        throw new BulkheadRejectedException("LLM bulkhead rejected call: " + reason);
+    }
+    
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Thrown when the bulkhead has no capacity for another LLM call
+     */
+    public static class BulkheadRejectedException extends RuntimeException {
+        
+        public BulkheadRejectedException(String message) {
+            super(message);
+        }
+    }
+}
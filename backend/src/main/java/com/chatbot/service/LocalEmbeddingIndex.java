@@ -0,0 +1,126 @@
+package com.chatbot.service;
+
+import com.chatbot.llm.HashedNgramEmbedder;
+import com.chatbot.model.RetrievedDocument;
+import com.chatbot.repository.KnowledgeBaseVectorRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+/**
+ * Retrieval with the local {@link HashedNgramEmbedder}, independent of the embedding provider.
+ *
+ * The title and content of every knowledge base document are embedded in process when
+ * the index is first searched, the title twice so that it weighs more, and kept in an
+ * {@link ExactVectorIndex}. Building the index reads only the retrieval fields of the
+ * table and embedding a query takes microseconds, so this keeps retrieval working while
+ * the provider is unreachable and in environments without network access. Local
+ * vectors are never stored, so they can not be mixed up with provider embeddings.
+ */
+@Service
+public class LocalEmbeddingIndex {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LocalEmbeddingIndex.class);
+    
+    @Autowired
+    private KnowledgeBaseVectorRepository knowledgeBaseVectorRepository;
+    
+    @Value("${rag.local-embedding.dimensions:512}")
+    private int dimensions;
+    
+    @Value("${rag.exact.min-rows-per-task:4096}")
+    private int minRowsPerTask;
+    
+    private HashedNgramEmbedder embedder;
+    
+    private final Object buildLock = new Object();
+    
+    private volatile Indexed indexed;
+    
+    @PostConstruct
+    public void init() {
+        embedder = new HashedNgramEmbedder(dimensions);
+    }
+    
+    /**
+     * Drop the index after the knowledge base has changed; it is rebuilt on the next search
+     */
+    public void invalidate() {
+        indexed = null;
+    }
+    
+    /**
+     * Embed a text with the local model
+     * @param text Text to embed
+     * @return Unit vector
+     */
+    public float[] embed(String text) {
+        return embedder.embed(text);
+    }
+    
+    /**
+     * Find the documents most similar to a query under the local model
+     * @param query User query
+     * @param categories Categories to filter by, or an empty collection for all documents
+     * @param limit Maximum number of results
+     * @return Similar documents with their cosine similarity, most similar first
+     */
+    public List<RetrievedDocument> search(String query, Collection<String> categories, int limit) {
+        Indexed current = indexed;
+        if (current == null) {
+            synchronized (buildLock) {
+                if (indexed == null) {
+                    indexed = build();
+                }
+                current = indexed;
+            }
+        }
+        
+        RetrievedDocument[] documents = current.documents;
+        IntPredicate accept = categories.isEmpty() ? node -> true : node -> categories.contains(documents[node].category());
+        List<RetrievedDocument> results = new ArrayList<>();
+        for (ScoredNode node : current.index.search(embedder.embed(query), limit, accept)) {
+            // Documents without a single shared feature are not relevant
+            if (node.score() <= 0) {
+                break;
+            }
+            RetrievedDocument document = documents[node.node()];
+            results.add(new RetrievedDocument(document.id(), document.title(), document.content(),
+                document.category(), node.score()));
+        }
+        return results;
+    }
+    
+    private Indexed build() {
+        long start = System.nanoTime();
+        List<RetrievedDocument> documents = knowledgeBaseVectorRepository.findAllDocuments();
+        List<float[]> vectors = new ArrayList<>(documents.size());
+        for (RetrievedDocument document : documents) {
+            vectors.add(embedder.embed(document.title() + "\n" + document.title() + "\n" + document.content()));
+        }
+        Indexed built = new Indexed(documents.toArray(new RetrievedDocument[0]), ExactVectorIndex.build(vectors, minRowsPerTask));
+        logger.info("Built local {} index over {} knowledge base documents in {} ms", embedder.getModel(),
+            documents.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return built;
+    }
+    
+    private static class Indexed {
+        
+        private final RetrievedDocument[] documents;
+        private final ExactVectorIndex index;
+        
+        Indexed(RetrievedDocument[] documents, ExactVectorIndex index) {
+            this.documents = documents;
+            this.index = index;
+        }
+    }
+}
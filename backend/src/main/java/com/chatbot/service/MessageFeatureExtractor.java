@@ -0,0 +1,191 @@
+package com.chatbot.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Single-pass extraction of intent signals, status keywords and order numbers
+ * from a customer message.
+ *
+ * All keywords are compiled into one {@link KeywordMatcher}; per automaton state the
+ * matched signals and the best status are precomputed, so a message is scanned once
+ * without lower-casing, splitting or regular expressions. Order numbers such as
+ * ORD-001 or ORD-001-002 are recognised in the same loop.
+ * Whole-word keywords are padded with spaces and every non-alphanumeric character is
+ * fed to the automaton as a space, so " how " matches "how" but not "show".
+ */
+public class MessageFeatureExtractor {
+    
+    private static final String ORDER_PREFIX = "ORD-";
+    
+    private final KeywordMatcher matcher;
+    
+    private final int[] stateSignals;
+    
+    private final int[] stateStatusRank;
+    
+    private final String[] statuses;
+    
+    /**
+     * Compile the extractor
+     * @param extraKeywords Keywords added to the built-in keywords of each signal
+     * @param statusKeywords Status keywords in priority order; the status reported is the upper-cased keyword
+     */
+    public MessageFeatureExtractor(Map<MessageSignal, List<String>> extraKeywords, List<String> statusKeywords) {
+        // Keyword text -> signal bitmask / status rank, merged when several signals share a keyword
+        Map<String, Integer> keywordSignals = new LinkedHashMap<>();
+        for (MessageSignal signal : MessageSignal.values()) {
+            List<String> keywords = new ArrayList<>(signal.getKeywords());
+            keywords.addAll(extraKeywords.getOrDefault(signal, Collections.emptyList()));
+            for (String keyword : keywords) {
+                String normalized = normalize(keyword);
+                if (normalized.isEmpty()) {
+                    continue;
+                }
+                if (signal.isWholeWord()) {
+                    normalized = " " + normalized + " ";
+                }
+                keywordSignals.merge(normalized, 1 << signal.ordinal(), (a, b) -> a | b);
+            }
+        }
+        
+        this.statuses = new String[statusKeywords.size()];
+        Map<String, Integer> keywordStatus = new LinkedHashMap<>();
+        for (int i = 0; i < statusKeywords.size(); i++) {
+            String normalized = normalize(statusKeywords.get(i));
+            statuses[i] = normalized.toUpperCase(Locale.ROOT);
+            keywordStatus.putIfAbsent(normalized, i);
+        }
+        
+        List<String> keywords = new ArrayList<>(keywordSignals.keySet());
+        for (String keyword : keywordStatus.keySet()) {
+            if (!keywordSignals.containsKey(keyword)) {
+                keywords.add(keyword);
+            }
+        }
+        this.matcher = new KeywordMatcher(keywords);
+        
+        this.stateSignals = new int[matcher.stateCount()];
+        this.stateStatusRank = new int[matcher.stateCount()];
+        for (int state = 0; state < matcher.stateCount(); state++) {
+            int rank = Integer.MAX_VALUE;
+            for (int k : matcher.outputs(state)) {
+                String keyword = keywords.get(k);
+                stateSignals[state] |= keywordSignals.getOrDefault(keyword, 0);
+                rank = Math.min(rank, keywordStatus.getOrDefault(keyword, Integer.MAX_VALUE));
+            }
+            stateStatusRank[state] = rank;
+        }
+    }
+    
+    /**
+     * Extractor with the built-in keywords only
+     * @return Extractor
+     */
+    public static MessageFeatureExtractor withDefaults() {
+        return new MessageFeatureExtractor(Collections.emptyMap(),
+            List.of("shipped", "processing", "delivered", "cancelled"));
+    }
+    
+    /**
+     * Scan a message once and collect its features
+     * @param message Customer message
+     * @return Extracted features
+     */
+    public MessageFeatures extract(String message) {
+        int state = matcher.next(0, ' ');
+        int signals = stateSignals[state];
+        int statusRank = Integer.MAX_VALUE;
+        List<String> orderNumbers = null;
+        
+        int length = message.length();
+        for (int i = 0; i < length; i++) {
+            char c = message.charAt(i);
+            boolean alphanumeric = isAlphanumeric(c);
+            
+            if ((c == 'O' || c == 'o') && (i == 0 || !isAlphanumeric(message.charAt(i - 1)))) {
+                int end = scanOrderNumber(message, i);
+                if (end > 0) {
+                    String orderNumber = message.substring(i, end).toUpperCase(Locale.ROOT);
+                    if (orderNumbers == null) {
+                        orderNumbers = new ArrayList<>(2);
+                    }
+                    if (!orderNumbers.contains(orderNumber)) {
+                        orderNumbers.add(orderNumber);
+                    }
+                }
+            }
+            
+            state = matcher.next(state, alphanumeric ? c : ' ');
+            signals |= stateSignals[state];
+            statusRank = Math.min(statusRank, stateStatusRank[state]);
+        }
+        state = matcher.next(state, ' ');
+        signals |= stateSignals[state];
+        statusRank = Math.min(statusRank, stateStatusRank[state]);
+        
+        return new MessageFeatures(
+            signals,
+            statusRank == Integer.MAX_VALUE ? null : statuses[statusRank],
+            orderNumbers == null ? Collections.emptyList() : orderNumbers
+        );
+    }
+    
+    /**
+     * Match an order number (ORD-001, ORD-001-002) starting at a word boundary
+     * @param message Customer message
+     * @param start Start index
+     * @return End index (exclusive), or -1 if there is no order number at start
+     */
+    private static int scanOrderNumber(String message, int start) {
+        int length = message.length();
+        if (!message.regionMatches(true, start, ORDER_PREFIX, 0, ORDER_PREFIX.length())) {
+            return -1;
+        }
+        int end = start + ORDER_PREFIX.length();
+        int digitsEnd = skipDigits(message, end);
+        if (digitsEnd == end) {
+            return -1;
+        }
+        end = digitsEnd;
+        // Further "-digits" groups, as in ORD-001-002
+        while (end + 1 < length && message.charAt(end) == '-') {
+            digitsEnd = skipDigits(message, end + 1);
+            if (digitsEnd == end + 1) {
+                break;
+            }
+            end = digitsEnd;
+        }
+        if (end < length && isAlphanumeric(message.charAt(end))) {
+            return -1;
+        }
+        return end;
+    }
+    
+    private static int skipDigits(String message, int index) {
+        while (index < message.length() && message.charAt(index) >= '0' && message.charAt(index) <= '9') {
+            index++;
+        }
+        return index;
+    }
+    
+    private static boolean isAlphanumeric(char c) {
+        if (c < 128) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+        }
+        return Character.isLetterOrDigit(c);
+    }
+    
+    /**
+     * Lower-case a configured keyword and collapse separators to single spaces
+     * @param keyword Configured keyword
+     * @return Normalized keyword
+     */
+    private static String normalize(String keyword) {
+        return keyword.trim().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", " ");
+    }
+}
@@ -0,0 +1,54 @@
+package com.chatbot.service;
+
+import java.util.List;
+
+/**
+ * Features of a customer message extracted in one pass by {@link MessageFeatureExtractor}
+ */
+public class MessageFeatures {
+    
+    private final int signals;
+    
+    private final String status;
+    
+    private final List<String> orderNumbers;
+    
+    MessageFeatures(int signals, String status, List<String> orderNumbers) {
+        this.signals = signals;
+        this.status = status;
+        this.orderNumbers = orderNumbers;
+    }
+    
+    /**
+     * Whether any keyword of a signal occurs in the message
+     * @param signal Signal to check
+     * @return true if the signal was detected
+     */
+    public boolean has(MessageSignal signal) {
+        return (signals & (1 << signal.ordinal())) != 0;
+    }
+    
+    /**
+     * Order status mentioned in the message, by configured priority
+     * @return Status such as SHIPPED, or null if none is mentioned
+     */
+    public String getStatus() {
+        return status;
+    }
+    
+    /**
+     * Distinct order numbers in the order they appear, upper-cased
+     * @return Order numbers, empty if none
+     */
+    public List<String> getOrderNumbers() {
+        return orderNumbers;
+    }
+    
+    /**
+     * First order number in the message
+     * @return Order number, or null if none
+     */
+    public String getFirstOrderNumber() {
+        return orderNumbers.isEmpty() ? null : orderNumbers.get(0);
+    }
+}
@@ -0,0 +1,38 @@
+package com.chatbot.service;
+
+import java.util.List;
+
+/**
+ * Keyword signals detected in a customer message by {@link MessageFeatureExtractor}.
+ * Each signal has built-in keywords; more can be added through configuration.
+ */
+public enum MessageSignal {
+    
+    ORDER(false, "order"),
+    STATUS_QUESTION(false, "status", "where", "track"),
+    HISTORY(false, "history", "past", "previous"),
+    ALL_ORDERS(false, "history", "all", "my orders"),
+    TRACKING(false, "track", "shipping", "delivery"),
+    HELP(false, "help", "support"),
+    RECENCY(false, "recent", "latest"),
+    // Wording that asks for more than a lookup; matched as whole words so "show" is not "how"
+    FOLLOW_UP(true, "why", "how", "cancel", "change", "refund", "return", "problem", "wrong", "late",
+        "delay", "delayed", "damaged", "missing", "complain", "complaint", "address", "can i", "could", "should");
+    
+    private final boolean wholeWord;
+    
+    private final List<String> keywords;
+    
+    MessageSignal(boolean wholeWord, String... keywords) {
+        this.wholeWord = wholeWord;
+        this.keywords = List.of(keywords);
+    }
+    
+    public boolean isWholeWord() {
+        return wholeWord;
+    }
+    
+    public List<String> getKeywords() {
+        return keywords;
+    }
+}
@@ -0,0 +1,215 @@
+package com.chatbot.service;
+
+import com.chatbot.dto.ChatResponse;
+import com.chatbot.model.Order;
+import com.chatbot.repository.OrderRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Template-based answers for simple order questions that do not need the LLM.
+ *
+ * Status questions about exactly one order number and plain order history requests
+ * are answered straight from the order data, with status explanations taken from
+ * the status-transitions knowledge base document. Anything else - several order
+ * numbers, follow-up wording such as "why" or "cancel" (see {@link MessageSignal#FOLLOW_UP}),
+ * or other intents - is left to the LLM by returning null.
+ */
+@Service
+public class OrderAnswerService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OrderAnswerService.class);
+    
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMMM d, yyyy", Locale.US);
+    
+    private static final Map<String, String> DEFAULT_STATUS_DESCRIPTIONS = Map.of(
+        "PENDING", "The order has been received and payment is being processed.",
+        "PROCESSING", "The order has been confirmed and is being prepared for shipment.",
+        "SHIPPED", "The order has been dispatched and is in transit to you.",
+        "DELIVERED", "The order has been delivered.",
+        "CANCELLED", "The order was cancelled before shipment.",
+        "REFUNDED", "The order was returned and the refund has been processed."
+    );
+    
+    @Autowired
+    private OrderRepository orderRepository;
+    
+    @Autowired
+    private ResourceLoader resourceLoader;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${chat.fast-path.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${chat.fast-path.history-limit:10}")
+    private int historyLimit;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private final Map<String, String> statusDescriptions = new HashMap<>(DEFAULT_STATUS_DESCRIPTIONS);
+    
+    /**
+     * Load status explanations from the status-transitions knowledge base document
+     */
+    @PostConstruct
+    public void loadStatusDescriptions() {
+        try {
+            Resource resource = resourceLoader.getResource("classpath:knowledge-base/status-transitions.json");
+            if (!resource.exists()) {
+                return;
+            }
+            Map<?, ?> document = objectMapper.readValue(resource.getInputStream(), Map.class);
+            String content = (String) document.get("content");
+            String[] sentences = content.split("(?<=\\.)\\s+");
+            for (int i = 0; i < sentences.length; i++) {
+                for (String status : DEFAULT_STATUS_DESCRIPTIONS.keySet()) {
+                    if (sentences[i].startsWith(status + " status")) {
+                        // Keep the defining sentence plus a following "This usually takes..." sentence
+                        String description = sentences[i];
+                        if (i + 1 < sentences.length && sentences[i + 1].startsWith("This ")) {
+                            description += " " + sentences[i + 1];
+                        }
+                        statusDescriptions.put(status, description);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Could not load status descriptions from knowledge base, using defaults: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Answer a message directly from order data if it is an unambiguous order question
+     * @param intent Detected intent
+     * @param features Features extracted from the customer message
+     * @param customerId Authenticated customer ID
+     * @return Templated ChatResponse, or null if the LLM should answer
+     */
+    public ChatResponse tryAnswer(String intent, MessageFeatures features, Long customerId) {
+        // Follow-up wording such as "why" or "cancel" asks for more than a lookup
+        if (!enabled || features.has(MessageSignal.FOLLOW_UP)) {
+            return null;
+        }
+        
+        List<String> orderNumbers = features.getOrderNumbers();
+        ChatResponse response = null;
+        // "status of ORD-002" carries no "order" keyword, so the order number itself counts
+        boolean statusQuestion = "ORDER_STATUS_INQUIRY".equals(intent) || features.has(MessageSignal.STATUS_QUESTION);
+        if (statusQuestion && orderNumbers.size() == 1) {
+            // Keep a more specific analyzed intent such as TRACKING_INFO
+            String statusIntent = "GENERAL_INQUIRY".equals(intent) ? "ORDER_STATUS_INQUIRY" : intent;
+            response = answerOrderStatus(orderNumbers.get(0), customerId, statusIntent);
+        } else if ("ORDER_HISTORY".equals(intent) && orderNumbers.isEmpty()) {
+            response = answerOrderHistory(customerId);
+        }
+        
+        if (response != null) {
+            meterRegistry.counter("chat.fast-path.answers", "intent", response.getIntent()).increment();
+            logger.info("Answered {} from order data without calling the LLM", response.getIntent());
+        }
+        return response;
+    }
+    
+    /**
+     * Answer a status question about a single order
+     * @param orderNumber Order number
+     * @param customerId Authenticated customer ID
+     * @param intent Intent reported with the answer
+     * @return Templated ChatResponse
+     */
+    private ChatResponse answerOrderStatus(String orderNumber, Long customerId, String intent) {
+        Optional<Order> order = orderRepository.findByOrderNumber(orderNumber);
+        if (order.isEmpty()) {
+            return new ChatResponse(
+                "I couldn't find order " + orderNumber + " in our system. Please check the order number and try again.",
+                intent, 0.95);
+        }
+        
+        Order o = order.get();
+        
+        // Security check: ensure order belongs to authenticated customer
+        if (!o.getCustomerId().equals(customerId)) {
+            return new ChatResponse(
+                "I'm sorry, but I can only provide information about your own orders. The order number '" +
+                orderNumber + "' does not belong to your account.",
+                intent, 0.95);
+        }
+        
+        StringBuilder answer = new StringBuilder();
+        answer.append("Your order ").append(o.getOrderNumber()).append(" is currently ").append(o.getStatus()).append(". ");
+        String description = statusDescriptions.get(o.getStatus());
+        if (description != null) {
+            answer.append(description).append(" ");
+        }
+        if (o.getTotalAmount() != null) {
+            answer.append(String.format("The order total is $%.2f", o.getTotalAmount()));
+            answer.append(o.getCreatedDate() != null ? " and it was placed on " + formatDate(o.getCreatedDate()) + ". " : ". ");
+        } else if (o.getCreatedDate() != null) {
+            answer.append("It was placed on ").append(formatDate(o.getCreatedDate())).append(". ");
+        }
+        if (o.getUpdatedDate() != null) {
+            answer.append("It was last updated on ").append(formatDate(o.getUpdatedDate())).append(". ");
+        }
+        answer.append("Is there anything else I can help you with?");
+        
+        return new ChatResponse(answer.toString(), intent, 0.95);
+    }
+    
+    /**
+     * Answer an order history request with the newest orders, up to
+     * chat.fast-path.history-limit, and a count of the older ones
+     * @param customerId Authenticated customer ID
+     * @return Templated ChatResponse
+     */
+    private ChatResponse answerOrderHistory(Long customerId) {
+        List<Order> orders = orderRepository.findByCustomerIdOrderByCreatedDateDescIdDesc(
+            customerId, PageRequest.of(0, historyLimit));
+        if (orders.isEmpty()) {
+            return new ChatResponse("I couldn't find any orders on your account yet.", "ORDER_HISTORY", 0.95);
+        }
+        
+        StringBuilder answer = new StringBuilder("Here is your order history:\n");
+        for (Order o : orders) {
+            answer.append("- Order ").append(o.getOrderNumber()).append(": ").append(o.getStatus());
+            if (o.getTotalAmount() != null) {
+                answer.append(String.format(", $%.2f", o.getTotalAmount()));
+            }
+            if (o.getCreatedDate() != null) {
+                answer.append(", placed on ").append(formatDate(o.getCreatedDate()));
+            }
+            answer.append("\n");
+        }
+        if (orders.size() == historyLimit) {
+            long more = orderRepository.countByCustomerId(customerId) - orders.size();
+            if (more > 0) {
+                answer.append("...and ").append(more).append(more == 1 ? " older order" : " older orders").append(".\n");
+            }
+        }
+        answer.append("Let me know if you'd like more details about any of these orders.");
+        
+        return new ChatResponse(answer.toString(), "ORDER_HISTORY", 0.95);
+    }
+    
+    private String formatDate(LocalDateTime dateTime) {
+        return dateTime.format(DATE_FORMAT);
+    }
+}
@@ -0,0 +1,241 @@
+package com.chatbot.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assembles the chat prompt within a token budget.
+ *
+ * Tokens are counted locally with the BPE encoding of the configured model
+ * (cl100k_base for unknown models). Context sections are packed in priority
+ * order into whatever budget remains after the static system prompt and the
+ * customer message; the static prompt text and its token count are computed
+ * once. Token counts per section are recorded in chat.prompt.tokens.
+ */
+@Service
+public class PromptBuilder {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PromptBuilder.class);
+    
+    private static final String SYSTEM_PROMPT_PREFIX = """
+        You are a helpful and polite customer service AI assistant for an online order status service.
+        Your role is to help customers with their order-related inquiries.
+        
+        Key guidelines:
+        1. Always be polite, professional, and customer-focused
+        2. Help customers check order status, order history, and tracking information
+        3. Ask for order numbers when needed to provide specific information
+        4. Provide clear, concise, and helpful responses
+        5. If you don't have specific order information, guide customers to provide their order number
+        6. Be empathetic and understanding of customer concerns
+        7. Keep responses conversational but professional
+        8. If you can't help with a specific request, politely redirect to human support
+        9. Use the provided knowledge base information to give accurate and detailed responses
+        10. When order data is available, provide specific details about order status, amounts, and dates
+        11. If an order is not found, politely inform the customer and ask them to verify the order number
+        
+        Common customer inquiries you can help with:
+        - Order status checks (provide specific order number like ORD-001)
+        - Order history requests
+        - Tracking information
+        - General order-related questions
+        
+        Available order statuses:
+        - PROCESSING: Order is being prepared
+        - SHIPPED: Order has been shipped
+        - DELIVERED: Order has been delivered
+        - CANCELLED: Order has been cancelled
+        
+        Knowledge Base Context and Order Data:
+        """;
+    
+    private static final String SYSTEM_PROMPT_SUFFIX = """
+        
+        
+        Remember: You're here to make the customer experience smooth and helpful!
+        Use the knowledge base information and order data to provide accurate and helpful responses.
+        If specific order information is provided, use it to give detailed, personalized responses.
+        """;
+    
+    private static final String OMITTED_ENTRIES_NOTE = "(%d more entries omitted to fit the prompt size limit)\n";
+    
+    // Chat format overhead: tokens per message plus the tokens priming the reply
+    private static final int TOKENS_PER_MESSAGE = 4;
+    private static final int REPLY_PRIMING_TOKENS = 3;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${openai.model:gpt-3.5-turbo}")
+    private String model;
+    
+    @Value("${chat.prompt.max-tokens:3000}")
+    private int maxPromptTokens;
+    
+    @Value("${chat.prompt.min-truncated-entry-tokens:32}")
+    private int minTruncatedEntryTokens;
+    
+    private Encoding encoding;
+    
+    private int staticPromptTokens;
+    
+    private int omittedNoteTokens;
+    
+    @PostConstruct
+    public void init() {
+        EncodingRegistry registry = Encodings.newLazyEncodingRegistry();
+        encoding = registry.getEncodingForModel(model)
+            .orElseGet(() -> registry.getEncoding(EncodingType.CL100K_BASE));
+        staticPromptTokens = countTokens(SYSTEM_PROMPT_PREFIX) + countTokens(SYSTEM_PROMPT_SUFFIX)
+            + 2 * TOKENS_PER_MESSAGE + REPLY_PRIMING_TOKENS;
+        omittedNoteTokens = countTokens(String.format(OMITTED_ENTRIES_NOTE, 10000));
+        logger.info("Prompt builder using {} encoding, static prompt is {} tokens, budget {} tokens",
+            encoding.getName(), staticPromptTokens, maxPromptTokens);
+    }
+    
+    /**
+     * Build the system and user messages for a completion request
+     * @param userMessage Customer message
+     * @param sections Context sections in the order they should appear in the prompt
+     * @return System prompt with packed context followed by the user message
+     */
+    public List<ChatMessage> buildMessages(String userMessage, List<PromptSection> sections) {
+        int userTokens = countTokens(userMessage);
+        int budget = maxPromptTokens - staticPromptTokens - userTokens;
+        
+        // Pack by priority, keeping the original order for equal priorities
+        List<PromptSection> byPriority = new ArrayList<>(sections);
+        byPriority.sort(Comparator.comparingInt(PromptSection::getPriority));
+        Map<PromptSection, String> packed = new IdentityHashMap<>();
+        int contextTokens = 0;
+        for (PromptSection section : byPriority) {
+            PackedSection result = pack(section, budget);
+            if (result == null) {
+                meterRegistry.counter("chat.prompt.truncated", "section", section.getName()).increment();
+                logger.debug("Dropped prompt section {}, {} tokens left", section.getName(), budget);
+                continue;
+            }
+            if (result.truncated) {
+                meterRegistry.counter("chat.prompt.truncated", "section", section.getName()).increment();
+            }
+            packed.put(section, result.text);
+            budget -= result.tokens;
+            contextTokens += result.tokens;
+            recordTokens(section.getName(), result.tokens);
+        }
+        
+        StringBuilder systemPrompt = new StringBuilder(SYSTEM_PROMPT_PREFIX);
+        for (PromptSection section : sections) {
+            String text = packed.get(section);
+            if (text != null) {
+                systemPrompt.append(text);
+            }
+        }
+        systemPrompt.append(SYSTEM_PROMPT_SUFFIX);
+        
+        recordTokens("system", staticPromptTokens);
+        recordTokens("user-message", userTokens);
+        recordTokens("total", staticPromptTokens + userTokens + contextTokens);
+        
+        return Arrays.asList(
+            new ChatMessage("system", systemPrompt.toString()),
+            new ChatMessage("user", userMessage)
+        );
+    }
+    
+    /**
+     * Count tokens with the model's encoding, treating special tokens as plain text
+     * @param text Text to count
+     * @return Token count
+     */
+    public int countTokens(String text) {
+        return encoding.countTokensOrdinary(text);
+    }
+    
+    /**
+     * Fit a section into the remaining budget, dropping entries from its end
+     * and cutting the last entry short if enough budget is left for it
+     * @param section Section to pack
+     * @param budget Remaining token budget
+     * @return Rendered section with its token count, or null if not even the header fits
+     */
+    private PackedSection pack(PromptSection section, int budget) {
+        int used = countTokens(section.getHeader()) + countTokens(section.getFooter());
+        if (used > budget) {
+            return null;
+        }
+        
+        StringBuilder text = new StringBuilder(section.getHeader());
+        List<String> entries = section.getEntries();
+        int included = 0;
+        boolean truncated = false;
+        for (String entry : entries) {
+            // Keep room for the omission note unless this is the last entry
+            int reserve = included < entries.size() - 1 ? omittedNoteTokens : 0;
+            int entryTokens = countTokens(entry);
+            if (used + entryTokens + reserve <= budget) {
+                text.append(entry);
+                used += entryTokens;
+                included++;
+                continue;
+            }
+            
+            int available = budget - used - omittedNoteTokens;
+            if (available >= minTruncatedEntryTokens) {
+                String partial = encoding.decode(encoding.encodeOrdinary(entry, available).getTokens());
+                text.append(partial).append("...\n");
+                used += countTokens(partial) + 2;
+                included++;
+            }
+            truncated = true;
+            break;
+        }
+        
+        int omitted = entries.size() - included;
+        if (omitted > 0) {
+            text.append(String.format(OMITTED_ENTRIES_NOTE, omitted));
+            used += omittedNoteTokens;
+        }
+        text.append(section.getFooter());
+        return new PackedSection(text.toString(), used, truncated);
+    }
+    
+    private void recordTokens(String section, int tokens) {
+        DistributionSummary.builder("chat.prompt.tokens")
+            .tag("section", section)
+            .baseUnit("tokens")
+            .register(meterRegistry)
+            .record(tokens);
+    }
+    
+    private static class PackedSection {
+        
+        private final String text;
+        private final int tokens;
+        private final boolean truncated;
+        
+        PackedSection(String text, int tokens, boolean truncated) {
+            this.text = text;
+            this.tokens = tokens;
+            this.truncated = truncated;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.chatbot.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A block of context for the system prompt, packed by {@link PromptBuilder}.
+ *
+ * A section is rendered as its header, its entries and its footer. Sections with a
+ * lower priority value are packed first; entries that do not fit the token budget
+ * are dropped from the end of the section and replaced by a short note.
+ */
+public class PromptSection {
+    
+    private final String name;
+    private final int priority;
+    private final String header;
+    private final List<String> entries;
+    private final String footer;
+    
+    public PromptSection(String name, int priority, String header, List<String> entries, String footer) {
+        this.name = name;
+        this.priority = priority;
+        this.header = header;
+        this.entries = entries;
+        this.footer = footer;
+    }
+    
+    /**
+     * Section consisting of a single block of text
+     * @param name Section name used in metrics
+     * @param priority Packing priority, lower values are packed first
+     * @param text Section text
+     * @return Prompt section
+     */
+    public static PromptSection text(String name, int priority, String text) {
+        return new PromptSection(name, priority, text, Collections.emptyList(), "");
+    }
+    
+    /**
+     * Render the section as plain text, listing at most maxEntries entries
+     * @param maxEntries Maximum number of entries to include
+     * @return Section text
+     */
+    public String render(int maxEntries) {
+        StringBuilder text = new StringBuilder(header);
+        for (int i = 0; i < entries.size() && i < maxEntries; i++) {
+            text.append(entries.get(i));
+        }
+        if (entries.size() > maxEntries) {
+            text.append(String.format("(%d more not shown)\n", entries.size() - maxEntries));
+        }
+        text.append(footer);
+        return text.toString();
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public int getPriority() {
+        return priority;
+    }
+    
+    public String getHeader() {
+        return header;
+    }
+    
+    public List<String> getEntries() {
+        return entries;
+    }
+    
+    public String getFooter() {
+        return footer;
+    }
+}
@@ -0,0 +1,102 @@
+package com.chatbot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Bounded cache of query embeddings keyed by embedding model and normalized query text.
+ *
+ * Vectors are stored as primitive float arrays and the cache is bounded by their
+ * approximate heap size rather than by entry count. Eviction uses Caffeine's
+ * W-TinyLFU policy, so frequent questions survive bursts of one-off queries.
+ * Entries do not expire by time, since a query's embedding only changes with the model.
+ * When a different model is first used, the entries of the previous one can no longer
+ * be hit and are dropped at once instead of waiting to be evicted.
+ * Hit, miss and eviction counts are published under the "rag.query-embeddings" cache name.
+ */
+@Component
+public class QueryEmbeddingCache {
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${rag.embedding-cache.max-bytes:67108864}")
+    private long maxBytes;
+    
+    private Cache<CacheKey, float[]> cache;
+    
+    private volatile String currentModel;
+    
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((CacheKey key, float[] vector) -> key.weight() + vector.length * Float.BYTES)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "rag.query-embeddings");
+    }
+    
+    /**
+     * Store the embedding of a query
+     * @param model Embedding model name; entries of other models are never returned
+     * @param text Query text
+     * @param embedding Embedding vector
+     */
+    public void put(String model, String text, float[] embedding) {
+        useModel(model);
+        cache.put(new CacheKey(model, normalize(text)), embedding);
+    }
+    
+    /**
+     * Get the embedding for a query if it is cached
+     * @param model Embedding model name
+     * @param text Query text
+     * @return Embedding vector, or null on a miss
+     */
+    public float[] getIfPresent(String model, String text) {
+        useModel(model);
+        return cache.getIfPresent(new CacheKey(model, normalize(text)));
+    }
+    
+    /**
+     * Drop the cached embeddings when the embedding model changes
+     * @param model Embedding model of the current call
+     */
+    private void useModel(String model) {
+        if (model.equals(currentModel)) {
+            return;
+        }
+        synchronized (this) {
+            if (!model.equals(currentModel)) {
+                currentModel = model;
+                cache.invalidateAll();
+            }
+        }
+    }
+    
+    /**
+     * Normalize query text so trivially different spellings share a cache entry
+     * @param text Query text
+     * @return Lower-cased text with collapsed whitespace
+     */
+    static String normalize(String text) {
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+    
+    private record CacheKey(String model, String text) {
+        
+        int weight() {
+            // Object headers plus UTF-16 characters of both strings
+            return 64 + (model.length() + text.length()) * 2;
+        }
+    }
+}
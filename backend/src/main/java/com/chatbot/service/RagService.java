@@ -1,134 +1,225 @@
 package com.chatbot.service;
 
+import com.chatbot.llm.EmbeddingProvider;
 import com.chatbot.model.KnowledgeBase;
+import com.chatbot.model.RetrievedDocument;
 import com.chatbot.repository.KnowledgeBaseRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.theokanning.openai.embedding.EmbeddingRequest;
-import com.theokanning.openai.embedding.EmbeddingResult;
-import com.theokanning.openai.service.OpenAiService;
+import com.chatbot.repository.KnowledgeBaseVectorRepository;
+import com.chatbot.repository.KnowledgeChunkVectorRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.ResourceLoader;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntPredicate;
 
 @Service
 public class RagService {
     
     private static final Logger logger = LoggerFactory.getLogger(RagService.class);
     
+    /**
+     * Where vector similarity searches run: the pgvector column in PostgreSQL, or the
+     * in-process HNSW graph or exact scan of {@link VectorIndexService}
+     */
+    public enum VectorBackend {
+        PGVECTOR, HNSW, EXACT
+    }
+    
+    /**
+     * How the local hashed n-gram embedder of {@link LocalEmbeddingIndex} takes part in
+     * retrieval: not at all; instead of the embedding provider; only when the provider
+     * fails or its circuit is open; or as a first stage whose candidates are re-ranked
+     * with the provider embedding
+     */
+    public enum LocalEmbeddingMode {
+        OFF, PRIMARY, FALLBACK, PREFILTER
+    }
+    
+    /**
+     * How vector and BM25 lexical results are combined: vector search only; both fused by
+     * reciprocal rank; or lexical results alone when they are confident enough, which
+     * skips the embedding call, and fused results otherwise
+     */
+    public enum RetrievalMode {
+        VECTOR, HYBRID, LEXICAL_FIRST
+    }
+    
+    // Weights of title, tags and content occurrences in the BM25 index
+    private static final float[] LEXICAL_FIELD_WEIGHTS = {2.0f, 1.5f, 1.0f};
+    
     @Autowired
-    private OpenAiService openAiService;
+    private EmbeddingBatcher embeddingBatcher;
+    
+    @Autowired
+    private EmbeddingProvider embeddingProvider;
     
     @Autowired
     private KnowledgeBaseRepository knowledgeBaseRepository;
     
     @Autowired
-    private ResourceLoader resourceLoader;
+    private KnowledgeBaseVectorRepository knowledgeBaseVectorRepository;
+    
+    @Autowired
+    private KnowledgeChunkVectorRepository knowledgeChunkVectorRepository;
     
     @Autowired
-    private JdbcTemplate jdbcTemplate;
+    private VectorIndexService vectorIndexService;
+    
+    @Autowired
+    private LocalEmbeddingIndex localEmbeddingIndex;
+    
+    @Autowired
+    private QueryEmbeddingCache queryEmbeddingCache;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    @Qualifier("embeddingCircuitBreaker")
+    private CircuitBreaker embeddingCircuitBreaker;
+    
+    @Value("${rag.singleflight.timeout-ms:10000}")
+    private long embeddingFlightTimeoutMs;
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Value("${rag.retrieval.backend:PGVECTOR}")
+    private VectorBackend vectorBackend;
+    
+    @Value("${rag.retrieval.shadow-sample-rate:0.0}")
+    private double shadowSampleRate;
+    
+    // Vector searches return the best chunks of documents instead of whole documents
+    @Value("${rag.chunking.enabled:false}")
+    private boolean chunked;
+    
+    @Value("${rag.local-embedding.mode:OFF}")
+    private LocalEmbeddingMode localEmbeddingMode;
+    
+    @Value("${rag.local-embedding.prefilter-candidates:50}")
+    private int prefilterCandidates;
+    
+    @Value("${rag.hybrid.mode:VECTOR}")
+    private RetrievalMode retrievalMode;
+    
+    @Value("${rag.hybrid.candidates:20}")
+    private int hybridCandidates;
+    
+    @Value("${rag.hybrid.rrf-k:60}")
+    private int rrfK;
+    
+    @Value("${rag.hybrid.lexical-confidence:0.6}")
+    private double lexicalConfidence;
+    
+    @Value("${rag.routing.min-similarity:0.7}")
+    private double routingMinSimilarity;
+    
+    @Autowired
+    @Qualifier("retrievalShadowExecutor")
+    private Executor retrievalShadowExecutor;
+    
+    private SingleFlight<String, float[]> embeddingFlight;
+    
+    // BM25 index over the knowledge base, built on first use
+    private volatile LexicalIndex lexicalIndex;
+    
+    private final Object lexicalIndexLock = new Object();
+    
+    @PostConstruct
+    public void init() {
+        // Identical texts embedded concurrently share one provider call
+        embeddingFlight = new SingleFlight<>("embedding", embeddingFlightTimeoutMs, meterRegistry);
+        logger.info("Vector retrieval backend: {}, shadow sample rate: {}, local embedding: {}, retrieval mode: {}",
+                   vectorBackend, shadowSampleRate, localEmbeddingMode, retrievalMode);
+    }
     
     /**
-     * Initialize knowledge base with documents from resources
+     * Drop the documents cached for lexical and local embedding retrieval after the
+     * knowledge base has changed
      */
-    public void initializeKnowledgeBase() {
-        try {
-            logger.info("Initializing knowledge base...");
-            
-            // Define the specific knowledge base files to load
-            String[] knowledgeBaseFiles = {
-                "order-status-overview.json",
-                "status-transitions.json", 
-                "fulfillment-workflow.json",
-                "api-get-order-status.json",
-                "api-get-customer-orders.json",
-                "api-track-order.json",
-                "shipping-methods.json"
-            };
-            
-            for (String filename : knowledgeBaseFiles) {
-                try {
-                    Resource resource = resourceLoader.getResource("classpath:knowledge-base/" + filename);
-                    if (resource.exists()) {
-                        String content = new String(resource.getInputStream().readAllBytes());
-                        Map<String, Object> document = objectMapper.readValue(content, Map.class);
-                        
-                        // Create knowledge base entry
-                        KnowledgeBase kb = new KnowledgeBase(
-                            (String) document.get("id"),
-                            (String) document.get("title"),
-                            (String) document.get("content"),
-                            (String) document.get("category"),
-                            objectMapper.writeValueAsString(document.get("tags"))
-                        );
-                        
-                        // Generate embedding
-                        String embedding = generateEmbedding(kb.getContent());
-                        kb.setEmbedding(embedding);
-                        
-                        // Save to database
-                        knowledgeBaseRepository.save(kb);
-                        
-                        // Update the vector column
-                        updateVectorColumn(kb.getId(), embedding);
-                        
-                        logger.info("Loaded knowledge base document: {}", kb.getDocumentId());
-                    } else {
-                        logger.warn("Knowledge base file not found: {}", filename);
-                    }
-                    
-                } catch (Exception e) {
-                    logger.error("Error loading knowledge base document: {}", filename, e);
-                }
-            }
-            
-            logger.info("Knowledge base initialization completed");
-            
-        } catch (Exception e) {
-            logger.error("Error initializing knowledge base", e);
+    public void invalidateLexicalIndex() {
+        // Waits for a build in progress, which may have read the knowledge base before it changed
+        synchronized (lexicalIndexLock) {
+            lexicalIndex = null;
         }
+        localEmbeddingIndex.invalidate();
     }
     
     /**
-     * Update the vector column for a knowledge base entry
-     * @param id Knowledge base entry ID
-     * @param embeddingJson JSON string of the embedding
+     * Get the embedding of a user query, served from the query embedding cache when possible.
+     * On a miss, concurrent callers with the same normalized query join one provider call
+     * in the embedding single flight, which stores its result in the cache.
+     * @param query User query
+     * @return Embedding vector
      */
-    private void updateVectorColumn(Long id, String embeddingJson) {
+    public float[] embedQuery(String query) {
+        // Keyed by the model that actually produces the vectors, as the stored embeddings are
+        String model = embeddingProvider.getModel();
+        float[] cached = queryEmbeddingCache.getIfPresent(model, query);
+        if (cached != null) {
+            return cached;
+        }
+        String text = QueryEmbeddingCache.normalize(query);
+        return embeddingFlight.execute(model + '\u0000' + text, () -> {
+            // A flight that finished just before this one started has already filled the cache
+            float[] embedding = queryEmbeddingCache.getIfPresent(model, text);
+            if (embedding == null) {
+                embedding = callEmbeddingProvider(text);
+                queryEmbeddingCache.put(model, text, embedding);
+            }
+            return embedding;
+        });
+    }
+    
+    /**
+     * Get the cached embedding of a user query without calling the embedding provider
+     * @param query User query
+     * @return Embedding vector, or null if the query has not been embedded recently
+     */
+    public float[] getCachedQueryEmbedding(String query) {
+        return queryEmbeddingCache.getIfPresent(embeddingProvider.getModel(), query);
+    }
+    
+    /**
+     * Get the embedding of a user query for lookups outside retrieval, such as the
+     * semantic response cache. Retrieval may have answered without embedding the query,
+     * for example after a confident LEXICAL_FIRST match, so the query is embedded here
+     * if needed, unless the provider is not to be called.
+     * @param query User query
+     * @return Embedding vector, or null if the embedding provider is unavailable or unused
+     */
+    public float[] embedQueryIfAvailable(String query) {
+        float[] cached = getCachedQueryEmbedding(query);
+        if (cached != null || localEmbeddingMode == LocalEmbeddingMode.PRIMARY
+                || !embeddingCircuitBreaker.isCallPermitted()) {
+            return cached;
+        }
         try {
-            String sql = "UPDATE knowledge_base SET embedding_vector = json_to_vector(?) WHERE id = ?";
-            jdbcTemplate.update(sql, embeddingJson, id);
-            logger.debug("Updated vector column for knowledge base entry: {}", id);
+            return embedQuery(query);
         } catch (Exception e) {
-            logger.error("Error updating vector column for knowledge base entry: {}", id, e);
+            logger.warn("Could not embed query outside retrieval: {}", e.getMessage());
+            return null;
         }
     }
     
     /**
-     * Generate embedding for text using OpenAI and convert to JSON string
+     * Embed a single text through the embedding batcher
      * @param text Text to embed
-     * @return Embedding vector as JSON string
+     * @return Embedding vector
      */
-    public String generateEmbedding(String text) {
+    private float[] callEmbeddingProvider(String text) {
         try {
-            EmbeddingRequest request = EmbeddingRequest.builder()
-                .model("text-embedding-ada-002")
-                .input(Arrays.asList(text))
-                .build();
-            
-            EmbeddingResult result = openAiService.createEmbeddings(request);
-            List<Double> embedding = result.getData().get(0).getEmbedding();
-            
-            // Convert to JSON string for storage
-            return objectMapper.writeValueAsString(embedding);
-            
+            return embeddingBatcher.embed(text);
+        } catch (CircuitBreaker.CircuitOpenException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error generating embedding", e);
             throw new RuntimeException("Failed to generate embedding", e);
@@ -139,59 +230,329 @@ public class RagService {
      * Retrieve relevant knowledge base documents for a query
      * @param query User query
      * @param limit Maximum number of documents to retrieve
-     * @return List of relevant knowledge base documents
+     * @return Relevant documents with their similarity, most similar first
      */
-    public List<KnowledgeBase> retrieveRelevantDocuments(String query, int limit) {
+    public List<RetrievedDocument> retrieveRelevantDocuments(String query, int limit) {
+        if (localEmbeddingMode == LocalEmbeddingMode.PRIMARY) {
+            return retrieveLocalMatches(query, List.of(), limit);
+        }
+        
+        // Skip the embedding call entirely while the provider is known to be down
+        if (!embeddingCircuitBreaker.isCallPermitted()) {
+            logger.debug("Embedding circuit open, using fallback retrieval for query: {}", query);
+            return retrieveWithoutProvider(query, List.of(), limit);
+        }
+        
         try {
-            // Generate embedding for the query
-            String queryEmbedding = generateEmbedding(query);
+            List<RetrievedDocument> documents = searchRelevant(query, List.of(), limit);
             
-            // Search for similar documents
-            List<Object[]> results = knowledgeBaseRepository.findSimilarDocuments(queryEmbedding, limit);
+            logger.info("Retrieved {} relevant documents for query: {}", documents.size(), query);
+            return documents;
             
-            // Convert results to KnowledgeBase objects
-            List<KnowledgeBase> documents = new ArrayList<>();
-            for (Object[] result : results) {
+        } catch (Exception e) {
+            logger.error("Error retrieving relevant documents, falling back", e);
+            return retrieveWithoutProvider(query, List.of(), limit);
+        }
+    }
+    
+    /**
+     * Retrieval that never calls the embedding provider: the local embedding index unless
+     * it is turned off, otherwise lexical matching. Used while the embedding provider is
+     * unavailable, and while the completion provider is, since only a local answer can be
+     * given then.
+     * @param query User query
+     * @param categories Categories to filter by, or an empty collection for all documents
+     * @param limit Maximum number of documents to retrieve
+     * @return Matching documents, best match first
+     */
+    public List<RetrievedDocument> retrieveWithoutProvider(String query, Collection<String> categories, int limit) {
+        if (localEmbeddingMode != LocalEmbeddingMode.OFF) {
+            return retrieveLocalMatches(query, categories, limit);
+        }
+        return retrieveLexicalMatches(query, categories, limit);
+    }
+    
+    /**
+     * Search with the configured retrieval mode once the embedding provider is available
+     * @param query User query
+     * @param categories Categories to filter by, or an empty collection for all documents
+     * @param limit Maximum number of documents to retrieve
+     * @return Relevant documents, most relevant first
+     */
+    private List<RetrievedDocument> searchRelevant(String query, Collection<String> categories, int limit) {
+        if (retrievalMode == RetrievalMode.VECTOR) {
+            return searchDense(query, categories, limit);
+        }
+        
+        int depth = Math.max(limit, hybridCandidates);
+        List<RetrievedDocument> lexical = retrieveLexicalMatches(query, categories, depth);
+        if (retrievalMode == RetrievalMode.LEXICAL_FIRST) {
+            boolean confident = !lexical.isEmpty() && lexical.get(0).similarity() >= lexicalConfidence;
+            meterRegistry.counter("rag.retrieval.lexical-first", "outcome", confident ? "lexical" : "hybrid").increment();
+            if (confident) {
+                return lexical.size() > limit ? new ArrayList<>(lexical.subList(0, limit)) : lexical;
+            }
+        }
+        return fuse(searchDense(query, categories, depth), lexical, limit);
+    }
+    
+    /**
+     * Embedding-based search, prefiltered by the local embedding index if configured
+     * @param query User query
+     * @param categories Categories to filter by, or an empty collection for all documents
+     * @param limit Maximum number of documents to retrieve
+     * @return Most similar documents, most similar first
+     */
+    private List<RetrievedDocument> searchDense(String query, Collection<String> categories, int limit) {
+        return localEmbeddingMode == LocalEmbeddingMode.PREFILTER
+            ? searchPrefiltered(query, categories, limit)
+            : searchVectors(embedQuery(query), categories, limit);
+    }
+    
+    /**
+     * Retrieve documents with the local embedding index, without calling the embedding
+     * provider, recording the latency in rag.retrieval.latency{backend=local}
+     * @param query User query
+     * @param categories Categories to filter by, or an empty collection for all documents
+     * @param limit Maximum number of documents to retrieve
+     * @return Similar documents under the local model, most similar first
+     */
+    public List<RetrievedDocument> retrieveLocalMatches(String query, Collection<String> categories, int limit) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            List<RetrievedDocument> documents = localEmbeddingIndex.search(query, categories, limit);
+            logger.info("Retrieved {} local embedding matches for query: {}", documents.size(), query);
+            return documents;
+        } catch (Exception e) {
+            logger.error("Error retrieving local embedding matches", e);
+            return new ArrayList<>();
+        } finally {
+            sample.stop(Timer.builder("rag.retrieval.latency")
+                .tag("backend", "local")
+                .register(meterRegistry));
+        }
+    }
+    
+    /**
+     * Two-stage search: the local embedding index selects candidates, which are then
+     * ranked by similarity to the provider embedding on the configured vector backend
+     * @param query User query
+     * @param categories Categories to filter by, or an empty collection for all documents
+     * @param limit Maximum number of documents to retrieve
+     * @return Most similar candidates, most similar first
+     */
+    private List<RetrievedDocument> searchPrefiltered(String query, Collection<String> categories, int limit) {
+        List<RetrievedDocument> candidates = localEmbeddingIndex.search(query, categories, Math.max(limit, prefilterCandidates));
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        List<Long> candidateIds = new ArrayList<>(candidates.size());
+        for (RetrievedDocument candidate : candidates) {
+            candidateIds.add(candidate.id());
+        }
+        float[] embedding = embedQuery(query);
+        
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            if (vectorBackend != VectorBackend.PGVECTOR) {
+                return vectorIndexService.rerank(embedding, candidateIds, limit);
+            }
+            return chunked
+                ? knowledgeChunkVectorRepository.findSimilarChunksAmong(embedding, candidateIds, limit)
+                : knowledgeBaseVectorRepository.findSimilarDocumentsAmong(embedding, candidateIds, limit);
+        } finally {
+            sample.stop(Timer.builder("rag.retrieval.latency")
+                .tag("backend", "prefilter-" + vectorBackend.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry));
+        }
+    }
+    
+    /**
+     * Similarity search on the configured vector backend. A sample of searches is repeated
+     * in the background, on pgvector when HNSW serves retrieval and on HNSW otherwise,
+     * to record HNSW recall against the other backend.
+     * @param embedding Query embedding vector
+     * @param categories Categories to filter by, or an empty collection for all documents
+     * @param limit Maximum number of documents to retrieve
+     * @return Most similar documents, most similar first
+     */
+    private List<RetrievedDocument> searchVectors(float[] embedding, Collection<String> categories, int limit) {
+        List<RetrievedDocument> documents = timedSearch(vectorBackend, embedding, categories, limit);
+        
+        if (shadowSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < shadowSampleRate) {
+            VectorBackend shadow = vectorBackend == VectorBackend.HNSW ? VectorBackend.PGVECTOR : VectorBackend.HNSW;
+            retrievalShadowExecutor.execute(() -> {
                 try {
-                    KnowledgeBase kb = new KnowledgeBase();
-                    kb.setId((Long) result[0]);
-                    kb.setDocumentId((String) result[1]);
-                    kb.setTitle((String) result[2]);
-                    kb.setContent((String) result[3]);
-                    kb.setCategory((String) result[4]);
-                    kb.setTags((String) result[5]);
-                    kb.setEmbedding((String) result[6]);
-                    
-                    // Handle timestamp conversion safely
-                    if (result[7] != null) {
-                        if (result[7] instanceof java.sql.Timestamp) {
-                            kb.setCreatedDate(((java.sql.Timestamp) result[7]).toLocalDateTime());
-                        } else if (result[7] instanceof java.time.LocalDateTime) {
-                            kb.setCreatedDate((java.time.LocalDateTime) result[7]);
-                        }
-                    }
-                    
-                    if (result[8] != null) {
-                        if (result[8] instanceof java.sql.Timestamp) {
-                            kb.setUpdatedDate(((java.sql.Timestamp) result[8]).toLocalDateTime());
-                        } else if (result[8] instanceof java.time.LocalDateTime) {
-                            kb.setUpdatedDate((java.time.LocalDateTime) result[8]);
-                        }
-                    }
-                    
-                    documents.add(kb);
+                    List<RetrievedDocument> shadowDocuments = timedSearch(shadow, embedding, categories, limit);
+                    recordRecall(shadow == VectorBackend.HNSW ? documents : shadowDocuments,
+                                 shadow == VectorBackend.HNSW ? shadowDocuments : documents);
                 } catch (Exception e) {
-                    logger.error("Error mapping result row: {}", Arrays.toString(result), e);
+                    logger.debug("Shadow {} search failed: {}", shadow, e.getMessage());
                 }
+            });
+        }
+        return documents;
+    }
+    
+    /**
+     * Run a similarity search on one backend, recording its latency in rag.retrieval.latency
+     * @param backend Vector backend
+     * @param embedding Query embedding vector
+     * @param categories Categories to filter by, or an empty collection for all documents
+     * @param limit Maximum number of documents to retrieve
+     * @return Most similar documents, most similar first
+     */
+    private List<RetrievedDocument> timedSearch(VectorBackend backend, float[] embedding, Collection<String> categories, int limit) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            if (backend != VectorBackend.PGVECTOR) {
+                return vectorIndexService.search(backend, embedding, categories, limit);
+            }
+            if (chunked) {
+                return categories.isEmpty()
+                    ? knowledgeChunkVectorRepository.findSimilarChunks(embedding, limit)
+                    : knowledgeChunkVectorRepository.findSimilarChunksInCategories(embedding, categories, limit);
             }
+            return categories.isEmpty()
+                ? knowledgeBaseVectorRepository.findSimilarDocuments(embedding, limit)
+                : knowledgeBaseVectorRepository.findSimilarDocumentsInCategories(embedding, categories, limit);
+        } finally {
+            sample.stop(Timer.builder("rag.retrieval.latency")
+                .tag("backend", backend.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry));
+        }
+    }
+    
+    /**
+     * Record the share of reference results that the HNSW index also returned
+     * @param expected pgvector or exact scan results
+     * @param actual HNSW results for the same query
+     */
+    private void recordRecall(List<RetrievedDocument> expected, List<RetrievedDocument> actual) {
+        if (expected.isEmpty()) {
+            return;
+        }
+        Set<Long> actualIds = new HashSet<>();
+        for (RetrievedDocument document : actual) {
+            actualIds.add(document.id());
+        }
+        int found = 0;
+        for (RetrievedDocument document : expected) {
+            if (actualIds.contains(document.id())) {
+                found++;
+            }
+        }
+        DistributionSummary.builder("rag.retrieval.shadow.recall")
+            .register(meterRegistry)
+            .record((double) found / expected.size());
+    }
+    
+    /**
+     * Retrieve documents sharing terms with a query by BM25, without calling the embedding
+     * provider. Title terms count twice and tag terms one and a half times as much as
+     * content terms. The reported similarity is the BM25 score divided by the highest
+     * score the query terms can reach.
+     * @param query User query
+     * @param limit Maximum number of documents to retrieve
+     * @return Matching documents with their similarity, best match first
+     */
+    public List<RetrievedDocument> retrieveLexicalMatches(String query, int limit) {
+        return retrieveLexicalMatches(query, List.of(), limit);
+    }
+    
+    /**
+     * Retrieve documents sharing terms with a query by BM25, optionally within some categories
+     * @param query User query
+     * @param categories Categories to filter by, or an empty collection for all documents
+     * @param limit Maximum number of documents to retrieve
+     * @return Matching documents with their similarity, best match first
+     */
+    public List<RetrievedDocument> retrieveLexicalMatches(String query, Collection<String> categories, int limit) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            LexicalIndex index = currentLexicalIndex();
             
-            logger.info("Retrieved {} relevant documents for query: {}", documents.size(), query);
-            return documents;
+            RetrievedDocument[] documents = index.documents;
+            IntPredicate accept = categories.isEmpty() ? doc -> true : doc -> categories.contains(documents[doc].category());
+            float maxScore = index.bm25.maxScore(query);
+            List<RetrievedDocument> result = new ArrayList<>();
+            for (ScoredNode node : index.bm25.search(query, limit, accept)) {
+                RetrievedDocument document = documents[node.node()];
+                result.add(new RetrievedDocument(document.id(), document.title(), document.content(),
+                    document.category(), Math.min(1.0, node.score() / maxScore)));
+            }
+            logger.info("Retrieved {} lexical matches for query: {}", result.size(), query);
+            return result;
             
         } catch (Exception e) {
-            logger.error("Error retrieving relevant documents", e);
+            logger.error("Error retrieving lexical matches", e);
             return new ArrayList<>();
+        } finally {
+            sample.stop(Timer.builder("rag.retrieval.latency")
+                .tag("backend", "bm25")
+                .register(meterRegistry));
+        }
+    }
+    
+    /**
+     * The BM25 index, built once by the first caller while later ones wait for it
+     * @return Current lexical index
+     */
+    private LexicalIndex currentLexicalIndex() {
+        LexicalIndex current = lexicalIndex;
+        if (current == null) {
+            synchronized (lexicalIndexLock) {
+                if (lexicalIndex == null) {
+                    lexicalIndex = buildLexicalIndex();
+                }
+                current = lexicalIndex;
+            }
+        }
+        return current;
+    }
+    
+    private LexicalIndex buildLexicalIndex() {
+        List<KnowledgeBase> entries = knowledgeBaseRepository.findAll();
+        RetrievedDocument[] documents = new RetrievedDocument[entries.size()];
+        List<String[]> fields = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            KnowledgeBase entry = entries.get(i);
+            documents[i] = RetrievedDocument.of(entry, 0.0);
+            fields.add(new String[] {entry.getTitle(), entry.getTags(), entry.getContent()});
+        }
+        return new LexicalIndex(documents, Bm25Index.build(fields, LEXICAL_FIELD_WEIGHTS));
+    }
+    
+    /**
+     * Merge vector and lexical rankings by reciprocal rank fusion: a document scores
+     * 1 / (k + rank) in each ranking it appears in. Each document is returned as it first
+     * appears, which is its best chunk of the vector ranking when chunking is enabled.
+     * Its similarity is the cosine similarity from the vector ranking, or 0 if only the
+     * lexical ranking found it, so that it stays comparable with vector-only results and
+     * with rag.routing.min-similarity; BM25 scores are only used for the rank.
+     * @param dense Vector search results, best first
+     * @param lexical Lexical search results, best first
+     * @param limit Maximum number of documents to return
+     * @return Fused results, best first
+     */
+    List<RetrievedDocument> fuse(List<RetrievedDocument> dense, List<RetrievedDocument> lexical, int limit) {
+        Map<Long, Double> fusedScores = new HashMap<>();
+        Map<Long, RetrievedDocument> best = new HashMap<>();
+        for (int rank = 0; rank < dense.size(); rank++) {
+            RetrievedDocument document = dense.get(rank);
+            fusedScores.merge(document.id(), 1.0 / (rrfK + rank + 1), Double::sum);
+            best.putIfAbsent(document.id(), document);
         }
+        for (int rank = 0; rank < lexical.size(); rank++) {
+            RetrievedDocument document = lexical.get(rank);
+            fusedScores.merge(document.id(), 1.0 / (rrfK + rank + 1), Double::sum);
+            best.putIfAbsent(document.id(), new RetrievedDocument(
+                document.id(), document.title(), document.content(), document.category(), 0.0));
+        }
+        
+        List<RetrievedDocument> fused = new ArrayList<>(best.values());
+        fused.sort(Comparator.comparingDouble((RetrievedDocument document) -> fusedScores.get(document.id())).reversed());
+        return fused.size() > limit ? new ArrayList<>(fused.subList(0, limit)) : fused;
     }
     
     /**
@@ -199,82 +560,64 @@ public class RagService {
      * @param query User query
      * @param category Category to filter by
      * @param limit Maximum number of documents to retrieve
-     * @return List of relevant knowledge base documents
+     * @return Relevant documents in the category with their similarity, most similar first
      */
-    public List<KnowledgeBase> retrieveRelevantDocumentsByCategory(String query, String category, int limit) {
+    public List<RetrievedDocument> retrieveRelevantDocumentsByCategory(String query, String category, int limit) {
+        return retrieveRelevantDocumentsInCategories(query, List.of(category), limit);
+    }
+    
+    /**
+     * Retrieve relevant documents within any of the given categories in one search
+     * @param query User query
+     * @param categories Categories to filter by
+     * @param limit Maximum number of documents to retrieve
+     * @return Relevant documents in the categories with their similarity, most similar first
+     */
+    private List<RetrievedDocument> retrieveRelevantDocumentsInCategories(String query, Collection<String> categories,
+                                                                          int limit) {
+        if (localEmbeddingMode == LocalEmbeddingMode.PRIMARY) {
+            return retrieveLocalMatches(query, categories, limit);
+        }
+        
         try {
-            // Generate embedding for the query
-            String queryEmbedding = generateEmbedding(query);
+            List<RetrievedDocument> documents = searchRelevant(query, categories, limit);
             
-            // Search for similar documents in category
-            List<Object[]> results = knowledgeBaseRepository.findSimilarDocumentsByCategory(queryEmbedding, category, limit);
-            
-            // Convert results to KnowledgeBase objects
-            List<KnowledgeBase> documents = new ArrayList<>();
-            for (Object[] result : results) {
-                try {
-                    KnowledgeBase kb = new KnowledgeBase();
-                    kb.setId((Long) result[0]);
-                    kb.setDocumentId((String) result[1]);
-                    kb.setTitle((String) result[2]);
-                    kb.setContent((String) result[3]);
-                    kb.setCategory((String) result[4]);
-                    kb.setTags((String) result[5]);
-                    kb.setEmbedding((String) result[6]);
-                    
-                    // Handle timestamp conversion safely
-                    if (result[7] != null) {
-                        if (result[7] instanceof java.sql.Timestamp) {
-                            kb.setCreatedDate(((java.sql.Timestamp) result[7]).toLocalDateTime());
-                        } else if (result[7] instanceof java.time.LocalDateTime) {
-                            kb.setCreatedDate((java.time.LocalDateTime) result[7]);
-                        }
-                    }
-                    
-                    if (result[8] != null) {
-                        if (result[8] instanceof java.sql.Timestamp) {
-                            kb.setUpdatedDate(((java.sql.Timestamp) result[8]).toLocalDateTime());
-                        } else if (result[8] instanceof java.time.LocalDateTime) {
-                            kb.setUpdatedDate((java.time.LocalDateTime) result[8]);
-                        }
-                    }
-                    
-                    documents.add(kb);
-                } catch (Exception e) {
-                    logger.error("Error mapping result row: {}", Arrays.toString(result), e);
-                }
-            }
-            
-            logger.info("Retrieved {} relevant documents in category '{}' for query: {}", 
-                       documents.size(), category, query);
+            logger.info("Retrieved {} relevant documents in categories {} for query: {}", 
+                       documents.size(), categories, query);
             return documents;
             
         } catch (Exception e) {
             logger.error("Error retrieving relevant documents by category", e);
-            return new ArrayList<>();
+            return retrieveWithoutProvider(query, categories, limit);
         }
     }
     
     /**
-     * Build context from retrieved documents
-     * @param documents List of knowledge base documents
-     * @return Formatted context string
+     * Retrieve relevant documents within the categories a message was routed to. All of
+     * them are searched at once: one category = ANY(?) query on pgvector, or one scan of
+     * the merged category partitions in memory. Only if the best scoped result is below
+     * rag.routing.min-similarity is the routing assumed to be wrong and the whole
+     * knowledge base searched as well, reusing the cached query embedding.
+     * @param query User query
+     * @param categories Categories to search, or an empty collection for all documents
+     * @param limit Maximum number of documents to retrieve
+     * @return Relevant documents with their similarity, most similar first
      */
-    public String buildContext(List<KnowledgeBase> documents) {
-        if (documents.isEmpty()) {
-            return "No relevant information found.";
+    public List<RetrievedDocument> retrieveRoutedDocuments(String query, Collection<String> categories, int limit) {
+        if (categories.isEmpty()) {
+            return retrieveRelevantDocuments(query, limit);
         }
         
-        StringBuilder context = new StringBuilder();
-        context.append("Based on the following knowledge base information:\n\n");
+        List<RetrievedDocument> scoped = retrieveRelevantDocumentsInCategories(query, categories, limit);
         
-        for (KnowledgeBase doc : documents) {
-            context.append("Document: ").append(doc.getTitle()).append("\n");
-            context.append("Category: ").append(doc.getCategory()).append("\n");
-            context.append("Content: ").append(doc.getContent()).append("\n\n");
+        // Fused results are ranked by RRF, so the best cosine similarity need not come first
+        boolean confident = scoped.stream().anyMatch(document -> document.similarity() >= routingMinSimilarity);
+        meterRegistry.counter("rag.retrieval.routing", "outcome", confident ? "scoped" : "global").increment();
+        if (confident) {
+            return scoped;
         }
-        
-        return context.toString();
+        logger.debug("Weak matches in categories {}, searching all documents for query: {}", categories, query);
+        return retrieveRelevantDocuments(query, limit);
     }
     
     /**
@@ -293,4 +636,15 @@ public class RagService {
     public List<KnowledgeBase> getDocumentsByCategory(String category) {
         return knowledgeBaseRepository.findByCategory(category);
     }
-} 
\ No newline at end of file
+    
+    private static class LexicalIndex {
+        
+        private final RetrievedDocument[] documents;
+        private final Bm25Index bm25;
+        
+        LexicalIndex(RetrievedDocument[] documents, Bm25Index bm25) {
+            this.documents = documents;
+            this.bm25 = bm25;
+        }
+    }
+}
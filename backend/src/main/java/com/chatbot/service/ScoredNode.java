@@ -0,0 +1,9 @@
+package com.chatbot.service;
+
+/**
+ * Position of an indexed vector with its cosine similarity to a query
+ * @param node Position of the vector in the index
+ * @param score Cosine similarity
+ */
+public record ScoredNode(int node, float score) {
+}
@@ -0,0 +1,165 @@
+package com.chatbot.service;
+
+import com.chatbot.dto.ChatResponse;
+import com.chatbot.llm.EmbeddingProvider;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of chat replies to general (non order-specific) questions, matched by
+ * embedding similarity so that paraphrases of an earlier question reuse its answer
+ * without another completion call.
+ *
+ * Lookups scan the cached question embeddings and return the reply of the most
+ * similar question with the same intent, if its cosine similarity reaches the
+ * configured threshold. Callers are responsible for only storing replies that do
+ * not depend on customer data. Question embeddings of different models are not
+ * comparable, so the cache is cleared when the embedding model changes.
+ */
+@Component
+public class SemanticResponseCache {
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private EmbeddingProvider embeddingProvider;
+    
+    @Value("${chat.semantic-cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${chat.semantic-cache.similarity-threshold:0.95}")
+    private double similarityThreshold;
+    
+    @Value("${chat.semantic-cache.max-entries:1000}")
+    private long maxEntries;
+    
+    @Value("${chat.semantic-cache.ttl-minutes:60}")
+    private long ttlMinutes;
+    
+    private final AtomicLong sequence = new AtomicLong();
+    
+    private Cache<Long, CachedReply> cache;
+    
+    private volatile String currentModel;
+    
+    private Counter hits;
+    
+    private Counter misses;
+    
+    private Counter evictions;
+    
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("chat.semantic-cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("chat.semantic-cache.requests").tag("result", "miss").register(meterRegistry);
+        evictions = Counter.builder("chat.semantic-cache.evictions").register(meterRegistry);
+        cache = Caffeine.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+            .removalListener((Long key, CachedReply value, RemovalCause cause) -> {
+                if (cause.wasEvicted()) {
+                    evictions.increment();
+                }
+            })
+            .build();
+        Gauge.builder("chat.semantic-cache.size", cache, Cache::estimatedSize).register(meterRegistry);
+    }
+    
+    /**
+     * Find the cached reply of the most similar earlier question
+     * @param embedding Embedding of the customer message, may be null
+     * @param intent Detected intent of the message
+     * @return Cached reply with a fresh timestamp, or null on a miss
+     */
+    public ChatResponse lookup(float[] embedding, String intent) {
+        if (!enabled || embedding == null) {
+            return null;
+        }
+        useModel(embeddingProvider.getModel());
+        
+        float[] query = VectorMath.normalize(embedding);
+        CachedReply best = null;
+        double bestSimilarity = similarityThreshold;
+        for (CachedReply candidate : cache.asMap().values()) {
+            if (!candidate.intent.equals(intent) || candidate.embedding.length != query.length) {
+                continue;
+            }
+            double similarity = VectorMath.dot(candidate.embedding, 0, query);
+            if (similarity >= bestSimilarity) {
+                best = candidate;
+                bestSimilarity = similarity;
+            }
+        }
+        
+        if (best == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new ChatResponse(best.message, best.intent, best.confidence);
+    }
+    
+    /**
+     * Store a reply for reuse by similar questions
+     * @param embedding Embedding of the customer message, may be null
+     * @param response Reply to cache
+     */
+    public void put(float[] embedding, ChatResponse response) {
+        if (!enabled || embedding == null) {
+            return;
+        }
+        useModel(embeddingProvider.getModel());
+        cache.put(sequence.incrementAndGet(),
+            new CachedReply(VectorMath.normalize(embedding), response.getMessage(), response.getIntent(), response.getConfidence()));
+    }
+    
+    /**
+     * Drop all cached replies; called after a knowledge base sync changed any document
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+    
+    /**
+     * Drop the cached replies when the embedding model changes
+     * @param model Embedding model of the current call
+     */
+    private void useModel(String model) {
+        if (model.equals(currentModel)) {
+            return;
+        }
+        synchronized (this) {
+            if (!model.equals(currentModel)) {
+                currentModel = model;
+                cache.invalidateAll();
+            }
+        }
+    }
+    
+    private static class CachedReply {
+        
+        private final float[] embedding;
+        private final String message;
+        private final String intent;
+        private final Double confidence;
+        
+        CachedReply(float[] embedding, String message, String intent, Double confidence) {
+            this.embedding = embedding;
+            this.message = message;
+            this.intent = intent;
+            this.confidence = confidence;
+        }
+    }
+}
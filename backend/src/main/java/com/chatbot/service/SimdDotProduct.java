@@ -0,0 +1,51 @@
+package com.chatbot.service;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Dot product on the JDK Vector API, using the widest float lanes the CPU supports.
+ * Only loaded by {@link VectorMath} when the jdk.incubator.vector module is present.
+ */
+final class SimdDotProduct implements VectorMath.DotProduct {
+    
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    
+    @Override
+    public float dot(float[] matrix, int offset, float[] query) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(query.length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector row = FloatVector.fromArray(SPECIES, matrix, offset + i);
+            FloatVector q = FloatVector.fromArray(SPECIES, query, i);
+            sum = row.fma(q, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < query.length; i++) {
+            result += matrix[offset + i] * query[i];
+        }
+        return result;
+    }
+    
+    @Override
+    public float dot(ByteBuffer matrix, int byteOffset, float[] query) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(query.length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector row = FloatVector.fromByteBuffer(SPECIES, matrix, byteOffset + i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            FloatVector q = FloatVector.fromArray(SPECIES, query, i);
+            sum = row.fma(q, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < query.length; i++) {
+            result += matrix.getFloat(byteOffset + i * Float.BYTES) * query[i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,126 @@
+package com.chatbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical calls so that only one of them reaches the upstream service.
+ *
+ * The first caller for a key (the leader) runs the call on its own thread; callers
+ * arriving with the same key while it is in flight (followers) wait for the leader's
+ * result instead of issuing their own call. Followers wait at most the configured
+ * timeout, and a flight older than the timeout is no longer joined, so one stuck
+ * call cannot hold up every later request for the same key.
+ * Calls are counted in singleflight.calls tagged with the flight name and the role
+ * (leader or follower); singleflight.coalescing.ratio is the share of followers.
+ *
+ * @param <K> Key identifying identical calls
+ * @param <V> Result type
+ */
+public class SingleFlight<K, V> {
+    
+    private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    
+    private final String name;
+    
+    private final long timeoutMs;
+    
+    private final Counter leaders;
+    
+    private final Counter followers;
+    
+    /**
+     * @param name Name used in metric tags and error messages
+     * @param timeoutMs Maximum time a follower waits for the leader
+     * @param meterRegistry Registry for the coalescing metrics
+     */
+    public SingleFlight(String name, long timeoutMs, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.timeoutMs = timeoutMs;
+        this.leaders = Counter.builder("singleflight.calls").tag("name", name).tag("role", "leader").register(meterRegistry);
+        this.followers = Counter.builder("singleflight.calls").tag("name", name).tag("role", "follower").register(meterRegistry);
+        Gauge.builder("singleflight.coalescing.ratio", this, SingleFlight::coalescingRatio)
+            .tag("name", name)
+            .register(meterRegistry);
+        Gauge.builder("singleflight.in-flight", inFlight, ConcurrentMap::size)
+            .tag("name", name)
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Run a call, or join an identical call that is already in flight
+     * @param key Key identifying identical calls
+     * @param call Upstream call, run on the calling thread if this caller leads
+     * @return Result of the call
+     */
+    public V execute(K key, Supplier<V> call) {
+        Flight<V> own = new Flight<>();
+        Flight<V> existing = inFlight.compute(key, (k, current) ->
+            current == null || current.isExpired(timeoutMs) ? own : current);
+        
+        if (existing != own) {
+            followers.increment();
+            return await(existing);
+        }
+        
+        leaders.increment();
+        try {
+            V result = call.get();
+            own.future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+    
+    /**
+     * Share of calls that joined an in-flight call
+     * @return Followers divided by all calls, 0 before the first call
+     */
+    public double coalescingRatio() {
+        double total = leaders.count() + followers.count();
+        return total == 0 ? 0.0 : followers.count() / total;
+    }
+    
+    private V await(Flight<V> flight) {
+        long remainingMs = timeoutMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - flight.startNanos);
+        try {
+            return flight.future.get(Math.max(remainingMs, 1), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Timed out waiting for in-flight " + name + " call");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for in-flight " + name + " call");
+        }
+    }
+    
+    private static class Flight<V> {
+        
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private final long startNanos = System.nanoTime();
+        
+        boolean isExpired(long timeoutMs) {
+            return System.nanoTime() - startNanos > TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.chatbot.service;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToIntFunction;
+
+/**
+ * Splits document text into overlapping chunks of bounded token length.
+ *
+ * Text is split into paragraphs at blank lines and paragraphs into sentences, and
+ * sentences are packed greedily into chunks of at most maxTokens tokens. A chunk that is
+ * at least half full is closed at the end of a paragraph rather than continuing into the
+ * next one, so chunks tend to follow the structure of the document. Each chunk after the
+ * first starts with the last sentences of the previous chunk, up to overlapTokens
+ * tokens, so a statement cut at a chunk boundary keeps its context. A sentence longer
+ * than maxTokens is split between words.
+ */
+public final class TextChunker {
+    
+    private final ToIntFunction<String> tokenCounter;
+    
+    private final int maxTokens;
+    
+    private final int overlapTokens;
+    
+    /**
+     * Create a chunker
+     * @param tokenCounter Token count of a text
+     * @param maxTokens Maximum tokens per chunk
+     * @param overlapTokens Maximum tokens repeated from the end of the previous chunk
+     */
+    public TextChunker(ToIntFunction<String> tokenCounter, int maxTokens, int overlapTokens) {
+        if (maxTokens < 1 || overlapTokens < 0 || overlapTokens >= maxTokens) {
+            throw new IllegalArgumentException("Chunk overlap must be smaller than the chunk size");
+        }
+        this.tokenCounter = tokenCounter;
+        this.maxTokens = maxTokens;
+        this.overlapTokens = overlapTokens;
+    }
+    
+    /**
+     * Settings that determine the chunks of a text, to detect when stored chunks are stale
+     * @return Chunking settings
+     */
+    public String describe() {
+        return "sentences/" + maxTokens + "/" + overlapTokens;
+    }
+    
+    /**
+     * Split a text into chunks
+     * @param text Text to split
+     * @return Chunks in text order, none for blank text
+     */
+    public List<String> chunk(String text) {
+        List<String> chunks = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return chunks;
+        }
+        
+        List<String> sentences = new ArrayList<>();
+        List<Integer> tokens = new ArrayList<>();
+        List<Boolean> paragraphEnds = new ArrayList<>();
+        for (String paragraph : text.split("\\n\\s*\\n")) {
+            for (String sentence : sentences(paragraph)) {
+                for (String piece : splitLongSentence(sentence)) {
+                    sentences.add(piece);
+                    tokens.add(tokenCounter.applyAsInt(piece));
+                    paragraphEnds.add(false);
+                }
+            }
+            if (!paragraphEnds.isEmpty()) {
+                paragraphEnds.set(paragraphEnds.size() - 1, true);
+            }
+        }
+        
+        int start = 0;
+        while (start < sentences.size()) {
+            int end = start;
+            int length = 0;
+            while (end < sentences.size() && (end == start || length + tokens.get(end) <= maxTokens)) {
+                length += tokens.get(end);
+                end++;
+                if (paragraphEnds.get(end - 1) && length >= maxTokens / 2) {
+                    break;
+                }
+            }
+            chunks.add(String.join(" ", sentences.subList(start, end)));
+            if (end == sentences.size()) {
+                break;
+            }
+            
+            // Repeat trailing sentences of this chunk, but always make progress
+            int next = end;
+            int overlap = 0;
+            while (next - 1 > start && overlap + tokens.get(next - 1) <= overlapTokens) {
+                next--;
+                overlap += tokens.get(next);
+            }
+            start = next;
+        }
+        return chunks;
+    }
+    
+    private static List<String> sentences(String paragraph) {
+        List<String> sentences = new ArrayList<>();
+        BreakIterator iterator = BreakIterator.getSentenceInstance(Locale.ROOT);
+        iterator.setText(paragraph);
+        int start = iterator.first();
+        for (int end = iterator.next(); end != BreakIterator.DONE; start = end, end = iterator.next()) {
+            String sentence = paragraph.substring(start, end).strip().replaceAll("\\s+", " ");
+            if (!sentence.isEmpty()) {
+                sentences.add(sentence);
+            }
+        }
+        return sentences;
+    }
+    
+    private List<String> splitLongSentence(String sentence) {
+        if (tokenCounter.applyAsInt(sentence) <= maxTokens) {
+            return List.of(sentence);
+        }
+        List<String> pieces = new ArrayList<>();
+        StringBuilder piece = new StringBuilder();
+        for (String word : sentence.split(" ")) {
+            String candidate = piece.isEmpty() ? word : piece + " " + word;
+            if (!piece.isEmpty() && tokenCounter.applyAsInt(candidate) > maxTokens) {
+                pieces.add(piece.toString());
+                piece.setLength(0);
+                piece.append(word);
+            } else {
+                piece.setLength(0);
+                piece.append(candidate);
+            }
+        }
+        if (!piece.isEmpty()) {
+            pieces.add(piece.toString());
+        }
+        return pieces;
+    }
+}
@@ -0,0 +1,532 @@
+package com.chatbot.service;
+
+import com.chatbot.llm.EmbeddingProvider;
+import com.chatbot.model.KnowledgeBase;
+import com.chatbot.model.KnowledgeChunk;
+import com.chatbot.model.RetrievedDocument;
+import com.chatbot.repository.KnowledgeBaseRepository;
+import com.chatbot.repository.KnowledgeBaseVectorRepository;
+import com.chatbot.repository.KnowledgeChunkRepository;
+import com.chatbot.repository.KnowledgeChunkVectorRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory vector indexes over the stored knowledge base embeddings: an approximate
+ * HNSW graph and an exact scan over a packed matrix.
+ *
+ * The indexes are built from the embedding column of the knowledge_base table, keeping
+ * only the fields returned by retrieval next to the vectors. Rows embedded with a
+ * different model than the current embedding provider, or with a different vector
+ * length than the first row, are left out. Only the indexes needed by the configured
+ * backend and shadow comparison are built. Searches run against immutable indexes
+ * without touching the database; {@link #refresh(boolean)} replaces them after the
+ * knowledge base has changed.
+ *
+ * When rag.snapshot.path is set, every build from the table also writes the normalized
+ * vectors to an {@link EmbeddingSnapshot}, and the exact scan reads them from the
+ * memory-mapped file. A starting node maps an existing snapshot for its embedding model
+ * instead of parsing the embedding column, so the time it takes to become searchable
+ * does not depend on the corpus size.
+ *
+ * With rag.chunking.enabled, the rows are the chunks in the knowledge_chunk table instead
+ * of whole documents. A chunk row carries the ID, title and category of its knowledge
+ * base entry and the chunk text as content.
+ *
+ * Each category also gets a partial index: the list of its rows for the exact scan, and
+ * an HNSW graph over only its rows. A search within some categories reads those instead
+ * of filtering the whole index, so its cost follows the size of the categories rather
+ * than the corpus, and the HNSW search does not lose recall by skipping other
+ * categories' nodes. The exact scan reads the merged rows of all searched categories
+ * in one pass; with HNSW each category's graph is searched and the results merged.
+ */
+@Service
+public class VectorIndexService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(VectorIndexService.class);
+    
+    @Autowired
+    private KnowledgeBaseRepository knowledgeBaseRepository;
+    
+    @Autowired
+    private KnowledgeBaseVectorRepository knowledgeBaseVectorRepository;
+    
+    @Autowired
+    private KnowledgeChunkRepository knowledgeChunkRepository;
+    
+    @Autowired
+    private KnowledgeChunkVectorRepository knowledgeChunkVectorRepository;
+    
+    @Autowired
+    private EmbeddingProvider embeddingProvider;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${rag.retrieval.backend:PGVECTOR}")
+    private RagService.VectorBackend backend;
+    
+    @Value("${rag.retrieval.shadow-sample-rate:0.0}")
+    private double shadowSampleRate;
+    
+    @Value("${rag.hnsw.m:16}")
+    private int m;
+    
+    @Value("${rag.hnsw.ef-construction:200}")
+    private int efConstruction;
+    
+    @Value("${rag.hnsw.ef-search:64}")
+    private int efSearch;
+    
+    @Value("${rag.exact.min-rows-per-task:4096}")
+    private int minRowsPerTask;
+    
+    @Value("${rag.snapshot.path:}")
+    private String snapshotPath;
+    
+    @Value("${rag.chunking.enabled:false}")
+    private boolean chunked;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private final Object buildLock = new Object();
+    
+    private volatile Indexes indexes;
+    
+    @PostConstruct
+    public void init() {
+        Gauge.builder("rag.hnsw.documents", this, service -> {
+            Indexes current = service.indexes;
+            return current != null ? current.documents.length : 0;
+        }).register(meterRegistry);
+        if (backend == RagService.VectorBackend.EXACT) {
+            logger.info("Exact vector scan uses {} dot products", VectorMath.isSimd() ? "SIMD" : "scalar");
+        }
+    }
+    
+    /**
+     * Whether an in-memory index serves retrieval or is used for shadow comparisons
+     * @return true if an in-memory backend or shadow comparison is configured
+     */
+    public boolean isEnabled() {
+        return backend != RagService.VectorBackend.PGVECTOR || shadowSampleRate > 0;
+    }
+    
+    /**
+     * Pick up knowledge base changes. If an in-memory backend is in use, the indexes are
+     * rebuilt from the table when vectors were added, changed or removed, and otherwise
+     * reloaded from the embedding snapshot to pick up changed titles or categories.
+     * If no in-memory backend is in use, the indexes are dropped.
+     * @param vectorsChanged Whether any embedding was added, changed or removed
+     */
+    public void refresh(boolean vectorsChanged) {
+        if (!isEnabled()) {
+            indexes = null;
+            return;
+        }
+        synchronized (buildLock) {
+            indexes = vectorsChanged ? buildFromDatabase() : load();
+        }
+    }
+    
+    /**
+     * Build new indexes from the knowledge base table, write a new snapshot and swap them in
+     */
+    public void rebuild() {
+        synchronized (buildLock) {
+            indexes = buildFromDatabase();
+        }
+    }
+    
+    /**
+     * Find the documents most similar to a query embedding, building the indexes on first use
+     * @param backend HNSW or EXACT
+     * @param embedding Query embedding vector
+     * @param categories Categories to filter by, or an empty collection for all documents
+     * @param limit Maximum number of results
+     * @return Most similar documents with their cosine similarity, most similar first
+     */
+    public List<RetrievedDocument> search(RagService.VectorBackend backend, float[] embedding,
+                                          Collection<String> categories, int limit) {
+        Indexes current = currentIndexes();
+        
+        List<ScoredNode> nodes;
+        if (!categories.isEmpty()) {
+            nodes = searchPartitions(current, backend, embedding, categories, limit);
+        } else if (backend == RagService.VectorBackend.EXACT && current.exact != null) {
+            // Snapshot rows whose document has since been deleted have no document
+            RetrievedDocument[] documents = current.documents;
+            nodes = current.exact.search(embedding, limit, node -> documents[node] != null);
+        } else if (backend == RagService.VectorBackend.HNSW && current.hnsw != null) {
+            RetrievedDocument[] documents = current.documents;
+            nodes = current.hnsw.search(embedding, limit, efSearch, node -> documents[node] != null);
+        } else {
+            throw new IllegalStateException("No in-memory " + backend + " index is configured");
+        }
+        
+        return toDocuments(current, nodes);
+    }
+    
+    /**
+     * Rank a set of candidate documents, or their chunks, by similarity to a query
+     * embedding, scoring only those rows; candidates that are not indexed are left out
+     * @param embedding Query embedding vector
+     * @param candidateIds Knowledge base IDs of the candidates
+     * @param limit Maximum number of results
+     * @return Most similar candidates with their cosine similarity, most similar first
+     */
+    public List<RetrievedDocument> rerank(float[] embedding, Collection<Long> candidateIds, int limit) {
+        Indexes current = currentIndexes();
+        
+        int[] nodes = candidateIds.stream()
+            .map(current.rowsById::get)
+            .filter(Objects::nonNull)
+            .flatMap(List::stream)
+            .mapToInt(Integer::intValue)
+            .toArray();
+        if (nodes.length == 0) {
+            return List.of();
+        }
+        List<ScoredNode> scored;
+        if (current.exact != null) {
+            scored = current.exact.score(embedding, nodes);
+        } else if (current.hnsw != null) {
+            scored = current.hnsw.score(embedding, nodes);
+        } else {
+            throw new IllegalStateException("No in-memory vector index is configured");
+        }
+        return toDocuments(current, scored.size() > limit ? scored.subList(0, limit) : scored);
+    }
+    
+    /**
+     * Search the partial indexes of some categories
+     * @param current Current indexes
+     * @param backend HNSW or EXACT
+     * @param embedding Query embedding vector
+     * @param categories Categories to search
+     * @param limit Maximum number of results
+     * @return Most similar rows of the categories, as row numbers of the full index
+     */
+    private List<ScoredNode> searchPartitions(Indexes current, RagService.VectorBackend backend, float[] embedding,
+                                              Collection<String> categories, int limit) {
+        if (backend == RagService.VectorBackend.EXACT && current.exact != null) {
+            int[] rows = categories.stream()
+                .distinct()
+                .map(current.rowsByCategory::get)
+                .filter(Objects::nonNull)
+                .flatMapToInt(IntStream::of)
+                .sorted()
+                .toArray();
+            return current.exact.search(embedding, limit, rows);
+        }
+        if (backend == RagService.VectorBackend.HNSW && current.hnsw != null) {
+            List<ScoredNode> nodes = new ArrayList<>();
+            for (String category : new LinkedHashSet<>(categories)) {
+                HnswIndex graph = current.hnswByCategory.get(category);
+                if (graph == null) {
+                    continue;
+                }
+                int[] rows = current.rowsByCategory.get(category);
+                for (ScoredNode node : graph.search(embedding, limit, efSearch, node -> true)) {
+                    nodes.add(new ScoredNode(rows[node.node()], node.score()));
+                }
+            }
+            nodes.sort((a, b) -> Float.compare(b.score(), a.score()));
+            return nodes.size() > limit ? nodes.subList(0, limit) : nodes;
+        }
+        throw new IllegalStateException("No in-memory " + backend + " index is configured");
+    }
+    
+    private Indexes currentIndexes() {
+        Indexes current = indexes;
+        if (current == null) {
+            synchronized (buildLock) {
+                if (indexes == null) {
+                    indexes = load();
+                }
+                current = indexes;
+            }
+        }
+        return current;
+    }
+    
+    /**
+     * Indexes from the embedding snapshot if it matches the current embedding model and
+     * the rows in the table, otherwise from the knowledge base table
+     * @return New indexes
+     */
+    private Indexes load() {
+        Indexes fromSnapshot = loadSnapshot();
+        return fromSnapshot != null ? fromSnapshot : buildFromDatabase();
+    }
+    
+    /**
+     * Map the embedding snapshot and index it in place. Only the retrieval fields of the
+     * documents are read from the database; no embedding is parsed.
+     * @return New indexes, or null if there is no usable snapshot
+     */
+    private Indexes loadSnapshot() {
+        if (snapshotPath.isBlank() || !Files.exists(Path.of(snapshotPath))) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            EmbeddingSnapshot file = EmbeddingSnapshot.open(Path.of(snapshotPath));
+            if (!file.getModel().equals(snapshotModel())) {
+                logger.info("Ignoring embedding snapshot for model {}, current model is {}",
+                    file.getModel(), snapshotModel());
+                return null;
+            }
+            // Rows written since, by another node or a sync that reported no vector change, need a rebuild
+            if (!file.getSource().equals(sourceFingerprint())) {
+                logger.info("Ignoring embedding snapshot {}, the knowledge base has changed since it was written", snapshotPath);
+                return null;
+            }
+            
+            Map<Long, RetrievedDocument> byId;
+            if (chunked) {
+                byId = knowledgeChunkVectorRepository.findAllChunkDocuments();
+            } else {
+                byId = new HashMap<>();
+                for (RetrievedDocument document : knowledgeBaseVectorRepository.findAllDocuments()) {
+                    byId.put(document.id(), document);
+                }
+            }
+            RetrievedDocument[] documents = new RetrievedDocument[file.size()];
+            int missing = 0;
+            for (int row = 0; row < documents.length; row++) {
+                documents[row] = byId.get(file.getId(row));
+                if (documents[row] == null) {
+                    missing++;
+                }
+            }
+            
+            ExactVectorIndex packed = ExactVectorIndex.wrap(file.getVectors(), file.size(), file.getDimensions(), minRowsPerTask);
+            Indexes loaded = index(documents, packed, null);
+            logger.info("Loaded embedding snapshot {} with {} vectors ({} without a document) in {} ms",
+                snapshotPath, file.size(), missing, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return loaded;
+        } catch (Exception e) {
+            logger.warn("Could not load embedding snapshot {}: {}", snapshotPath, e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Load the stored embeddings from the knowledge base or chunk table, write them to
+     * the embedding snapshot and build the configured indexes over them
+     * @return New indexes
+     */
+    private Indexes buildFromDatabase() {
+        long start = System.nanoTime();
+        String model = embeddingProvider.getModel();
+        // Taken before the rows are read, so a concurrent change makes the snapshot look stale rather than current
+        String source = snapshotPath.isBlank() ? "" : sourceFingerprint();
+        List<float[]> vectors = new ArrayList<>();
+        List<RetrievedDocument> documents = new ArrayList<>();
+        List<Long> keys = new ArrayList<>();
+        int skipped = 0;
+        
+        if (chunked) {
+            Map<Long, RetrievedDocument> parents = new HashMap<>();
+            for (RetrievedDocument document : knowledgeBaseVectorRepository.findAllDocuments()) {
+                parents.put(document.id(), document);
+            }
+            for (KnowledgeChunk chunk : knowledgeChunkRepository.findAll()) {
+                RetrievedDocument parent = parents.get(chunk.getKnowledgeBaseId());
+                RetrievedDocument row = parent == null ? null : new RetrievedDocument(parent.id(), parent.title(),
+                    chunk.getContent(), parent.category(), 0.0);
+                if (!addRow(vectors, row, chunk.getEmbedding(), chunk.getEmbeddingModel(), model)) {
+                    skipped++;
+                    continue;
+                }
+                documents.add(row);
+                keys.add(chunk.getId());
+            }
+        } else {
+            for (KnowledgeBase kb : knowledgeBaseRepository.findAll()) {
+                if (!addRow(vectors, RetrievedDocument.of(kb, 0.0), kb.getEmbedding(), kb.getEmbeddingModel(), model)) {
+                    skipped++;
+                    continue;
+                }
+                documents.add(RetrievedDocument.of(kb, 0.0));
+                keys.add(kb.getId());
+            }
+        }
+        
+        ExactVectorIndex packed = null;
+        if (!snapshotPath.isBlank()) {
+            try {
+                long[] ids = keys.stream().mapToLong(Long::longValue).toArray();
+                EmbeddingSnapshot.write(Path.of(snapshotPath), snapshotModel(), source, ids, vectors);
+                EmbeddingSnapshot file = EmbeddingSnapshot.open(Path.of(snapshotPath));
+                packed = ExactVectorIndex.wrap(file.getVectors(), file.size(), file.getDimensions(), minRowsPerTask);
+            } catch (Exception e) {
+                logger.warn("Could not write embedding snapshot {}: {}", snapshotPath, e.getMessage());
+            }
+        }
+        
+        Indexes built = index(documents.toArray(new RetrievedDocument[0]), packed, vectors);
+        logger.info("Built vector indexes (hnsw: {}, exact: {}) over {} knowledge base {} ({} skipped) in {} ms",
+            built.hnsw != null, built.exact != null, vectors.size(), chunked ? "chunks" : "documents", skipped,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return built;
+    }
+    
+    /**
+     * Parse a stored embedding and add it to the index rows if it can be used
+     * @param vectors Vectors collected so far
+     * @param document Document of the row, or null if its knowledge base entry is gone
+     * @param embedding Stored JSON embedding
+     * @param embeddingModel Model of the stored embedding
+     * @param model Current embedding model
+     * @return Whether the vector was added
+     */
+    private boolean addRow(List<float[]> vectors, RetrievedDocument document, String embedding,
+                           String embeddingModel, String model) {
+        if (document == null || embedding == null || (embeddingModel != null && !embeddingModel.equals(model))) {
+            return false;
+        }
+        try {
+            float[] vector = objectMapper.readValue(embedding, float[].class);
+            if (!vectors.isEmpty() && vector.length != vectors.get(0).length) {
+                return false;
+            }
+            vectors.add(vector);
+            return true;
+        } catch (Exception e) {
+            logger.warn("Skipping knowledge base row with unreadable embedding: {}", document.id());
+            return false;
+        }
+    }
+    
+    /**
+     * Fingerprint of the rows the indexes are built from, recorded in the snapshot header
+     * @return Hash of the ID, content or source hash and model of every row
+     */
+    private String sourceFingerprint() {
+        List<String> rows = chunked
+            ? knowledgeChunkVectorRepository.findEmbeddingSources()
+            : knowledgeBaseVectorRepository.findEmbeddingSources();
+        return KnowledgeBaseIngestionService.contentHash(String.join("\n", rows));
+    }
+    
+    /**
+     * Model recorded in the snapshot header; chunk snapshots are kept apart from document
+     * snapshots because their rows hold chunk IDs
+     * @return Embedding model, with a suffix for chunk-level indexes
+     */
+    private String snapshotModel() {
+        return chunked ? embeddingProvider.getModel() + "/chunks" : embeddingProvider.getModel();
+    }
+    
+    /**
+     * Build the indexes needed by the configured backend and shadow comparison
+     * @param documents Document of each row
+     * @param packed Normalized vectors mapped from the snapshot, or null if there is none
+     * @param vectors Parsed vectors, or null when they are only available in packed form
+     * @return New indexes
+     */
+    private Indexes index(RetrievedDocument[] documents, ExactVectorIndex packed, List<float[]> vectors) {
+        Map<String, int[]> rowsByCategory = partition(documents);
+        
+        HnswIndex hnsw = null;
+        Map<String, HnswIndex> hnswByCategory = new HashMap<>();
+        // Shadow comparisons always involve the HNSW index
+        if (backend == RagService.VectorBackend.HNSW || shadowSampleRate > 0) {
+            List<float[]> rows = vectors;
+            if (rows == null) {
+                rows = new ArrayList<>(packed.size());
+                for (int row = 0; row < packed.size(); row++) {
+                    rows.add(packed.vector(row));
+                }
+            }
+            hnsw = HnswIndex.build(rows, m, efConstruction, 42L);
+            for (Map.Entry<String, int[]> entry : rowsByCategory.entrySet()) {
+                List<float[]> categoryRows = new ArrayList<>(entry.getValue().length);
+                for (int row : entry.getValue()) {
+                    categoryRows.add(rows.get(row));
+                }
+                hnswByCategory.put(entry.getKey(), HnswIndex.build(categoryRows, m, efConstruction, 42L));
+            }
+        }
+        
+        ExactVectorIndex exact = null;
+        if (backend == RagService.VectorBackend.EXACT) {
+            exact = packed != null ? packed : ExactVectorIndex.build(vectors, minRowsPerTask);
+        }
+        return new Indexes(documents, hnsw, exact, rowsByCategory, hnswByCategory);
+    }
+    
+    /**
+     * Group the rows by the category of their document; rows without a document are left out
+     * @param documents Document of each row
+     * @return Category to its row numbers in ascending order
+     */
+    private static Map<String, int[]> partition(RetrievedDocument[] documents) {
+        Map<String, List<Integer>> rows = new HashMap<>();
+        for (int row = 0; row < documents.length; row++) {
+            if (documents[row] != null && documents[row].category() != null) {
+                rows.computeIfAbsent(documents[row].category(), category -> new ArrayList<>()).add(row);
+            }
+        }
+        Map<String, int[]> partitions = new HashMap<>();
+        rows.forEach((category, list) -> partitions.put(category, list.stream().mapToInt(Integer::intValue).toArray()));
+        return partitions;
+    }
+    
+    private static List<RetrievedDocument> toDocuments(Indexes current, List<ScoredNode> nodes) {
+        List<RetrievedDocument> results = new ArrayList<>(nodes.size());
+        for (ScoredNode node : nodes) {
+            RetrievedDocument document = current.documents[node.node()];
+            results.add(new RetrievedDocument(document.id(), document.title(), document.content(),
+                document.category(), Math.max(0.0, node.score())));
+        }
+        return results;
+    }
+    
+    private static class Indexes {
+        
+        private final RetrievedDocument[] documents;
+        private final HnswIndex hnsw;
+        private final ExactVectorIndex exact;
+        // Partial indexes: the rows of each category and, with HNSW, a graph over them
+        private final Map<String, int[]> rowsByCategory;
+        private final Map<String, HnswIndex> hnswByCategory;
+        // Rows of each knowledge base entry: one per document, or one per chunk
+        private final Map<Long, List<Integer>> rowsById = new HashMap<>();
+        
+        Indexes(RetrievedDocument[] documents, HnswIndex hnsw, ExactVectorIndex exact,
+                Map<String, int[]> rowsByCategory, Map<String, HnswIndex> hnswByCategory) {
+            this.documents = documents;
+            this.hnsw = hnsw;
+            this.exact = exact;
+            this.rowsByCategory = rowsByCategory;
+            this.hnswByCategory = hnswByCategory;
+            for (int row = 0; row < documents.length; row++) {
+                if (documents[row] != null) {
+                    rowsById.computeIfAbsent(documents[row].id(), id -> new ArrayList<>()).add(row);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.chatbot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Dot products over packed float vectors, held either in a float array or in a
+ * little-endian byte buffer such as a memory-mapped embedding snapshot.
+ *
+ * Uses the JDK Vector API when the jdk.incubator.vector module is available
+ * (java --add-modules jdk.incubator.vector), and a scalar loop otherwise.
+ */
+final class VectorMath {
+    
+    private static final Logger logger = LoggerFactory.getLogger(VectorMath.class);
+    
+    private static final DotProduct DOT_PRODUCT = loadDotProduct();
+    
+    private VectorMath() {
+    }
+    
+    /**
+     * Dot product of a query with a row of a packed matrix
+     * @param matrix Row-major matrix
+     * @param offset Index of the first element of the row
+     * @param query Query vector, as long as a row
+     * @return Dot product
+     */
+    static float dot(float[] matrix, int offset, float[] query) {
+        return DOT_PRODUCT.dot(matrix, offset, query);
+    }
+    
+    /**
+     * Dot product of a query with a row of a packed little-endian float32 matrix
+     * @param matrix Row-major matrix
+     * @param byteOffset Byte offset of the first element of the row
+     * @param query Query vector, as long as a row
+     * @return Dot product
+     */
+    static float dot(ByteBuffer matrix, int byteOffset, float[] query) {
+        return DOT_PRODUCT.dot(matrix, byteOffset, query);
+    }
+    
+    /**
+     * Copy of a vector scaled to unit length; a zero vector stays zero
+     * @param vector Vector to normalize
+     * @return Normalized copy
+     */
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+    
+    /**
+     * Whether dot products run on the Vector API
+     * @return true if SIMD is in use
+     */
+    static boolean isSimd() {
+        return !(DOT_PRODUCT instanceof ScalarDotProduct);
+    }
+    
+    private static DotProduct loadDotProduct() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // Loaded by name so this class still links when the module is missing
+                return (DotProduct) Class.forName("com.chatbot.service.SimdDotProduct")
+                    .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                logger.warn("Vector API not usable, using scalar dot products: {}", e.getMessage());
+            }
+        } else {
+            logger.info("jdk.incubator.vector not enabled, using scalar dot products");
+        }
+        return new ScalarDotProduct();
+    }
+    
+    interface DotProduct {
+        
+        float dot(float[] matrix, int offset, float[] query);
+        
+        float dot(ByteBuffer matrix, int byteOffset, float[] query);
+    }
+    
+    static final class ScalarDotProduct implements DotProduct {
+        
+        @Override
+        public float dot(float[] matrix, int offset, float[] query) {
+            float sum = 0;
+            for (int i = 0; i < query.length; i++) {
+                sum += matrix[offset + i] * query[i];
+            }
+            return sum;
+        }
+        
+        @Override
+        public float dot(ByteBuffer matrix, int byteOffset, float[] query) {
+            float sum = 0;
+            for (int i = 0; i < query.length; i++) {
+                sum += matrix.getFloat(byteOffset + i * Float.BYTES) * query[i];
+            }
+            return sum;
+        }
+    }
+}
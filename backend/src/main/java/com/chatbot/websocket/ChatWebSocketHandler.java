@@ -0,0 +1,305 @@
+package com.chatbot.websocket;
+
+import com.chatbot.dto.ChatRequest;
+import com.chatbot.dto.ChatResponse;
+import com.chatbot.service.ChatService;
+import com.chatbot.service.ChatStreamListener;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.bucket4j.Bucket;
+import jakarta.websocket.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * WebSocket chat channel at /ws/chat.
+ *
+ * Clients send {"message": "..."} frames and receive the reply as a sequence of
+ * {"type": "token", "content": "..."} frames followed by one
+ * {"type": "done", "response": {...}} frame carrying the ChatResponse.
+ * Errors are reported as {"type": "error", "error": "...", "status": ...}.
+ *
+ * Outbound frames go through a bounded per-session buffer; a client that cannot
+ * keep up has its connection closed instead of growing server memory.
+ *
+ * A connection lives no longer than the JWT it was opened with: it is closed with
+ * POLICY_VIOLATION when the token expires. The account is checked once, at the
+ * handshake, so messages are handled without a database lookup; code that disables
+ * or removes an account closes its open connections through {@link #closeConnections}.
+ */
+@Component
+public class ChatWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ChatWebSocketHandler.class);
+    
+    @Autowired
+    private ChatService chatService;
+    
+    @Autowired
+    @Qualifier("chatRateLimiter")
+    private Bucket rateLimiter;
+    
+    @Autowired
+    @Qualifier("chatStreamExecutor")
+    private TaskExecutor chatStreamExecutor;
+    
+    @Autowired
+    @Qualifier("webSocketExpiryScheduler")
+    private TaskScheduler expiryScheduler;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${chat.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+    
+    @Value("${chat.websocket.send-buffer-size-limit:65536}")
+    private int sendBufferSizeLimit;
+    
+    @Value("${chat.websocket.max-text-message-size:8192}")
+    private int maxTextMessageSize;
+    
+    @Value("${chat.websocket.idle-timeout-ms:300000}")
+    private long idleTimeoutMs;
+    
+    private final Map<String, ChatSession> sessions = new ConcurrentHashMap<>();
+    
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        String customerEmail = (String) session.getAttributes().get(JwtHandshakeInterceptor.CUSTOMER_EMAIL_ATTRIBUTE);
+        
+        // Limit inbound frame size and close idle connections
+        session.setTextMessageSizeLimit(maxTextMessageSize);
+        if (session instanceof NativeWebSocketSession nativeWebSocketSession) {
+            Session nativeSession = nativeWebSocketSession.getNativeSession(Session.class);
+            if (nativeSession != null) {
+                nativeSession.setMaxIdleTimeout(idleTimeoutMs);
+            }
+        }
+        
+        WebSocketSession outbound = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, sendBufferSizeLimit);
+        Instant expiration = (Instant) session.getAttributes().get(JwtHandshakeInterceptor.TOKEN_EXPIRATION_ATTRIBUTE);
+        ChatSession chatSession = new ChatSession(outbound, customerEmail, expiration);
+        sessions.put(session.getId(), chatSession);
+        if (expiration == null || !expiration.isAfter(Instant.now())) {
+            closeForPolicy(chatSession, "Token expired");
+            return;
+        }
+        chatSession.expiryTask = expiryScheduler.schedule(() -> closeForPolicy(chatSession, "Token expired"), expiration);
+        logger.info("WebSocket chat connection opened for customer: {}", customerEmail);
+    }
+    
+    @Override
+    public List<String> getSubProtocols() {
+        // Browsers pass the JWT as a second protocol after "bearer"; only "bearer" is echoed back
+        return List.of(JwtHandshakeInterceptor.BEARER_PROTOCOL);
+    }
+    
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage textMessage) throws Exception {
+        ChatSession chatSession = sessions.get(session.getId());
+        if (chatSession == null) {
+            return;
+        }
+        if (!chatSession.expiration.isAfter(Instant.now())) {
+            closeForPolicy(chatSession, "Token expired");
+            return;
+        }
+        
+        ChatRequest chatRequest;
+        try {
+            chatRequest = objectMapper.readValue(textMessage.getPayload(), ChatRequest.class);
+        } catch (IOException e) {
+            sendError(chatSession, "Invalid message format", 400);
+            return;
+        }
+        
+        // Validate request
+        if (chatRequest.getMessage() == null || chatRequest.getMessage().trim().isEmpty()) {
+            sendError(chatSession, "Message cannot be empty", 400);
+            return;
+        }
+        
+        // Check rate limit
+        if (!rateLimiter.tryConsume(1)) {
+            sendError(chatSession, "Rate limit exceeded. Please wait a moment before sending another message.", 429);
+            return;
+        }
+        
+        // Only one reply in flight per connection
+        if (!chatSession.busy.compareAndSet(false, true)) {
+            sendError(chatSession, "Please wait for the current reply to finish before sending another message.", 409);
+            return;
+        }
+        
+        try {
+            chatStreamExecutor.execute(() -> {
+                try {
+                    chatService.streamMessage(chatRequest.getMessage(), chatSession.customerEmail,
+                        new WebSocketChatStreamListener(chatSession));
+                } finally {
+                    chatSession.busy.set(false);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            chatSession.busy.set(false);
+            sendError(chatSession, "I'm having trouble processing your request right now. Please try again in a moment.", 503);
+        }
+    }
+    
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        logger.warn("WebSocket transport error for session {}: {}", session.getId(), exception.getMessage());
+    }
+    
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        ChatSession chatSession = sessions.remove(session.getId());
+        if (chatSession != null) {
+            if (chatSession.expiryTask != null) {
+                chatSession.expiryTask.cancel(false);
+            }
+            logger.info("WebSocket chat connection closed for customer: {} ({})", chatSession.customerEmail, status);
+        }
+    }
+    
+    /**
+     * Close every open connection of a customer, such as after the account has been
+     * disabled or removed
+     * @param customerEmail Customer authenticated at handshake
+     * @param reason Close reason sent to the client
+     * @return Number of connections closed
+     */
+    public int closeConnections(String customerEmail, String reason) {
+        int closed = 0;
+        for (ChatSession chatSession : sessions.values()) {
+            if (chatSession.customerEmail.equals(customerEmail)) {
+                closeForPolicy(chatSession, reason);
+                closed++;
+            }
+        }
+        return closed;
+    }
+    
+    /**
+     * Close a connection whose credentials are no longer valid
+     * @param chatSession Chat session
+     * @param reason Close reason sent to the client
+     */
+    private void closeForPolicy(ChatSession chatSession, String reason) {
+        try {
+            chatSession.outbound.close(CloseStatus.POLICY_VIOLATION.withReason(reason));
+            logger.info("Closed WebSocket chat connection for customer {}: {}", chatSession.customerEmail, reason);
+        } catch (IOException e) {
+            logger.warn("Failed to close WebSocket chat connection: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Send an error frame to the client
+     * @param chatSession Chat session
+     * @param error Error message
+     * @param status HTTP-equivalent status code
+     */
+    private void sendError(ChatSession chatSession, String error, int status) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", "error");
+        frame.put("error", error);
+        frame.put("timestamp", java.time.LocalDateTime.now().toString());
+        frame.put("status", status);
+        try {
+            send(chatSession, frame);
+        } catch (IOException e) {
+            logger.warn("Failed to send error frame: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Serialize and send a frame through the session's bounded outbound buffer
+     * @param chatSession Chat session
+     * @param frame Frame payload
+     * @throws IOException if the session is closed or its buffer limits are exceeded
+     */
+    private void send(ChatSession chatSession, Map<String, Object> frame) throws IOException {
+        chatSession.outbound.sendMessage(new TextMessage(objectMapper.writeValueAsString(frame)));
+    }
+    
+    /**
+     * Per-connection state: the buffered outbound session, and the customer and token
+     * expiry authenticated at handshake
+     */
+    private static class ChatSession {
+        
+        private final WebSocketSession outbound;
+        private final String customerEmail;
+        private final Instant expiration;
+        private final AtomicBoolean busy = new AtomicBoolean(false);
+        private volatile ScheduledFuture<?> expiryTask;
+        
+        ChatSession(WebSocketSession outbound, String customerEmail, Instant expiration) {
+            this.outbound = outbound;
+            this.customerEmail = customerEmail;
+            this.expiration = expiration != null ? expiration : Instant.EPOCH;
+        }
+    }
+    
+    /**
+     * Forwards streamed chat replies to a WebSocket connection
+     */
+    private class WebSocketChatStreamListener implements ChatStreamListener {
+        
+        private final ChatSession chatSession;
+        
+        WebSocketChatStreamListener(ChatSession chatSession) {
+            this.chatSession = chatSession;
+        }
+        
+        @Override
+        public void onToken(String token) {
+            Map<String, Object> frame = new LinkedHashMap<>();
+            frame.put("type", "token");
+            frame.put("content", token);
+            try {
+                send(chatSession, frame);
+            } catch (IOException e) {
+                // Client went away or cannot keep up - abort the upstream completion stream
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        @Override
+        public void onComplete(ChatResponse response) {
+            Map<String, Object> frame = new LinkedHashMap<>();
+            frame.put("type", "done");
+            frame.put("response", response);
+            try {
+                send(chatSession, frame);
+            } catch (IOException e) {
+                logger.warn("Failed to send final chat frame: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.chatbot.websocket;
+
+import com.chatbot.service.JwtService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Authenticates WebSocket connections during the HTTP upgrade.
+ * The JWT is taken from the Authorization header or, for browser clients that
+ * cannot set headers on a WebSocket, from the Sec-WebSocket-Protocol header as the
+ * protocol following "bearer" (new WebSocket(url, ["bearer", token])). Tokens are
+ * never read from the URL, which ends up in access logs. The token expiry is stored
+ * in the session attributes so that {@link ChatWebSocketHandler} can close the
+ * connection once it passes.
+ */
+@Component
+public class JwtHandshakeInterceptor implements HandshakeInterceptor {
+    
+    public static final String CUSTOMER_EMAIL_ATTRIBUTE = "customerEmail";
+    
+    public static final String TOKEN_EXPIRATION_ATTRIBUTE = "tokenExpiration";
+    
+    public static final String BEARER_PROTOCOL = "bearer";
+    
+    private static final Logger logger = LoggerFactory.getLogger(JwtHandshakeInterceptor.class);
+    
+    @Autowired
+    private JwtService jwtService;
+    
+    @Autowired
+    private UserDetailsService userDetailsService;
+    
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String jwt = extractToken(request);
+        if (jwt == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        
+        try {
+            String userEmail = jwtService.extractEmail(jwt);
+            if (userEmail != null) {
+                UserDetails userDetails = userDetailsService.loadUserByUsername(userEmail);
+                // The account state is only checked here; messages on the connection are not re-checked
+                if (userDetails.isEnabled() && jwtService.validateToken(jwt, userDetails.getUsername())) {
+                    attributes.put(CUSTOMER_EMAIL_ATTRIBUTE, userDetails.getUsername());
+                    attributes.put(TOKEN_EXPIRATION_ATTRIBUTE, jwtService.extractExpiration(jwt).toInstant());
+                    return true;
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("WebSocket JWT validation failed: {}", e.getMessage());
+        }
+        
+        response.setStatusCode(HttpStatus.UNAUTHORIZED);
+        return false;
+    }
+    
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+        // Nothing to do after the handshake
+    }
+    
+    /**
+     * Extract the JWT from the Authorization header or the Sec-WebSocket-Protocol header
+     * @param request Handshake request
+     * @return JWT token, or null if none was supplied
+     */
+    private String extractToken(ServerHttpRequest request) {
+        String authHeader = request.getHeaders().getFirst("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+        
+        List<String> protocols = new ArrayList<>();
+        for (String header : request.getHeaders().getOrEmpty(WebSocketHttpHeaders.SEC_WEBSOCKET_PROTOCOL)) {
+            for (String protocol : header.split(",")) {
+                protocols.add(protocol.trim());
+            }
+        }
+        int bearer = protocols.indexOf(BEARER_PROTOCOL);
+        return bearer >= 0 && bearer + 1 < protocols.size() ? protocols.get(bearer + 1) : null;
+    }
+}
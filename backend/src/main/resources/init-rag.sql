@@ -14,15 +14,37 @@ CREATE TABLE IF NOT EXISTS knowledge_base (
     tags TEXT, -- JSON array as string
     embedding TEXT, -- Store JSON string
     embedding_vector vector(1536), -- Vector for similarity search
+    content_hash VARCHAR(64), -- SHA-256 of the embedded content
+    embedding_model VARCHAR(100), -- Model that produced the embedding
     created_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_date TIMESTAMP
 );
 
+-- Columns used by the incremental knowledge base sync on databases created before they existed
+ALTER TABLE knowledge_base ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+ALTER TABLE knowledge_base ADD COLUMN IF NOT EXISTS embedding_model VARCHAR(100);
+
 -- Create indexes for better performance
 CREATE INDEX IF NOT EXISTS idx_knowledge_base_document_id ON knowledge_base(document_id);
 CREATE INDEX IF NOT EXISTS idx_knowledge_base_category ON knowledge_base(category);
 CREATE INDEX IF NOT EXISTS idx_knowledge_base_embedding_vector ON knowledge_base USING ivfflat (embedding_vector vector_cosine_ops) WITH (lists = 100);
 
+-- Create knowledge_chunk table for chunk-level embeddings of knowledge base documents
+CREATE TABLE IF NOT EXISTS knowledge_chunk (
+    id BIGSERIAL PRIMARY KEY,
+    knowledge_base_id BIGINT NOT NULL REFERENCES knowledge_base(id) ON DELETE CASCADE,
+    chunk_index INTEGER NOT NULL, -- Position of the chunk within its document
+    content TEXT NOT NULL,
+    embedding TEXT, -- Store JSON string
+    embedding_vector vector(1536), -- Vector for similarity search
+    source_hash VARCHAR(64), -- SHA-256 of the document content hash and chunking settings
+    embedding_model VARCHAR(100), -- Model that produced the embedding
+    created_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_knowledge_chunk_knowledge_base_id ON knowledge_chunk(knowledge_base_id);
+CREATE INDEX IF NOT EXISTS idx_knowledge_chunk_embedding_vector ON knowledge_chunk USING ivfflat (embedding_vector vector_cosine_ops) WITH (lists = 100);
+
 -- Create function to update updated_date automatically
 CREATE OR REPLACE FUNCTION update_updated_date_column()
 RETURNS TRIGGER AS $$
@@ -96,5 +118,6 @@ BEGIN
     RAISE NOTICE 'RAG database initialization completed successfully';
     RAISE NOTICE 'pgvector extension enabled';
     RAISE NOTICE 'knowledge_base table created with indexes';
+    RAISE NOTICE 'knowledge_chunk table created with indexes';
     RAISE NOTICE 'Sample documents inserted';
 END $$; 
\ No newline at end of file
@@ -118,6 +118,10 @@ ON CONFLICT (order_number) DO NOTHING;
 -- PERFORMANCE OPTIMIZATION
 -- =============================================================================
 
+-- Let Hibernate allocate conversation IDs in blocks of 50 (pooled optimizer)
+-- so conversation inserts can be sent as JDBC batches
+ALTER SEQUENCE conversations_id_seq INCREMENT BY 50;
+
 -- Create indexes for better performance
 CREATE INDEX IF NOT EXISTS idx_customers_email ON customers(email);
 CREATE INDEX IF NOT EXISTS idx_orders_customer_id ON orders(customer_id);
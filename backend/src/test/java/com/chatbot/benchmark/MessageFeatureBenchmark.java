@@ -0,0 +1,94 @@
+package com.chatbot.benchmark;
+
+import com.chatbot.service.MessageFeatureExtractor;
+import com.chatbot.service.MessageFeatures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single-pass message feature extractor with the previous
+ * toLowerCase/contains/String.matches scans done by ChatService.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.chatbot.benchmark.MessageFeatureBenchmark -Dexec.classpathScope=test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageFeatureBenchmark {
+
+    @Param({
+        "What's the status of order ORD-001-002?",
+        "Show me my order history",
+        "Hi, I placed an order last week and I would like to know whether it has shipped yet or if it is still processing. "
+            + "Also, how long does express delivery usually take to reach Portland?"
+    })
+    public String message;
+
+    private MessageFeatureExtractor extractor;
+
+    @Setup
+    public void setUp() {
+        extractor = MessageFeatureExtractor.withDefaults();
+    }
+
+    @Benchmark
+    public MessageFeatures singlePass() {
+        return extractor.extract(message);
+    }
+
+    @Benchmark
+    public void repeatedScans(Blackhole blackhole) {
+        // analyzeIntent
+        String lowerMessage = message.toLowerCase();
+        boolean statusInquiry = lowerMessage.contains("order") && (lowerMessage.contains("status") || lowerMessage.contains("where") || lowerMessage.contains("track"));
+        boolean history = lowerMessage.contains("order") && (lowerMessage.contains("history") || lowerMessage.contains("past") || lowerMessage.contains("previous"));
+        boolean tracking = lowerMessage.contains("track") || lowerMessage.contains("shipping") || lowerMessage.contains("delivery");
+        boolean help = lowerMessage.contains("help") || lowerMessage.contains("support");
+        blackhole.consume(statusInquiry || history || tracking || help);
+
+        // extractOrderNumber
+        List<String> orderNumbers = new ArrayList<>();
+        for (String word : message.split("\\s+")) {
+            if (word.matches("ORD-\\d+")) {
+                orderNumbers.add(word);
+            }
+        }
+        blackhole.consume(orderNumbers);
+
+        // retrieveOrderContext and extractStatus
+        String orderLowerMessage = message.toLowerCase();
+        blackhole.consume(orderLowerMessage.contains("order") && (orderLowerMessage.contains("history") || orderLowerMessage.contains("all") || orderLowerMessage.contains("my orders")));
+        blackhole.consume(orderLowerMessage.contains("recent") || orderLowerMessage.contains("latest"));
+        if (orderLowerMessage.contains("shipped") || orderLowerMessage.contains("processing") || orderLowerMessage.contains("delivered")) {
+            if (orderLowerMessage.contains("shipped")) blackhole.consume("SHIPPED");
+            else if (orderLowerMessage.contains("processing")) blackhole.consume("PROCESSING");
+            else if (orderLowerMessage.contains("delivered")) blackhole.consume("DELIVERED");
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(MessageFeatureBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
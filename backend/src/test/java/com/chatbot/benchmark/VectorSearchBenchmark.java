@@ -0,0 +1,164 @@
+package com.chatbot.benchmark;
+
+import com.chatbot.service.ExactVectorIndex;
+import com.chatbot.service.ScoredNode;
+import com.pgvector.PGvector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares top-5 cosine search over the knowledge base embeddings: the exact in-process
+ * scan with Vector API and scalar dot products, and the pgvector query used by
+ * KnowledgeBaseVectorRepository.
+ *
+ * The pgvector benchmark needs a PostgreSQL database with the vector extension; it loads
+ * the same random vectors into a temporary table. Without -Dbenchmark.jdbc.url it fails
+ * in setup and the other benchmarks still run.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.chatbot.benchmark.VectorSearchBenchmark -Dexec.classpathScope=test
+ *   [-Dbenchmark.jdbc.url=jdbc:postgresql://localhost:5432/chatbot -Dbenchmark.jdbc.user=... -Dbenchmark.jdbc.password=...]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorSearchBenchmark {
+
+    @Param({"1000", "20000"})
+    public int documents;
+
+    @Param({"1536"})
+    public int dimensions;
+
+    private List<float[]> vectors;
+
+    private float[] query;
+
+    private ExactVectorIndex index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        vectors = new ArrayList<>(documents);
+        for (int i = 0; i < documents; i++) {
+            vectors.add(randomVector(random, dimensions));
+        }
+        query = randomVector(random, dimensions);
+        index = ExactVectorIndex.build(vectors, 4096);
+    }
+
+    @Benchmark
+    public List<ScoredNode> exactScan() {
+        return index.search(query, 5, node -> true);
+    }
+
+    @Benchmark
+    @Fork(1)
+    public List<ScoredNode> exactScanScalar() {
+        // Forked without the Vector API module, so VectorMath uses its scalar loop
+        return index.search(query, 5, node -> true);
+    }
+
+    @Benchmark
+    public List<Long> pgvectorQuery(PgvectorState pgvector) throws SQLException {
+        List<Long> ids = new ArrayList<>(5);
+        try (PreparedStatement ps = pgvector.connection.prepareStatement(
+                "SELECT id, embedding_vector <=> ? AS distance FROM benchmark_vectors ORDER BY distance LIMIT 5")) {
+            ps.setObject(1, new PGvector(query));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    @State(Scope.Benchmark)
+    public static class PgvectorState {
+
+        private Connection connection;
+
+        @Setup(Level.Trial)
+        public void setUp(VectorSearchBenchmark benchmark) throws SQLException {
+            String url = System.getProperty("benchmark.jdbc.url");
+            if (url == null) {
+                throw new IllegalStateException("Set -Dbenchmark.jdbc.url to benchmark the pgvector query");
+            }
+            connection = DriverManager.getConnection(url,
+                System.getProperty("benchmark.jdbc.user"), System.getProperty("benchmark.jdbc.password"));
+            PGvector.addVectorType(connection);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TEMPORARY TABLE benchmark_vectors (id BIGINT PRIMARY KEY, embedding_vector vector("
+                    + benchmark.dimensions + "))");
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO benchmark_vectors (id, embedding_vector) VALUES (?, ?)")) {
+                for (int i = 0; i < benchmark.vectors.size(); i++) {
+                    ps.setLong(1, i);
+                    ps.setObject(2, new PGvector(benchmark.vectors.get(i)));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE benchmark_vectors");
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    private static float[] randomVector(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .include(VectorSearchBenchmark.class.getSimpleName());
+        // System properties set on the Maven command line are not inherited by forked benchmark JVMs
+        for (String property : List.of("benchmark.jdbc.url", "benchmark.jdbc.user", "benchmark.jdbc.password")) {
+            if (System.getProperty(property) != null) {
+                options.jvmArgsAppend("-D" + property + "=" + System.getProperty(property));
+            }
+        }
+        new Runner(options.build()).run();
+    }
+}
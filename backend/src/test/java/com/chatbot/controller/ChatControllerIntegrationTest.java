@@ -109,4 +109,16 @@ class ChatControllerIntegrationTest {
                 .andExpect(jsonPath("$.timestamp").exists())
                 .andExpect(jsonPath("$.status").value(500));
     }
-} 
\ No newline at end of file
+
+    @Test
+    @WithMockUser(username = "test@example.com")
+    void testStreamMessageWithEmptyMessage() throws Exception {
+        ChatRequest chatRequest = new ChatRequest();
+        chatRequest.setMessage("");
+
+        mockMvc.perform(post("/api/chat/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(chatRequest)))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,152 @@
+package com.chatbot.controller;
+
+import com.chatbot.model.Conversation;
+import com.chatbot.model.Customer;
+import com.chatbot.repository.ConversationRepository;
+import com.chatbot.repository.CustomerRepository;
+import com.chatbot.service.JwtService;
+import com.theokanning.openai.completion.chat.ChatCompletionChoice;
+import com.theokanning.openai.completion.chat.ChatCompletionChunk;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import com.theokanning.openai.service.OpenAiService;
+import io.reactivex.Flowable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class ChatStreamIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ChatController chatController;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @MockBean
+    private OpenAiService openAiService;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        customer = new Customer();
+        customer.setEmail("stream@example.com");
+        customer.setFirstName("Stream");
+        customer.setLastName("User");
+        customer.setPassword("$2a$10$encodedPassword");
+        customer.setEnabled(true);
+        customer = customerRepository.save(customer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        conversationRepository.deleteAll(conversationRepository.findByCustomerIdOrderByCreatedDateDesc(customer.getId()));
+        customerRepository.delete(customer);
+    }
+
+    @Test
+    void testStreamSendsTokensThenDoneAndSavesConversation() throws Exception {
+        when(openAiService.streamChatCompletion(any(ChatCompletionRequest.class)))
+            .thenReturn(Flowable.just(chunk("Deliveries are "), chunk("running on time.")));
+
+        HttpResponse<String> response = client.send(streamRequest("Is there an outage right now?"),
+            HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        String body = response.body();
+        int first = body.indexOf("event:token\ndata:{\"content\":\"Deliveries are \"}");
+        int second = body.indexOf("event:token\ndata:{\"content\":\"running on time.\"}");
+        int done = body.indexOf("event:done\ndata:{\"message\":\"Deliveries are running on time.\"");
+        assertTrue(first >= 0 && first < second && second < done, body);
+
+        List<Conversation> saved = awaitConversations(2);
+        assertEquals(2, saved.size());
+        assertTrue(saved.stream().anyMatch(c -> c.getIsBotMessage() && c.getMessage().equals("Deliveries are running on time.")));
+        assertTrue(saved.stream().anyMatch(c -> !c.getIsBotMessage() && c.getMessage().equals("Is there an outage right now?")));
+    }
+
+    @Test
+    void testTimedOutStreamCancelsUpstreamCompletion() throws Exception {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        // A slow upstream stream that would run for ten seconds
+        when(openAiService.streamChatCompletion(any(ChatCompletionRequest.class)))
+            .thenReturn(Flowable.interval(200, TimeUnit.MILLISECONDS)
+                .take(50)
+                .map(i -> chunk("part " + i + " "))
+                .doOnCancel(cancelled::countDown));
+
+        Object timeout = ReflectionTestUtils.getField(chatController, "streamTimeoutMs");
+        ReflectionTestUtils.setField(chatController, "streamTimeoutMs", 500L);
+        try {
+            HttpResponse<String> response = client.send(streamRequest("Are any deliveries delayed today?"),
+                HttpResponse.BodyHandlers.ofString());
+
+            assertTrue(response.body().contains("event:token"));
+            assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        } finally {
+            ReflectionTestUtils.setField(chatController, "streamTimeoutMs", timeout);
+        }
+    }
+
+    private HttpRequest streamRequest(String message) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/chat/stream"))
+            .header("Authorization", "Bearer " + jwtService.generateToken(customer.getId(), customer.getEmail()))
+            .header("Content-Type", "application/json")
+            .timeout(Duration.ofSeconds(10))
+            .POST(HttpRequest.BodyPublishers.ofString("{\"message\": \"" + message + "\"}"))
+            .build();
+    }
+
+    private List<Conversation> awaitConversations(int expected) throws InterruptedException {
+        List<Conversation> saved = List.of();
+        for (int attempt = 0; attempt < 50 && saved.size() < expected; attempt++) {
+            Thread.sleep(100);
+            saved = conversationRepository.findByCustomerIdOrderByCreatedDateDesc(customer.getId());
+        }
+        return saved;
+    }
+
+    private static ChatCompletionChunk chunk(String content) {
+        ChatMessage delta = new ChatMessage();
+        delta.setContent(content);
+        ChatCompletionChoice choice = new ChatCompletionChoice();
+        choice.setMessage(delta);
+        ChatCompletionChunk chunk = new ChatCompletionChunk();
+        chunk.setChoices(List.of(choice));
+        return chunk;
+    }
+}
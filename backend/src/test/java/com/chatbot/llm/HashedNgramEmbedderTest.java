@@ -0,0 +1,50 @@
+package com.chatbot.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedNgramEmbedderTest {
+
+    private final HashedNgramEmbedder embedder = new HashedNgramEmbedder(512);
+
+    @Test
+    void testVectorsAreDeterministicUnitVectors() {
+        float[] vector = embedder.embed("Where is my package?");
+
+        assertEquals(512, vector.length);
+        assertEquals(1.0, norm(vector), 1e-5);
+        assertArrayEquals(vector, new HashedNgramEmbedder(512).embed("where is MY package"));
+        assertArrayEquals(vector, embedder.embed(List.of("Where is my package?")).get(0));
+        assertEquals(0.0, norm(embedder.embed("is it the")), 0.0);
+        assertEquals("hashed-ngram-512", embedder.getModel());
+    }
+
+    @Test
+    void testRelatedTextsAreMoreSimilarThanUnrelatedOnes() {
+        float[] query = embedder.embed("How long does express shipping take?");
+        float[] shipping = embedder.embed("Express shipping delivers within two business days");
+        float[] misspelled = embedder.embed("expres shiping");
+        float[] returns = embedder.embed("Refunds are issued once the returned item arrives");
+
+        assertTrue(dot(query, shipping) > dot(query, returns) + 0.2);
+        // Shared trigrams keep misspelled words close
+        assertTrue(dot(query, misspelled) > dot(query, returns) + 0.2);
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static double norm(float[] vector) {
+        return Math.sqrt(dot(vector, vector));
+    }
+}
@@ -0,0 +1,125 @@
+package com.chatbot.llm;
+
+import com.chatbot.dto.ChatResponse;
+import com.chatbot.model.Customer;
+import com.chatbot.repository.CustomerRepository;
+import com.chatbot.service.ChatService;
+import com.chatbot.service.ChatStreamListener;
+import com.chatbot.service.QueryEmbeddingCache;
+import com.chatbot.service.RagService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+    "llm.provider=stub",
+    "llm.stub.latency-distribution=CONSTANT",
+    "llm.stub.completion-latency-ms=5",
+    "llm.stub.embedding-latency-ms=1",
+    "llm.stub.stream-chunk-delay-ms=0",
+    "llm.stub.reply-words=20"
+})
+@ActiveProfiles("test")
+class StubLlmProviderIntegrationTest {
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private StubLlmProvider stubLlmProvider;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private RagService ragService;
+
+    @Autowired
+    private QueryEmbeddingCache queryEmbeddingCache;
+
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        customer = new Customer();
+        customer.setEmail("test@example.com");
+        customer.setFirstName("Test");
+        customer.setLastName("User");
+        customer.setPassword("$2a$10$encodedPassword");
+        customer.setEnabled(true);
+        customer = customerRepository.save(customer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.delete(customer);
+    }
+
+    @Test
+    void testProcessMessageRunsOfflineAgainstStub() {
+        ChatResponse response = chatService.processMessage("Do you ship internationally?", "test@example.com");
+
+        assertNotNull(response);
+        assertEquals(20, response.getMessage().split(" ").length);
+        assertTrue(response.getConfidence() > 0.5);
+    }
+
+    @Test
+    void testStreamMessageDeliversReplyWordByWord() {
+        List<String> tokens = new ArrayList<>();
+        AtomicReference<ChatResponse> completed = new AtomicReference<>();
+
+        chatService.streamMessage("How long does standard shipping take?", "test@example.com", new ChatStreamListener() {
+            @Override
+            public void onToken(String token) {
+                tokens.add(token);
+            }
+
+            @Override
+            public void onComplete(ChatResponse response) {
+                completed.set(response);
+            }
+        });
+
+        assertEquals(20, tokens.size());
+        assertEquals(String.join("", tokens), completed.get().getMessage());
+    }
+
+    @Test
+    void testQueryEmbeddingsAreCachedUnderTheProviderModel() {
+        float[] embedding = ragService.embedQuery("Where is my parcel?");
+
+        assertEquals("stub-1536", stubLlmProvider.getModel());
+        assertArrayEquals(embedding, queryEmbeddingCache.getIfPresent(stubLlmProvider.getModel(), "Where is my parcel?"));
+    }
+
+    @Test
+    void testPseudoEmbeddingsAreDeterministicAndReflectSharedWords() {
+        List<float[]> vectors = stubLlmProvider.embed(List.of(
+            "where is my order", "where is my order", "is my order shipped", "refund policy for damaged items"));
+
+        assertArrayEquals(vectors.get(0), vectors.get(1));
+        assertEquals(1.0, dot(vectors.get(0), vectors.get(0)), 1e-4);
+        assertTrue(dot(vectors.get(0), vectors.get(2)) > dot(vectors.get(0), vectors.get(3)));
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
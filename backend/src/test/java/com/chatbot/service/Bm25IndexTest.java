@@ -0,0 +1,44 @@
+package com.chatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Bm25IndexTest {
+
+    private static final float[] WEIGHTS = {2.0f, 1.0f};
+
+    private final Bm25Index index = Bm25Index.build(List.of(
+        new String[] {"Order Status Values", "An order is SHIPPED once the carrier has picked it up."},
+        new String[] {"Track Order API", "The track endpoint returns carrier tracking events for an order."},
+        new String[] {"Return Policy", "Items can be returned within thirty days of delivery."},
+        new String[] {"Shipping Methods", "Standard and express shipping are offered for every order."}), WEIGHTS);
+
+    @Test
+    void testRanksRareAndTitleTermsHigher() {
+        List<ScoredNode> tracking = index.search("track order API", 10, doc -> true);
+        assertEquals(1, tracking.get(0).node());
+        for (int i = 1; i < tracking.size(); i++) {
+            assertTrue(tracking.get(i - 1).score() >= tracking.get(i).score());
+        }
+
+        List<ScoredNode> shipped = index.search("What does SHIPPED mean?", 10, doc -> true);
+        assertEquals(List.of(0), shipped.stream().map(ScoredNode::node).toList());
+        assertTrue(shipped.get(0).score() <= index.maxScore("What does SHIPPED mean?"));
+    }
+
+    @Test
+    void testFiltersLimitsAndUnknownTerms() {
+        List<ScoredNode> orders = index.search("order", 10, doc -> doc != 1);
+        assertEquals(List.of(0, 3), orders.stream().map(ScoredNode::node).sorted().toList());
+        assertEquals(2, index.search("order", 2, doc -> true).size());
+
+        assertTrue(index.search("warranty", 10, doc -> true).isEmpty());
+        assertTrue(index.search("the and of", 10, doc -> true).isEmpty());
+        assertEquals(0f, index.maxScore("warranty"));
+        assertTrue(Bm25Index.build(List.of(), WEIGHTS).search("order", 3, doc -> true).isEmpty());
+    }
+}
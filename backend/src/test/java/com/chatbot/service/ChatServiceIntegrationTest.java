@@ -3,6 +3,8 @@ package com.chatbot.service;
 import com.chatbot.dto.ChatResponse;
 import com.chatbot.model.Customer;
 import com.chatbot.model.Order;
+import com.chatbot.model.RetrievedDocument;
+import com.chatbot.repository.ConversationRepository;
 import com.chatbot.repository.CustomerRepository;
 import com.chatbot.repository.OrderRepository;
 import com.theokanning.openai.completion.chat.ChatCompletionChoice;
@@ -12,22 +14,38 @@ import com.theokanning.openai.completion.chat.ChatMessage;
 import com.theokanning.openai.service.OpenAiService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest
@@ -44,6 +62,12 @@ class ChatServiceIntegrationTest {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private PromptBuilder promptBuilder;
+
     @MockBean
     private RagService ragService;
 
@@ -77,8 +101,6 @@ class ChatServiceIntegrationTest {
         // Mock RagService behavior
         when(ragService.retrieveRelevantDocuments(anyString(), anyInt()))
                 .thenReturn(Collections.emptyList());
-        when(ragService.buildContext(any()))
-                .thenReturn("Mock knowledge base context for testing");
     }
 
     @Test
@@ -118,6 +140,9 @@ class ChatServiceIntegrationTest {
         assertNotNull(result.getMessage());
         assertNotNull(result.getIntent());
         assertTrue(result.getConfidence() >= 0 && result.getConfidence() <= 1);
+        // Never answered with another customer's orders
+        assertTrue(result.getMessage().contains("couldn't find an active customer account"));
+        verify(openAiService, never()).createChatCompletion(any());
     }
 
     @Test
@@ -127,8 +152,6 @@ class ChatServiceIntegrationTest {
 
         when(ragService.retrieveRelevantDocuments(anyString(), anyInt()))
                 .thenReturn(Collections.emptyList());
-        when(ragService.buildContext(any()))
-                .thenReturn("Mock knowledge base context for testing");
 
         ChatMessage aiMessage = new ChatMessage();
         aiMessage.setContent("Here is the status of your order TEST-001: It is currently processing with a total of $99.99.");
@@ -176,8 +199,6 @@ class ChatServiceIntegrationTest {
 
         when(ragService.retrieveRelevantDocuments(anyString(), anyInt()))
                 .thenReturn(Collections.emptyList());
-        when(ragService.buildContext(any()))
-                .thenReturn("Mock knowledge base context for testing");
 
         ChatMessage aiMessage = new ChatMessage();
         aiMessage.setContent("I'm sorry, but I can only provide information about your own orders. The order number 'OTHER-001' does not belong to your account.");
@@ -206,8 +227,6 @@ class ChatServiceIntegrationTest {
 
         when(ragService.retrieveRelevantDocuments(anyString(), anyInt()))
                 .thenReturn(Collections.emptyList());
-        when(ragService.buildContext(any()))
-                .thenReturn("Mock knowledge base context for testing");
 
         ChatMessage aiMessage = new ChatMessage();
         aiMessage.setContent("I'm sorry, but I couldn't find order NONEXISTENT-001 in our system. Please check the order number and try again.");
@@ -235,8 +254,6 @@ class ChatServiceIntegrationTest {
 
         when(ragService.retrieveRelevantDocuments(anyString(), anyInt()))
                 .thenReturn(Collections.emptyList());
-        when(ragService.buildContext(any()))
-                .thenReturn("Mock knowledge base context for testing");
 
         ChatMessage aiMessage = new ChatMessage();
         aiMessage.setContent("Here is your order history: TEST-001 is currently processing with a total of $99.99.");
@@ -263,8 +280,6 @@ class ChatServiceIntegrationTest {
 
         when(ragService.retrieveRelevantDocuments(anyString(), anyInt()))
                 .thenReturn(Collections.emptyList());
-        when(ragService.buildContext(any()))
-                .thenReturn("Mock knowledge base context for testing");
 
         ChatCompletionRequest request = new ChatCompletionRequest(); // or mock this too if needed
 
@@ -286,4 +301,253 @@ class ChatServiceIntegrationTest {
         assertNotNull(result.getMessage());
         assertTrue(result.getMessage().contains("recent orders") || result.getMessage().contains("TEST-001"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testParaphrasedGeneralQuestionIsAnsweredFromSemanticCache() {
+        String customerEmail = testCustomer.getEmail();
+
+        // Near-identical embeddings for two phrasings of the same question
+        when(ragService.embedQueryIfAvailable("How long does express shipping take?"))
+                .thenReturn(new float[]{0.6f, 0.8f, 0.0f});
+        when(ragService.embedQueryIfAvailable("how long is express shipping"))
+                .thenReturn(new float[]{0.61f, 0.79f, 0.01f});
+
+        ChatMessage aiMessage = new ChatMessage();
+        aiMessage.setContent("Express shipping takes 2-3 business days.");
+
+        ChatCompletionChoice choice = new ChatCompletionChoice();
+        choice.setMessage(aiMessage);
+
+        ChatCompletionResult chatCompletionResult = new ChatCompletionResult();
+        chatCompletionResult.setChoices(List.of(choice));
+
+        when(openAiService.createChatCompletion(any()))
+                .thenReturn(chatCompletionResult);
+
+        ChatResponse first = chatService.processMessage("How long does express shipping take?", customerEmail);
+        ChatResponse second = chatService.processMessage("how long is express shipping", customerEmail);
+
+        assertEquals(first.getMessage(), second.getMessage());
+        assertEquals(first.getIntent(), second.getIntent());
+        verify(openAiService, times(1)).createChatCompletion(any());
+    }
+
+    @Test
+    void testLongOrderHistoryListsNewestOrdersAndCountsTheRest() {
+        for (int i = 1; i <= 13; i++) {
+            Order order = new Order();
+            order.setOrderNumber(String.format("ORD-8%03d", i));
+            order.setCustomerId(testCustomer.getId());
+            order.setStatus("DELIVERED");
+            order.setTotalAmount(new BigDecimal("10.00"));
+            orderRepository.save(order);
+        }
+
+        ChatResponse result = chatService.processMessage("Show me my order history", testCustomer.getEmail());
+
+        assertEquals("ORDER_HISTORY", result.getIntent());
+        assertEquals(10, result.getMessage().split("\n- Order ", -1).length - 1);
+        assertTrue(result.getMessage().contains("ORD-8013"));
+        assertTrue(result.getMessage().contains("ORD-8004"));
+        assertTrue(!result.getMessage().contains("ORD-8003"));
+        assertTrue(result.getMessage().contains("...and 4 older orders."));
+        verify(openAiService, never()).createChatCompletion(any());
+    }
+
+    @Test
+    void testSingleOrderStatusIsAnsweredWithoutLlm() {
+        Order order = new Order();
+        order.setOrderNumber("ORD-9001");
+        order.setCustomerId(testCustomer.getId());
+        order.setStatus("SHIPPED");
+        order.setTotalAmount(new BigDecimal("149.50"));
+        order.setCreatedDate(LocalDateTime.of(2024, 1, 15, 10, 0));
+        orderRepository.save(order);
+
+        ChatResponse result = chatService.processMessage("status of ORD-9001?", testCustomer.getEmail());
+
+        assertEquals("ORDER_STATUS_INQUIRY", result.getIntent());
+        assertTrue(result.getMessage().contains("ORD-9001"));
+        assertTrue(result.getMessage().contains("SHIPPED"));
+        assertTrue(result.getMessage().contains("$149.50"));
+        verify(openAiService, never()).createChatCompletion(any());
+    }
+
+    @Test
+    void testSingleOrderTrackingQuestionKeepsItsIntent() {
+        Order order = new Order();
+        order.setOrderNumber("ORD-9005");
+        order.setCustomerId(testCustomer.getId());
+        order.setStatus("SHIPPED");
+        order.setCreatedDate(LocalDateTime.of(2024, 1, 20, 10, 0));
+        orderRepository.save(order);
+
+        ChatResponse result = chatService.processMessage("Track ORD-9005 for me", testCustomer.getEmail());
+
+        assertEquals("TRACKING_INFO", result.getIntent());
+        assertTrue(result.getMessage().contains("SHIPPED"));
+        verify(openAiService, never()).createChatCompletion(any());
+    }
+
+    @Test
+    void testAmbiguousOrderQuestionFallsBackToLlm() {
+        ChatMessage aiMessage = new ChatMessage();
+        aiMessage.setContent("I can help you cancel order ORD-9002.");
+
+        ChatCompletionChoice choice = new ChatCompletionChoice();
+        choice.setMessage(aiMessage);
+
+        ChatCompletionResult chatCompletionResult = new ChatCompletionResult();
+        chatCompletionResult.setChoices(List.of(choice));
+
+        when(openAiService.createChatCompletion(any()))
+                .thenReturn(chatCompletionResult);
+
+        chatService.processMessage("Can I cancel order ORD-9002 given its status?", testCustomer.getEmail());
+
+        verify(openAiService, times(1)).createChatCompletion(any());
+    }
+
+    @Test
+    void testSlowKnowledgeBaseRetrievalTimesOutWithOrderContextKept() {
+        Order order = new Order();
+        order.setOrderNumber("ORD-9003");
+        order.setCustomerId(testCustomer.getId());
+        order.setStatus("PROCESSING");
+        order.setTotalAmount(new BigDecimal("42.00"));
+        order.setCreatedDate(LocalDateTime.of(2024, 2, 1, 9, 0));
+        orderRepository.save(order);
+
+        ChatMessage aiMessage = new ChatMessage();
+        aiMessage.setContent("Order ORD-9003 is still being processed, so it can be cancelled.");
+
+        ChatCompletionChoice choice = new ChatCompletionChoice();
+        choice.setMessage(aiMessage);
+
+        ChatCompletionResult chatCompletionResult = new ChatCompletionResult();
+        chatCompletionResult.setChoices(List.of(choice));
+
+        when(openAiService.createChatCompletion(any()))
+                .thenReturn(chatCompletionResult);
+        // Knowledge base retrieval takes far longer than its timeout
+        Answer<List<RetrievedDocument>> slowRetrieval = invocation -> {
+            Thread.sleep(3000);
+            return Collections.emptyList();
+        };
+        when(ragService.retrieveRelevantDocuments(anyString(), anyInt())).thenAnswer(slowRetrieval);
+        when(ragService.retrieveRoutedDocuments(anyString(), anyCollection(), anyInt())).thenAnswer(slowRetrieval);
+
+        Object ragTimeoutMs = ReflectionTestUtils.getField(chatService, "ragTimeoutMs");
+        ReflectionTestUtils.setField(chatService, "ragTimeoutMs", 200L);
+        try {
+            long start = System.nanoTime();
+            ChatResponse result = chatService.processMessage("Can I cancel order ORD-9003 given its status?", testCustomer.getEmail());
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals("Order ORD-9003 is still being processed, so it can be cancelled.", result.getMessage());
+            assertTrue(elapsedMs < 2000, "Reply took " + elapsedMs + " ms");
+        } finally {
+            ReflectionTestUtils.setField(chatService, "ragTimeoutMs", ragTimeoutMs);
+        }
+
+        ArgumentCaptor<ChatCompletionRequest> request = ArgumentCaptor.forClass(ChatCompletionRequest.class);
+        verify(openAiService).createChatCompletion(request.capture());
+        String systemPrompt = request.getValue().getMessages().get(0).getContent();
+        assertTrue(systemPrompt.contains("ORD-9003"));
+        assertTrue(systemPrompt.contains("PROCESSING"));
+    }
+
+    @Test
+    void testSaturatedContextExecutorFallsBackInsteadOfRunningOnTheCaller() {
+        ChatMessage aiMessage = new ChatMessage();
+        aiMessage.setContent("I can't see your orders right now, please try again shortly.");
+
+        ChatCompletionChoice choice = new ChatCompletionChoice();
+        choice.setMessage(aiMessage);
+
+        ChatCompletionResult chatCompletionResult = new ChatCompletionResult();
+        chatCompletionResult.setChoices(List.of(choice));
+
+        when(openAiService.createChatCompletion(any()))
+                .thenReturn(chatCompletionResult);
+
+        Object contextExecutor = ReflectionTestUtils.getField(chatService, "chatContextExecutor");
+        Executor saturated = command -> {
+            throw new RejectedExecutionException("Context pool saturated");
+        };
+        ReflectionTestUtils.setField(chatService, "chatContextExecutor", saturated);
+        try {
+            ChatResponse result = chatService.processMessage("Can I cancel order TEST-001 given its status?", testCustomer.getEmail());
+
+            assertEquals("I can't see your orders right now, please try again shortly.", result.getMessage());
+        } finally {
+            ReflectionTestUtils.setField(chatService, "chatContextExecutor", contextExecutor);
+        }
+
+        // Neither stage ran on the request thread; both fell back to their unavailable context
+        verify(ragService, never()).retrieveRelevantDocuments(anyString(), anyInt());
+        verify(ragService, never()).retrieveRoutedDocuments(anyString(), anyCollection(), anyInt());
+        ArgumentCaptor<ChatCompletionRequest> request = ArgumentCaptor.forClass(ChatCompletionRequest.class);
+        verify(openAiService).createChatCompletion(request.capture());
+        String systemPrompt = request.getValue().getMessages().get(0).getContent();
+        assertTrue(systemPrompt.contains("Unable to retrieve order information"));
+    }
+
+    @Test
+    void testLargeOrderHistoryIsPackedIntoPromptBudget() {
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            entries.add(String.format("- Order BULK-%04d: DELIVERED, $10.00, %s\n", i, LocalDateTime.now().minusDays(i)));
+        }
+        PromptSection history = new PromptSection("order-history", 4, "CUSTOMER ORDER HISTORY:\n", entries, "\n");
+        PromptSection order = PromptSection.text("order", 0, "ORDER NOT FOUND: The order number 'ORD-999' was not found in our system.\n\n");
+
+        List<ChatMessage> messages = promptBuilder.buildMessages("Show me all my orders", List.of(history, order));
+        String systemPrompt = messages.get(0).getContent();
+
+        assertTrue(systemPrompt.contains("ORDER NOT FOUND"));
+        assertTrue(systemPrompt.contains("CUSTOMER ORDER HISTORY"));
+        assertTrue(systemPrompt.contains("BULK-0000"));
+        assertTrue(systemPrompt.contains("more entries omitted"));
+        assertTrue(systemPrompt.indexOf("CUSTOMER ORDER HISTORY") < systemPrompt.indexOf("ORDER NOT FOUND"));
+        assertTrue(promptBuilder.countTokens(systemPrompt) + promptBuilder.countTokens("Show me all my orders") <= 3000);
+    }
+
+    // Worker threads only see committed rows, so the test customer is committed and removed afterwards
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testConcurrentIdenticalGeneralQuestionsShareOneCompletion() throws Exception {
+        ChatMessage aiMessage = new ChatMessage();
+        aiMessage.setContent("We are aware of a delay affecting some deliveries today.");
+
+        ChatCompletionChoice choice = new ChatCompletionChoice();
+        choice.setMessage(aiMessage);
+
+        ChatCompletionResult chatCompletionResult = new ChatCompletionResult();
+        chatCompletionResult.setChoices(List.of(choice));
+
+        // Slow upstream call so that all requests arrive while the first one is in flight
+        when(openAiService.createChatCompletion(any())).thenAnswer(invocation -> {
+            Thread.sleep(1000);
+            return chatCompletionResult;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<ChatResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(executor.submit(() -> chatService.processMessage("Is there an outage right now?", testCustomer.getEmail())));
+            }
+            for (Future<ChatResponse> future : futures) {
+                assertEquals("We are aware of a delay affecting some deliveries today.", future.get(10, TimeUnit.SECONDS).getMessage());
+            }
+        } finally {
+            executor.shutdownNow();
+            conversationRepository.deleteAll(conversationRepository.findByCustomerIdOrderByCreatedDateDesc(testCustomer.getId()));
+            orderRepository.delete(testOrder);
+            customerRepository.delete(testCustomer);
+        }
+
+        verify(openAiService, times(1)).createChatCompletion(any());
+    }
+}
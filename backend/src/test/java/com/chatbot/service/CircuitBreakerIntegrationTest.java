@@ -0,0 +1,168 @@
+package com.chatbot.service;
+
+import com.chatbot.dto.ChatResponse;
+import com.chatbot.model.Customer;
+import com.chatbot.model.RetrievedDocument;
+import com.chatbot.repository.CustomerRepository;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.service.OpenAiService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+    "resilience.circuit-breaker.minimum-calls=2",
+    "resilience.circuit-breaker.window-size=4",
+    "resilience.circuit-breaker.open-duration-ms=60000"
+})
+@ActiveProfiles("test")
+class CircuitBreakerIntegrationTest {
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    @Qualifier("completionCircuitBreaker")
+    private CircuitBreaker completionCircuitBreaker;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @MockBean
+    private RagService ragService;
+
+    @MockBean
+    private OpenAiService openAiService;
+
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        customer = new Customer();
+        customer.setEmail("test@example.com");
+        customer.setFirstName("Test");
+        customer.setLastName("User");
+        customer.setPassword("$2a$10$encodedPassword");
+        customer.setEnabled(true);
+        customer = customerRepository.save(customer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.delete(customer);
+    }
+
+    @Test
+    void testOpenBreakerAnswersLocallyWithoutCallingOpenAi() {
+        RetrievedDocument shipping = new RetrievedDocument(1L, "Shipping Methods",
+            "Standard shipping takes 5-7 business days.", "shipping", 0.9);
+        when(ragService.retrieveRelevantDocuments(anyString(), anyInt())).thenReturn(List.of(shipping));
+        when(ragService.retrieveRoutedDocuments(anyString(), anyCollection(), anyInt())).thenReturn(List.of(shipping));
+        when(ragService.retrieveWithoutProvider(anyString(), anyCollection(), anyInt())).thenReturn(List.of(shipping));
+        when(openAiService.createChatCompletion(any(ChatCompletionRequest.class)))
+            .thenThrow(new RuntimeException("OpenAI unavailable"));
+
+        // Two failed completions open the breaker
+        for (int i = 0; i < 2; i++) {
+            ChatResponse failed = chatService.processMessage("Which shipping methods do you offer?", "test@example.com");
+            assertEquals(0.0, failed.getConfidence());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, completionCircuitBreaker.getState());
+
+        ChatResponse local = chatService.processMessage("Which shipping methods do you offer?", "test@example.com");
+
+        assertEquals(0.5, local.getConfidence());
+        assertTrue(local.getMessage().contains("Shipping Methods"));
+        assertTrue(local.getMessage().contains("Standard shipping takes 5-7 business days."));
+        verify(openAiService, times(2)).createChatCompletion(any(ChatCompletionRequest.class));
+        // Only the reply while the breaker is open finds its documents without the embedding provider
+        verify(ragService, times(1)).retrieveWithoutProvider(anyString(), anyCollection(), anyInt());
+    }
+
+    @Test
+    void testHalfOpenProbesCloseOrReopenBreaker() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test", 50, 2, 4, 50, 1, new SimpleMeterRegistry());
+        failCall(breaker);
+        failCall(breaker);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(CircuitBreaker.CircuitOpenException.class, () -> breaker.execute(() -> "rejected"));
+
+        // A failed probe re-opens the breaker
+        Thread.sleep(80);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        failCall(breaker);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // A successful probe closes it
+        Thread.sleep(80);
+        assertEquals("ok", breaker.execute(() -> "ok"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testLateResultsFromEarlierStateAreIgnored() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 50, 2, 4, 50, 1, new SimpleMeterRegistry());
+
+        // A slow call started while closed succeeds only after the breaker has opened and turned half-open
+        String late = breaker.execute(() -> {
+            failCall(breaker);
+            failCall(breaker);
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+            sleep(80);
+            assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+            return "late";
+        });
+
+        assertEquals("late", late);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals("probe", breaker.execute(() -> "probe"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testIgnoredExceptionsDoNotOpenBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 50, 2, 4, 60000, 1, new SimpleMeterRegistry());
+        for (int i = 0; i < 4; i++) {
+            assertThrows(IllegalStateException.class, () -> breaker.execute(() -> {
+                throw new IllegalStateException("client went away");
+            }, e -> false));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.isCallPermitted());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void failCall(CircuitBreaker breaker) {
+        assertThrows(RuntimeException.class, () -> breaker.execute(() -> {
+            throw new RuntimeException("provider failure");
+        }));
+    }
+}
@@ -0,0 +1,66 @@
+package com.chatbot.service;
+
+import com.chatbot.model.Conversation;
+import com.chatbot.repository.ConversationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ConversationWriterIntegrationTest {
+
+    @Autowired
+    private ConversationWriter conversationWriter;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Test
+    void testEnqueuedConversationIsWrittenInBackground() throws Exception {
+        String sessionId = UUID.randomUUID().toString();
+
+        conversationWriter.enqueue(
+                new Conversation(1L, sessionId, "Where is my order?", false),
+                new Conversation(1L, sessionId, "Your order has shipped.", true));
+
+        List<Conversation> saved = awaitSession(sessionId, 2);
+
+        assertEquals(2, saved.size());
+        assertFalse(saved.get(0).getIsBotMessage());
+        assertTrue(saved.get(1).getIsBotMessage());
+        assertNotNull(saved.get(0).getId());
+        assertNotNull(saved.get(1).getId());
+    }
+
+    @Test
+    void testManyConversationsAreWrittenInBatches() throws Exception {
+        String sessionId = UUID.randomUUID().toString();
+
+        for (int i = 0; i < 120; i++) {
+            conversationWriter.enqueue(
+                    new Conversation(1L, sessionId, "Question " + i, false),
+                    new Conversation(1L, sessionId, "Answer " + i, true));
+        }
+
+        List<Conversation> saved = awaitSession(sessionId, 240);
+
+        assertEquals(240, saved.size());
+        assertEquals(240, saved.stream().map(Conversation::getId).distinct().count());
+    }
+
+    private List<Conversation> awaitSession(String sessionId, int expected) throws InterruptedException {
+        List<Conversation> saved = List.of();
+        for (int attempt = 0; attempt < 50 && saved.size() < expected; attempt++) {
+            Thread.sleep(100);
+            saved = conversationRepository.findBySessionIdOrderByCreatedDateAsc(sessionId);
+        }
+        return saved;
+    }
+}
@@ -0,0 +1,175 @@
+package com.chatbot.service;
+
+import com.chatbot.llm.EmbeddingProvider;
+import com.theokanning.openai.OpenAiError;
+import com.theokanning.openai.OpenAiHttpException;
+import com.theokanning.openai.embedding.Embedding;
+import com.theokanning.openai.embedding.EmbeddingRequest;
+import com.theokanning.openai.embedding.EmbeddingResult;
+import com.theokanning.openai.service.OpenAiService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+    "rag.embedding-batch.max-size=8",
+    "rag.embedding-batch.max-wait-ms=200"
+})
+@ActiveProfiles("test")
+class EmbeddingBatcherIntegrationTest {
+
+    @Autowired
+    private EmbeddingBatcher embeddingBatcher;
+
+    @Autowired
+    @Qualifier("embeddingCircuitBreaker")
+    private CircuitBreaker embeddingCircuitBreaker;
+
+    @MockBean
+    private OpenAiService openAiService;
+
+    @Test
+    void testConcurrentRequestsShareOneBatchedCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger texts = new AtomicInteger();
+
+        // Each vector holds the length of its input text, returned in reverse order
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            calls.incrementAndGet();
+            texts.addAndGet(request.getInput().size());
+            List<Embedding> data = new ArrayList<>();
+            for (int i = request.getInput().size() - 1; i >= 0; i--) {
+                Embedding embedding = new Embedding();
+                embedding.setEmbedding(List.of((double) request.getInput().get(i).length()));
+                embedding.setIndex(i);
+                data.add(embedding);
+            }
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(data);
+            return result;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<float[]>> futures = new ArrayList<>();
+            for (int i = 1; i <= 8; i++) {
+                String text = "x".repeat(i);
+                futures.add(executor.submit(() -> embeddingBatcher.embed(text)));
+            }
+            for (int i = 1; i <= 8; i++) {
+                assertEquals(i, futures.get(i - 1).get(5, TimeUnit.SECONDS)[0]);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Eight texts arriving within the wait window are sent in at most two requests
+        assertTrue(calls.get() <= 2);
+        assertEquals(8, texts.get());
+    }
+
+    @Test
+    void testBatchFailureIsReportedToEveryCaller() throws Exception {
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class)))
+            .thenThrow(new RuntimeException("OpenAI unavailable"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<float[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                String text = "text " + i;
+                futures.add(executor.submit(() -> embeddingBatcher.embed(text)));
+            }
+            for (Future<float[]> future : futures) {
+                Exception failure = assertThrows(Exception.class, () -> future.get(5, TimeUnit.SECONDS));
+                assertTrue(failure.getCause().getMessage().contains("OpenAI unavailable"));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testRefusedBatchIsRetriedOneTextAtATime() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            calls.incrementAndGet();
+            if (request.getInput().contains("too long")) {
+                throw badRequest("This model's maximum context length is 8191 tokens");
+            }
+            return lengths(request);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<float[]> first = executor.submit(() -> embeddingBatcher.embed("a"));
+            Future<float[]> refused = executor.submit(() -> embeddingBatcher.embed("too long"));
+            Future<float[]> third = executor.submit(() -> embeddingBatcher.embed("abc"));
+
+            // Only the text the provider refuses fails; its neighbours still get their vectors
+            assertEquals(1, first.get(5, TimeUnit.SECONDS)[0]);
+            assertEquals(3, third.get(5, TimeUnit.SECONDS)[0]);
+            Exception failure = assertThrows(Exception.class, () -> refused.get(5, TimeUnit.SECONDS));
+            assertTrue(failure.getCause() instanceof EmbeddingProvider.InvalidInputException);
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(calls.get() > 3);
+        assertEquals(CircuitBreaker.State.CLOSED, embeddingCircuitBreaker.getState());
+    }
+
+    @Test
+    void testBatchRejectedByShutDownExecutorIsStillSent() throws Exception {
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class)))
+            .thenAnswer(invocation -> lengths(invocation.getArgument(0)));
+        ExecutorService stopped = Executors.newSingleThreadExecutor();
+        stopped.shutdown();
+        Object executor = ReflectionTestUtils.getField(embeddingBatcher, "embeddingBatchExecutor");
+        ReflectionTestUtils.setField(embeddingBatcher, "embeddingBatchExecutor", stopped);
+        try {
+            assertEquals(4, embeddingBatcher.embed("abcd")[0]);
+        } finally {
+            ReflectionTestUtils.setField(embeddingBatcher, "embeddingBatchExecutor", executor);
+        }
+    }
+
+    private static EmbeddingResult lengths(EmbeddingRequest request) {
+        List<Embedding> data = new ArrayList<>();
+        for (int i = 0; i < request.getInput().size(); i++) {
+            Embedding embedding = new Embedding();
+            embedding.setEmbedding(List.of((double) request.getInput().get(i).length()));
+            embedding.setIndex(i);
+            data.add(embedding);
+        }
+        EmbeddingResult result = new EmbeddingResult();
+        result.setData(data);
+        return result;
+    }
+
+    private static OpenAiHttpException badRequest(String message) {
+        OpenAiError.OpenAiErrorDetails details = new OpenAiError.OpenAiErrorDetails();
+        details.setMessage(message);
+        details.setType("invalid_request_error");
+        return new OpenAiHttpException(new OpenAiError(details), null, 400);
+    }
+}
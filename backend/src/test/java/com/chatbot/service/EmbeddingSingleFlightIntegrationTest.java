@@ -0,0 +1,92 @@
+package com.chatbot.service;
+
+import com.theokanning.openai.embedding.Embedding;
+import com.theokanning.openai.embedding.EmbeddingRequest;
+import com.theokanning.openai.embedding.EmbeddingResult;
+import com.theokanning.openai.service.OpenAiService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class EmbeddingSingleFlightIntegrationTest {
+
+    @Autowired
+    private RagService ragService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private OpenAiService openAiService;
+
+    @Test
+    void testConcurrentIdenticalQueriesShareOneProviderCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger texts = new AtomicInteger();
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            texts.addAndGet(request.getInput().size());
+            release.await(5, TimeUnit.SECONDS);
+            Embedding embedding = new Embedding();
+            embedding.setEmbedding(List.of(0.6, 0.8));
+            embedding.setIndex(0);
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(List.of(embedding));
+            return result;
+        });
+        double followersBefore = followers();
+
+        // Spellings that normalize to the same query join the same flight
+        List<String> queries = List.of("Where is my parcel?", "where is my parcel?", "  Where is  my parcel? ", "WHERE IS MY PARCEL?");
+        ExecutorService callers = Executors.newFixedThreadPool(queries.size());
+        try {
+            List<CompletableFuture<float[]>> results = new ArrayList<>();
+            for (String query : queries) {
+                results.add(CompletableFuture.supplyAsync(() -> ragService.embedQuery(query), callers));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (followers() - followersBefore < queries.size() - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            for (CompletableFuture<float[]> result : results) {
+                assertArrayEquals(new float[] {0.6f, 0.8f}, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertEquals(queries.size() - 1, followers() - followersBefore);
+        assertEquals(1, texts.get());
+        assertTrue(meterRegistry.get("singleflight.coalescing.ratio").tag("name", "embedding").gauge().value() > 0);
+
+        // The result was cached, so a later call makes no provider call
+        ragService.embedQuery("Where is my parcel?");
+        assertEquals(1, texts.get());
+    }
+
+    private double followers() {
+        return meterRegistry.counter("singleflight.calls", "name", "embedding", "role", "follower").count();
+    }
+}
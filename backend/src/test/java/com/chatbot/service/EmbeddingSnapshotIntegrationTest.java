@@ -0,0 +1,128 @@
+package com.chatbot.service;
+
+import com.chatbot.model.KnowledgeBase;
+import com.chatbot.model.RetrievedDocument;
+import com.chatbot.repository.KnowledgeBaseRepository;
+import com.theokanning.openai.embedding.Embedding;
+import com.theokanning.openai.embedding.EmbeddingRequest;
+import com.theokanning.openai.embedding.EmbeddingResult;
+import com.theokanning.openai.service.OpenAiService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "rag.snapshot.path=target/test-data/knowledge-base.snapshot")
+@ActiveProfiles("test")
+class EmbeddingSnapshotIntegrationTest {
+
+    private static final Path SNAPSHOT = Path.of("target/test-data/knowledge-base.snapshot");
+
+    @Autowired
+    private RagService ragService;
+
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private KnowledgeBaseRepository knowledgeBaseRepository;
+
+    @MockBean
+    private OpenAiService openAiService;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        knowledgeBaseRepository.deleteAll();
+        vectorIndexService.refresh(true);
+        Files.deleteIfExists(SNAPSHOT);
+    }
+
+    @Test
+    void testReloadServesVectorsFromSnapshotWithCurrentMetadata() throws IOException {
+        KnowledgeBase standard = saveDocument("standard-shipping", "Standard Shipping", "[1.0, 0.0, 0.0]");
+        saveDocument("express-shipping", "Express Shipping", "[0.8, 0.6, 0.0]");
+        vectorIndexService.rebuild();
+
+        EmbeddingSnapshot snapshot = EmbeddingSnapshot.open(SNAPSHOT);
+        assertEquals(2, snapshot.size());
+        assertEquals(3, snapshot.getDimensions());
+
+        // Clear the stored JSON so a reload can only get its vectors from the snapshot
+        for (KnowledgeBase document : knowledgeBaseRepository.findAll()) {
+            document.setEmbedding(null);
+            if (document.getId().equals(standard.getId())) {
+                document.setTitle("Ground Shipping");
+            }
+            knowledgeBaseRepository.save(document);
+        }
+        vectorIndexService.refresh(false);
+        mockQueryEmbedding(List.of(1.0, 0.0, 0.0));
+
+        List<RetrievedDocument> documents = ragService.retrieveRelevantDocuments("How long does ground shipping take?", 2);
+
+        assertEquals(List.of("Ground Shipping", "Express Shipping"),
+            documents.stream().map(RetrievedDocument::title).toList());
+        assertEquals(1.0, documents.get(0).similarity(), 1e-6);
+    }
+
+    @Test
+    void testDeletedDocumentsAreSkippedUntilVectorsAreRebuilt() {
+        saveDocument("standard-shipping", "Standard Shipping", "[1.0, 0.0, 0.0]");
+        KnowledgeBase express = saveDocument("express-shipping", "Express Shipping", "[0.8, 0.6, 0.0]");
+        vectorIndexService.rebuild();
+
+        knowledgeBaseRepository.delete(express);
+        vectorIndexService.refresh(false);
+        mockQueryEmbedding(List.of(0.0, 1.0, 0.0));
+
+        List<RetrievedDocument> documents = ragService.retrieveRelevantDocuments("Express options", 2);
+
+        assertEquals(List.of("Standard Shipping"), documents.stream().map(RetrievedDocument::title).toList());
+        assertTrue(Files.exists(SNAPSHOT));
+    }
+
+    @Test
+    void testSnapshotOlderThanTheTableIsRebuilt() {
+        saveDocument("standard-shipping", "Standard Shipping", "[1.0, 0.0, 0.0]");
+        vectorIndexService.rebuild();
+
+        // Stored behind this node's back, as another node sharing the database would
+        saveDocument("express-shipping", "Express Shipping", "[0.0, 1.0, 0.0]");
+        vectorIndexService.refresh(false);
+        mockQueryEmbedding(List.of(0.0, 1.0, 0.0));
+
+        List<RetrievedDocument> documents = ragService.retrieveRelevantDocuments("Express options", 1);
+
+        assertEquals(List.of("Express Shipping"), documents.stream().map(RetrievedDocument::title).toList());
+    }
+
+    private void mockQueryEmbedding(List<Double> vector) {
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            Embedding embedding = new Embedding();
+            embedding.setEmbedding(vector);
+            embedding.setIndex(0);
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(List.of(embedding));
+            return result;
+        });
+    }
+
+    private KnowledgeBase saveDocument(String documentId, String title, String embedding) {
+        KnowledgeBase document = new KnowledgeBase(documentId, title, title + " details", "shipping", "[]");
+        document.setEmbedding(embedding);
+        document.setEmbeddingModel("text-embedding-ada-002");
+        return knowledgeBaseRepository.save(document);
+    }
+}
@@ -0,0 +1,79 @@
+package com.chatbot.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EmbeddingSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWrittenSnapshotIsMappedAndSearchedLikeHeapIndex() throws IOException {
+        Random random = new Random(5);
+        List<float[]> vectors = new ArrayList<>();
+        long[] ids = new long[300];
+        for (int i = 0; i < ids.length; i++) {
+            float[] vector = new float[37];
+            for (int d = 0; d < vector.length; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            vectors.add(vector);
+            ids[i] = 1000L + i;
+        }
+        Path path = directory.resolve("kb.snapshot");
+        EmbeddingSnapshot.write(path, "text-embedding-ada-002", "source", ids, vectors);
+
+        EmbeddingSnapshot snapshot = EmbeddingSnapshot.open(path);
+        assertEquals("text-embedding-ada-002", snapshot.getModel());
+        assertEquals("source", snapshot.getSource());
+        assertEquals(37, snapshot.getDimensions());
+        assertEquals(300, snapshot.size());
+        assertEquals(1000L, snapshot.getId(0));
+        assertEquals(1299L, snapshot.getId(299));
+
+        ExactVectorIndex mapped = ExactVectorIndex.wrap(snapshot.getVectors(), snapshot.size(), snapshot.getDimensions(), 64);
+        ExactVectorIndex heap = ExactVectorIndex.build(vectors, Integer.MAX_VALUE);
+        assertArrayEquals(VectorMath.normalize(vectors.get(7)), mapped.vector(7), 1e-6f);
+        for (int q = 0; q < 10; q++) {
+            float[] query = vectors.get(random.nextInt(vectors.size()));
+            assertEquals(heap.search(query, 5, node -> true).stream().map(ScoredNode::node).toList(),
+                mapped.search(query, 5, node -> true).stream().map(ScoredNode::node).toList());
+        }
+    }
+
+    @Test
+    void testSnapshotIsReplacedAndInvalidFilesAreRejected() throws IOException {
+        Path path = directory.resolve("kb.snapshot");
+        EmbeddingSnapshot.write(path, "a", "source", new long[] {1}, List.of(new float[] {1, 0}));
+        EmbeddingSnapshot.write(path, "b", "source", new long[] {2, 3}, List.of(new float[] {1, 0}, new float[] {0, 1}));
+        EmbeddingSnapshot snapshot = EmbeddingSnapshot.open(path);
+        assertEquals("b", snapshot.getModel());
+        assertEquals(2, snapshot.size());
+
+        EmbeddingSnapshot.write(path, "empty", "source", new long[0], List.of());
+        assertEquals(0, EmbeddingSnapshot.open(path).size());
+
+        EmbeddingSnapshot.write(path, "b", "source", new long[] {2}, List.of(new float[] {1, 0}));
+        byte[] bytes = Files.readAllBytes(path);
+        Path truncated = directory.resolve("truncated.snapshot");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 4));
+        assertThrows(IOException.class, () -> EmbeddingSnapshot.open(truncated));
+
+        Path garbage = directory.resolve("garbage.snapshot");
+        Files.write(garbage, new byte[] {1, 2, 3});
+        assertThrows(IOException.class, () -> EmbeddingSnapshot.open(garbage));
+    }
+}
@@ -0,0 +1,93 @@
+package com.chatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExactVectorIndexTest {
+
+    @Test
+    void testParallelScanMatchesSequentialScanAndSortsBySimilarity() {
+        Random random = new Random(11);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            vectors.add(randomVector(random, 67));
+        }
+        ExactVectorIndex sequential = ExactVectorIndex.build(vectors, Integer.MAX_VALUE);
+        ExactVectorIndex parallel = ExactVectorIndex.build(vectors, 100);
+
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random, 67);
+            List<ScoredNode> expected = sequential.search(query, 10, node -> true);
+            List<ScoredNode> actual = parallel.search(query, 10, node -> true);
+
+            assertEquals(10, actual.size());
+            assertEquals(expected.stream().map(ScoredNode::node).toList(), actual.stream().map(ScoredNode::node).toList());
+            for (int i = 1; i < actual.size(); i++) {
+                assertTrue(actual.get(i - 1).score() >= actual.get(i).score());
+            }
+        }
+    }
+
+    @Test
+    void testFilterAndSmallIndexes() {
+        List<float[]> vectors = List.of(
+            new float[] {1, 0, 0},
+            new float[] {0.9f, 0.1f, 0},
+            new float[] {0, 1, 0},
+            new float[] {0.8f, 0, 0.2f});
+        ExactVectorIndex index = ExactVectorIndex.build(vectors, 4096);
+
+        List<ScoredNode> odd = index.search(new float[] {3, 0, 0}, 10, node -> node % 2 == 1);
+        assertEquals(List.of(1, 3), odd.stream().map(ScoredNode::node).toList());
+
+        assertEquals(0, index.search(new float[] {1, 0, 0}, 0, node -> true).size());
+        assertTrue(ExactVectorIndex.build(List.of(), 4096).search(new float[] {1}, 3, node -> true).isEmpty());
+    }
+
+    @Test
+    void testRowSubsetSearchMatchesFilteredScan() {
+        Random random = new Random(5);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            vectors.add(randomVector(random, 33));
+        }
+        ExactVectorIndex index = ExactVectorIndex.build(vectors, 100);
+        int[] everyThird = IntStream.range(0, 3000).filter(node -> node % 3 == 0).toArray();
+
+        for (int q = 0; q < 10; q++) {
+            float[] query = randomVector(random, 33);
+            List<ScoredNode> expected = index.search(query, 5, node -> node % 3 == 0);
+            List<ScoredNode> actual = index.search(query, 5, everyThird);
+
+            assertEquals(expected.stream().map(ScoredNode::node).toList(), actual.stream().map(ScoredNode::node).toList());
+        }
+        assertTrue(index.search(new float[33], 5, new int[0]).isEmpty());
+    }
+
+    @Test
+    void testDotProductMatchesScalarImplementation() {
+        Random random = new Random(3);
+        float[] matrix = randomVector(random, 3 * 131);
+        float[] query = randomVector(random, 131);
+        VectorMath.DotProduct scalar = new VectorMath.ScalarDotProduct();
+
+        for (int row = 0; row < 3; row++) {
+            assertEquals(scalar.dot(matrix, row * 131, query), VectorMath.dot(matrix, row * 131, query), 1e-3);
+        }
+    }
+
+    private static float[] randomVector(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,103 @@
+package com.chatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswIndexTest {
+
+    @Test
+    void testRecallAgainstExactSearch() {
+        Random random = new Random(7);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            vectors.add(randomVector(random, 32));
+        }
+        HnswIndex index = HnswIndex.build(vectors, 16, 200, 42L);
+
+        int found = 0;
+        int expected = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVector(random, 32);
+            Set<Integer> approximate = new HashSet<>();
+            for (ScoredNode node : index.search(query, 10, 64, node -> true)) {
+                approximate.add(node.node());
+            }
+            for (int node : exactTopK(vectors, query, 10)) {
+                expected++;
+                if (approximate.contains(node)) {
+                    found++;
+                }
+            }
+        }
+
+        assertTrue((double) found / expected >= 0.9, "recall was " + (double) found / expected);
+    }
+
+    @Test
+    void testFilteredSearchReturnsOnlyAcceptedNodesMostSimilarFirst() {
+        List<float[]> vectors = List.of(
+            new float[] {1, 0, 0},
+            new float[] {0.9f, 0.1f, 0},
+            new float[] {0, 1, 0},
+            new float[] {0.8f, 0, 0.2f},
+            new float[] {0, 0, 1});
+        HnswIndex index = HnswIndex.build(vectors, 4, 16, 42L);
+
+        List<ScoredNode> all = index.search(new float[] {2, 0, 0}, 2, 8, node -> true);
+        assertEquals(List.of(0, 1), List.of(all.get(0).node(), all.get(1).node()));
+        assertEquals(1.0f, all.get(0).score(), 1e-6);
+
+        List<ScoredNode> odd = index.search(new float[] {1, 0, 0}, 5, 8, node -> node % 2 == 1);
+        assertEquals(List.of(1, 3), List.of(odd.get(0).node(), odd.get(1).node()));
+        assertEquals(2, odd.size());
+    }
+
+    @Test
+    void testEmptyIndexAndDimensionMismatch() {
+        HnswIndex empty = HnswIndex.build(List.of(), 16, 200, 42L);
+        assertTrue(empty.search(new float[] {1, 0}, 3, 16, node -> true).isEmpty());
+
+        HnswIndex index = HnswIndex.build(List.of(new float[] {1, 0}), 16, 200, 42L);
+        assertThrows(IllegalArgumentException.class, () -> index.search(new float[] {1, 0, 0}, 3, 16, node -> true));
+    }
+
+    private static float[] randomVector(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static List<Integer> exactTopK(List<float[]> vectors, float[] query, int k) {
+        List<Integer> nodes = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        for (int i = 0; i < vectors.size(); i++) {
+            nodes.add(i);
+            scores.add(cosine(vectors.get(i), query));
+        }
+        nodes.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+        return nodes.subList(0, k);
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+}
@@ -0,0 +1,114 @@
+package com.chatbot.service;
+
+import com.chatbot.model.KnowledgeBase;
+import com.chatbot.model.RetrievedDocument;
+import com.chatbot.repository.KnowledgeBaseRepository;
+import com.theokanning.openai.embedding.Embedding;
+import com.theokanning.openai.embedding.EmbeddingRequest;
+import com.theokanning.openai.embedding.EmbeddingResult;
+import com.theokanning.openai.service.OpenAiService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "rag.hybrid.mode=LEXICAL_FIRST")
+@ActiveProfiles("test")
+class HybridRetrievalIntegrationTest {
+
+    @Autowired
+    private RagService ragService;
+
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private KnowledgeBaseRepository knowledgeBaseRepository;
+
+    @MockBean
+    private OpenAiService openAiService;
+
+    @BeforeEach
+    void setUp() {
+        saveDocument("order-status-values", "Order Status Values", "orders",
+            "An order is SHIPPED once the carrier has picked it up.", "[\"status\", \"shipped\"]", "[1.0, 0.0, 0.0]");
+        saveDocument("track-order-api", "Track Order API", "api",
+            "The endpoint returns carrier tracking events for an order.", "[\"api\", \"tracking\"]", "[0.0, 1.0, 0.0]");
+        saveDocument("return-policy", "Return Policy", "returns",
+            "Items can be returned within thirty days of delivery.", "[\"returns\"]", "[0.0, 0.0, 1.0]");
+        ragService.invalidateLexicalIndex();
+        vectorIndexService.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        knowledgeBaseRepository.deleteAll();
+        ragService.invalidateLexicalIndex();
+        vectorIndexService.refresh(true);
+    }
+
+    @Test
+    void testConfidentLexicalMatchSkipsEmbeddingCall() {
+        List<RetrievedDocument> documents = ragService.retrieveRelevantDocuments("track order api", 2);
+
+        assertEquals("Track Order API", documents.get(0).title());
+        assertTrue(documents.get(0).similarity() >= 0.6);
+        verifyNoInteractions(openAiService);
+    }
+
+    @Test
+    void testWeakLexicalMatchIsFusedWithVectorResults() {
+        mockQueryEmbedding(List.of(0.0, 0.0, 1.0));
+
+        List<RetrievedDocument> documents = ragService.retrieveRelevantDocuments("can I send my purchase back", 3);
+
+        // No query term is indexed, so the vector ranking decides
+        assertEquals("Return Policy", documents.get(0).title());
+        verify(openAiService, times(1)).createEmbeddings(any(EmbeddingRequest.class));
+    }
+
+    @Test
+    void testReciprocalRankFusionFavoursDocumentsInBothRankings() {
+        RetrievedDocument a = new RetrievedDocument(1L, "A", "", "x", 0.9);
+        RetrievedDocument b = new RetrievedDocument(2L, "B", "", "x", 0.8);
+        RetrievedDocument c = new RetrievedDocument(3L, "C", "", "x", 0.3);
+
+        List<RetrievedDocument> fused = ragService.fuse(List.of(a, b), List.of(c, new RetrievedDocument(2L, "B", "", "x", 0.95)), 3);
+
+        assertEquals(List.of("B", "A", "C"), fused.stream().map(RetrievedDocument::title).toList());
+        // Similarities stay cosine similarities; a document only the lexical ranking found has none
+        assertEquals(0.8, fused.get(0).similarity(), 1e-9);
+        assertEquals(0.0, fused.get(2).similarity(), 1e-9);
+    }
+
+    private void mockQueryEmbedding(List<Double> vector) {
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            Embedding embedding = new Embedding();
+            embedding.setEmbedding(vector);
+            embedding.setIndex(0);
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(List.of(embedding));
+            return result;
+        });
+    }
+
+    private void saveDocument(String documentId, String title, String category, String content, String tags, String embedding) {
+        KnowledgeBase document = new KnowledgeBase(documentId, title, content, category, tags);
+        document.setEmbedding(embedding);
+        document.setEmbeddingModel("text-embedding-ada-002");
+        knowledgeBaseRepository.save(document);
+    }
+}
@@ -0,0 +1,257 @@
+package com.chatbot.service;
+
+import com.chatbot.dto.ChatResponse;
+import com.chatbot.model.KnowledgeBase;
+import com.chatbot.model.RetrievedDocument;
+import com.chatbot.repository.KnowledgeBaseRepository;
+import com.chatbot.repository.KnowledgeBaseVectorRepository;
+import com.theokanning.openai.embedding.Embedding;
+import com.theokanning.openai.embedding.EmbeddingRequest;
+import com.theokanning.openai.embedding.EmbeddingResult;
+import com.theokanning.openai.service.OpenAiService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "rag.ingestion.batch-size=3")
+@ActiveProfiles("test")
+class KnowledgeBaseIngestionServiceIntegrationTest {
+
+    @Autowired
+    private KnowledgeBaseIngestionService ingestionService;
+
+    @Autowired
+    private KnowledgeBaseRepository knowledgeBaseRepository;
+
+    @Autowired
+    private RagService ragService;
+
+    @Autowired
+    private SemanticResponseCache semanticResponseCache;
+
+    @MockBean
+    private OpenAiService openAiService;
+
+    @AfterEach
+    void tearDown() {
+        knowledgeBaseRepository.deleteAll();
+        ReflectionTestUtils.setField(ingestionService, "state", KnowledgeBaseIngestionService.State.NOT_STARTED);
+    }
+
+    @Test
+    void testIngestsDocumentsInBatchesAndSkipsUnchangedOnRerun() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger texts = new AtomicInteger();
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            calls.incrementAndGet();
+            EmbeddingRequest request = invocation.getArgument(0);
+            texts.addAndGet(request.getInput().size());
+            List<Embedding> data = new ArrayList<>();
+            for (int i = 0; i < request.getInput().size(); i++) {
+                Embedding embedding = new Embedding();
+                embedding.setEmbedding(List.of(0.1, 0.2, 0.3));
+                embedding.setIndex(i);
+                data.add(embedding);
+            }
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(data);
+            return result;
+        });
+
+        assertFalse(ingestionService.isReady());
+        ingestionService.start().get(10, TimeUnit.SECONDS);
+
+        // Seven documents in batches of three
+        assertEquals(KnowledgeBaseIngestionService.State.READY, ingestionService.getState());
+        assertEquals(7, ingestionService.getLoadedDocuments());
+        assertEquals(7, knowledgeBaseRepository.count());
+        assertEquals(3, calls.get());
+        KnowledgeBase shipping = knowledgeBaseRepository.findByDocumentId("shipping-methods");
+        assertTrue(shipping.getEmbedding().startsWith("[0.1"));
+        assertEquals("text-embedding-ada-002", shipping.getEmbeddingModel());
+        assertEquals(64, shipping.getContentHash().length());
+
+        // A second run finds every document unchanged and makes no embedding calls
+        ingestionService.start().get(10, TimeUnit.SECONDS);
+        assertEquals(7, knowledgeBaseRepository.count());
+        assertEquals(3, calls.get());
+        assertEquals(7, texts.get());
+
+        // Changed content or a different embedding model is re-embedded, removed documents are deleted
+        shipping.setContentHash("stale");
+        knowledgeBaseRepository.save(shipping);
+        KnowledgeBase overview = knowledgeBaseRepository.findByDocumentId("order-status-overview");
+        overview.setEmbeddingModel("older-model");
+        knowledgeBaseRepository.save(overview);
+        knowledgeBaseRepository.save(new KnowledgeBase("obsolete-doc", "Obsolete", "Removed from the source", "misc", "[]"));
+
+        ingestionService.start().get(10, TimeUnit.SECONDS);
+        assertEquals(9, texts.get());
+        assertEquals(7, knowledgeBaseRepository.count());
+        assertNull(knowledgeBaseRepository.findByDocumentId("obsolete-doc"));
+        assertEquals(64, knowledgeBaseRepository.findByDocumentId("shipping-methods").getContentHash().length());
+    }
+
+    @Test
+    void testSyncThatChangesDocumentsClearsSemanticCache() throws Exception {
+        mockConstantEmbeddings();
+        float[] question = {1.0f, 0.0f, 0.0f};
+        ingestionService.start().get(10, TimeUnit.SECONDS);
+
+        // An unchanged knowledge base keeps cached replies
+        semanticResponseCache.put(question, new ChatResponse("Standard shipping is free.", "GENERAL_INQUIRY", 0.9));
+        ingestionService.start().get(10, TimeUnit.SECONDS);
+        assertNotNull(semanticResponseCache.lookup(question, "GENERAL_INQUIRY"));
+
+        // A document whose title changed in the source invalidates them
+        KnowledgeBase shipping = knowledgeBaseRepository.findByDocumentId("shipping-methods");
+        shipping.setTitle("Old shipping title");
+        knowledgeBaseRepository.save(shipping);
+        ingestionService.start().get(10, TimeUnit.SECONDS);
+        assertNull(semanticResponseCache.lookup(question, "GENERAL_INQUIRY"));
+    }
+
+    @Test
+    void testEmptySourceLocationKeepsStoredDocuments() throws Exception {
+        knowledgeBaseRepository.save(new KnowledgeBase("shipping-methods", "Shipping", "Stored content", "shipping", "[]"));
+        ReflectionTestUtils.setField(ingestionService, "location", "classpath:missing-knowledge-base/*.json");
+        try {
+            ingestionService.start().get(10, TimeUnit.SECONDS);
+        } finally {
+            ReflectionTestUtils.setField(ingestionService, "location", "classpath:knowledge-base/*.json");
+        }
+
+        assertEquals(1, knowledgeBaseRepository.count());
+        assertEquals("Stored content", knowledgeBaseRepository.findByDocumentId("shipping-methods").getContent());
+    }
+
+    @Test
+    void testIngestedDocumentsAreRetrievedByExactScanOnH2() throws Exception {
+        // Each text is embedded by how often it mentions shipping, APIs and statuses
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            List<Embedding> data = new ArrayList<>();
+            for (int i = 0; i < request.getInput().size(); i++) {
+                String text = request.getInput().get(i).toLowerCase(Locale.ROOT);
+                Embedding embedding = new Embedding();
+                embedding.setEmbedding(List.of(count(text, "ship"), count(text, "api"), count(text, "status")));
+                embedding.setIndex(i);
+                data.add(embedding);
+            }
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(data);
+            return result;
+        });
+
+        ingestionService.start().get(10, TimeUnit.SECONDS);
+        List<RetrievedDocument> documents = ragService.retrieveRelevantDocuments("Which shipping options are there?", 7);
+
+        // The test profile retrieves with the in-process exact scan, which needs no pgvector
+        assertEquals(7, documents.size());
+        assertEquals(Set.of("Shipping Methods and Delivery Options", "Fulfillment Workflow"),
+            Set.of(documents.get(0).title(), documents.get(1).title()));
+        assertEquals(1.0, documents.get(0).similarity(), 1e-6);
+        assertEquals("Track Order API", documents.get(6).title());
+    }
+
+    @Test
+    void testFailedEmbeddingsMarkIngestionFailed() throws Exception {
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class)))
+            .thenThrow(new RuntimeException("OpenAI unavailable"));
+
+        ingestionService.start().get(10, TimeUnit.SECONDS);
+
+        assertEquals(KnowledgeBaseIngestionService.State.FAILED, ingestionService.getState());
+        assertEquals(7, ingestionService.getFailedDocuments());
+        assertEquals(0, knowledgeBaseRepository.count());
+    }
+
+    @Test
+    void testDocumentsWithoutStoredVectorAreEmbeddedAgain() throws Exception {
+        AtomicInteger texts = new AtomicInteger();
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            texts.addAndGet(request.getInput().size());
+            List<Embedding> data = new ArrayList<>();
+            for (int i = 0; i < request.getInput().size(); i++) {
+                Embedding embedding = new Embedding();
+                embedding.setEmbedding(List.of(0.1, 0.2, 0.3));
+                embedding.setIndex(i);
+                data.add(embedding);
+            }
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(data);
+            return result;
+        });
+        // Stand in for a database with the pgvector column, whose first vector update fails
+        KnowledgeBaseVectorRepository vectors = mock(KnowledgeBaseVectorRepository.class);
+        when(vectors.hasVectorColumn()).thenReturn(true);
+        when(vectors.findIdsWithoutVector()).thenReturn(Set.of());
+        when(vectors.updateEmbeddingVector(anyLong(), any()))
+            .thenThrow(new RuntimeException("vector column unavailable"))
+            .thenReturn(1);
+        Object repository = ReflectionTestUtils.getField(ingestionService, "knowledgeBaseVectorRepository");
+        ReflectionTestUtils.setField(ingestionService, "knowledgeBaseVectorRepository", vectors);
+        try {
+            // The failed document is rolled back and counted as failed
+            ingestionService.start().get(10, TimeUnit.SECONDS);
+            assertEquals(1, ingestionService.getFailedDocuments());
+            assertEquals(6, knowledgeBaseRepository.count());
+
+            // The next sync embeds it again, along with a stored row whose vector is missing
+            KnowledgeBase shipping = knowledgeBaseRepository.findAll().get(0);
+            when(vectors.findIdsWithoutVector()).thenReturn(Set.of(shipping.getId()));
+            ingestionService.start().get(10, TimeUnit.SECONDS);
+            assertEquals(0, ingestionService.getFailedDocuments());
+            assertEquals(7, knowledgeBaseRepository.count());
+            assertEquals(9, texts.get());
+        } finally {
+            ReflectionTestUtils.setField(ingestionService, "knowledgeBaseVectorRepository", repository);
+        }
+    }
+
+    private void mockConstantEmbeddings() {
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            List<Embedding> data = new ArrayList<>();
+            for (int i = 0; i < request.getInput().size(); i++) {
+                Embedding embedding = new Embedding();
+                embedding.setEmbedding(List.of(0.1, 0.2, 0.3));
+                embedding.setIndex(i);
+                data.add(embedding);
+            }
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(data);
+            return result;
+        });
+    }
+
+    private static double count(String text, String term) {
+        int count = 0;
+        for (int i = text.indexOf(term); i >= 0; i = text.indexOf(term, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
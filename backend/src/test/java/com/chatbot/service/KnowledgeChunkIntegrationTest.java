@@ -0,0 +1,205 @@
+package com.chatbot.service;
+
+import com.chatbot.model.KnowledgeBase;
+import com.chatbot.model.KnowledgeChunk;
+import com.chatbot.model.RetrievedDocument;
+import com.chatbot.repository.KnowledgeBaseRepository;
+import com.chatbot.repository.KnowledgeChunkRepository;
+import com.chatbot.repository.KnowledgeChunkVectorRepository;
+import com.theokanning.openai.embedding.Embedding;
+import com.theokanning.openai.embedding.EmbeddingRequest;
+import com.theokanning.openai.embedding.EmbeddingResult;
+import com.theokanning.openai.service.OpenAiService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {"rag.chunking.enabled=true", "rag.chunking.max-tokens=60", "rag.chunking.overlap-tokens=15"})
+@ActiveProfiles("test")
+class KnowledgeChunkIntegrationTest {
+
+    @Autowired
+    private KnowledgeBaseIngestionService ingestionService;
+
+    @Autowired
+    private KnowledgeBaseRepository knowledgeBaseRepository;
+
+    @Autowired
+    private KnowledgeChunkRepository knowledgeChunkRepository;
+
+    @Autowired
+    private RagService ragService;
+
+    @MockBean
+    private OpenAiService openAiService;
+
+    @AfterEach
+    void tearDown() {
+        knowledgeChunkRepository.deleteAll();
+        knowledgeBaseRepository.deleteAll();
+    }
+
+    @Test
+    void testDocumentsAreChunkedOnceAndRetrievedByChunk() throws Exception {
+        AtomicInteger texts = new AtomicInteger();
+        // Each text is embedded by how often it mentions overnight delivery, APIs and statuses
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            texts.addAndGet(request.getInput().size());
+            List<Embedding> data = new ArrayList<>();
+            for (int i = 0; i < request.getInput().size(); i++) {
+                String text = request.getInput().get(i).toLowerCase(Locale.ROOT);
+                Embedding embedding = new Embedding();
+                embedding.setEmbedding(List.of(count(text, "overnight"), count(text, "api"), count(text, "status")));
+                embedding.setIndex(i);
+                data.add(embedding);
+            }
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(data);
+            return result;
+        });
+
+        ingestionService.start().get(10, TimeUnit.SECONDS);
+
+        KnowledgeBase shipping = knowledgeBaseRepository.findByDocumentId("shipping-methods");
+        List<KnowledgeChunk> chunks = knowledgeChunkRepository.findByKnowledgeBaseIdOrderByChunkIndex(shipping.getId());
+        assertTrue(chunks.size() > 1);
+        assertEquals(0, chunks.get(0).getChunkIndex());
+        assertTrue(chunks.stream().allMatch(chunk -> chunk.getContent().length() < shipping.getContent().length()));
+        long chunkCount = knowledgeChunkRepository.count();
+        int embeddedTexts = texts.get();
+        assertEquals(7 + chunkCount, embeddedTexts);
+
+        // Unchanged documents keep their chunks
+        ingestionService.start().get(10, TimeUnit.SECONDS);
+        assertEquals(embeddedTexts, texts.get());
+        assertEquals(chunkCount, knowledgeChunkRepository.count());
+
+        List<RetrievedDocument> documents = ragService.retrieveRelevantDocuments("Is overnight shipping available?", 2);
+
+        assertEquals("Shipping Methods and Delivery Options", documents.get(0).title());
+        assertTrue(documents.get(0).content().contains("Overnight"));
+        assertTrue(documents.get(0).content().length() < shipping.getContent().length());
+    }
+
+    @Test
+    void testTitleChangeReembedsChunks(@TempDir Path source) throws Exception {
+        AtomicInteger texts = new AtomicInteger();
+        List<String> embedded = new CopyOnWriteArrayList<>();
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            texts.addAndGet(request.getInput().size());
+            embedded.addAll(request.getInput());
+            List<Embedding> data = new ArrayList<>();
+            for (int i = 0; i < request.getInput().size(); i++) {
+                Embedding embedding = new Embedding();
+                embedding.setEmbedding(List.of(1.0, 0.0, 0.0));
+                embedding.setIndex(i);
+                data.add(embedding);
+            }
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(data);
+            return result;
+        });
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources("classpath:knowledge-base/*.json")) {
+            Files.write(source.resolve(resource.getFilename()), resource.getInputStream().readAllBytes());
+        }
+        ReflectionTestUtils.setField(ingestionService, "location", source.toUri() + "*.json");
+        try {
+            ingestionService.start().get(10, TimeUnit.SECONDS);
+            KnowledgeBase shipping = knowledgeBaseRepository.findByDocumentId("shipping-methods");
+            int chunks = knowledgeChunkRepository.findByKnowledgeBaseIdOrderByChunkIndex(shipping.getId()).size();
+            int embeddedTexts = texts.get();
+
+            // Only the title changes, so the document keeps its embedding but every chunk text differs
+            Path file = source.resolve("shipping-methods.json");
+            Files.writeString(file, Files.readString(file).replace(
+                "Shipping Methods and Delivery Options", "Delivery Options and Shipping Methods"));
+            ingestionService.start().get(10, TimeUnit.SECONDS);
+
+            assertEquals(embeddedTexts + chunks, texts.get());
+            assertTrue(embedded.get(embedded.size() - 1).startsWith("Delivery Options and Shipping Methods\n\n"));
+            assertEquals(chunks, knowledgeChunkRepository.findByKnowledgeBaseIdOrderByChunkIndex(shipping.getId()).size());
+        } finally {
+            ReflectionTestUtils.setField(ingestionService, "location", "classpath:knowledge-base/*.json");
+        }
+    }
+
+    @Test
+    void testFailedChunkVectorUpdateKeepsPreviousChunks(@TempDir Path source) throws Exception {
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            List<Embedding> data = new ArrayList<>();
+            for (int i = 0; i < request.getInput().size(); i++) {
+                Embedding embedding = new Embedding();
+                embedding.setEmbedding(List.of(1.0, 0.0, 0.0));
+                embedding.setIndex(i);
+                data.add(embedding);
+            }
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(data);
+            return result;
+        });
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources("classpath:knowledge-base/*.json")) {
+            Files.write(source.resolve(resource.getFilename()), resource.getInputStream().readAllBytes());
+        }
+        KnowledgeChunkVectorRepository repository = (KnowledgeChunkVectorRepository)
+            ReflectionTestUtils.getField(ingestionService, "knowledgeChunkVectorRepository");
+        // Stand in for a database with the pgvector column, where every chunk vector update fails
+        KnowledgeChunkVectorRepository vectors = mock(KnowledgeChunkVectorRepository.class);
+        when(vectors.findChunkSources()).thenAnswer(invocation -> repository.findChunkSources());
+        when(vectors.hasVectorColumn()).thenReturn(true);
+        when(vectors.updateEmbeddingVector(anyLong(), any())).thenThrow(new RuntimeException("vector column unavailable"));
+        ReflectionTestUtils.setField(ingestionService, "location", source.toUri() + "*.json");
+        try {
+            ingestionService.start().get(10, TimeUnit.SECONDS);
+            KnowledgeBase shipping = knowledgeBaseRepository.findByDocumentId("shipping-methods");
+            List<Long> chunkIds = knowledgeChunkRepository.findByKnowledgeBaseIdOrderByChunkIndex(shipping.getId())
+                .stream().map(KnowledgeChunk::getId).toList();
+
+            Path file = source.resolve("shipping-methods.json");
+            Files.writeString(file, Files.readString(file).replace(
+                "Shipping Methods and Delivery Options", "Delivery Options and Shipping Methods"));
+            ReflectionTestUtils.setField(ingestionService, "knowledgeChunkVectorRepository", vectors);
+            ingestionService.start().get(10, TimeUnit.SECONDS);
+
+            // The replacement is rolled back, so the document keeps its previous chunks
+            assertEquals(chunkIds, knowledgeChunkRepository.findByKnowledgeBaseIdOrderByChunkIndex(shipping.getId())
+                .stream().map(KnowledgeChunk::getId).toList());
+        } finally {
+            ReflectionTestUtils.setField(ingestionService, "knowledgeChunkVectorRepository", repository);
+            ReflectionTestUtils.setField(ingestionService, "location", "classpath:knowledge-base/*.json");
+        }
+    }
+
+    private static double count(String text, String term) {
+        int count = 0;
+        for (int i = text.indexOf(term); i >= 0; i = text.indexOf(term, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
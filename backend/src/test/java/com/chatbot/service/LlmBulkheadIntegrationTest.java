@@ -0,0 +1,109 @@
+package com.chatbot.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+    "chat.llm.bulkhead.initial-limit=2",
+    "chat.llm.bulkhead.min-limit=1",
+    "chat.llm.bulkhead.max-queue=1",
+    "chat.llm.bulkhead.max-wait-ms=200"
+})
+@ActiveProfiles("test")
+class LlmBulkheadIntegrationTest {
+
+    @Autowired
+    private LlmBulkhead llmBulkhead;
+
+    @Test
+    void testRejectsWhenLimitAndQueueAreFull() throws Exception {
+        int limit = llmBulkhead.getLimit();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(limit);
+        ExecutorService executor = Executors.newFixedThreadPool(limit + 1);
+        try {
+            // Occupy every permit
+            for (int i = 0; i < limit; i++) {
+                executor.submit(() -> llmBulkhead.execute(() -> {
+                    started.countDown();
+                    await(release);
+                    return "done";
+                }));
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals(limit, llmBulkhead.getInFlight());
+
+            // One caller waits in the queue and times out after max-wait-ms
+            Future<String> queued = executor.submit(() -> llmBulkhead.execute(() -> "queued"));
+            waitUntilQueued();
+
+            // The queue is full, so the next caller is rejected immediately
+            assertThrows(LlmBulkhead.BulkheadRejectedException.class, () -> llmBulkhead.execute(() -> "rejected"));
+
+            Exception timeout = assertThrows(Exception.class, () -> queued.get(5, TimeUnit.SECONDS));
+            assertTrue(timeout.getCause() instanceof LlmBulkhead.BulkheadRejectedException);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        assertEquals(0, llmBulkhead.getInFlight());
+    }
+
+    @Test
+    void testFailuresReduceTheLimitToTheMinimum() {
+        for (int i = 0; i < 10; i++) {
+            assertThrows(IllegalStateException.class, () -> llmBulkhead.execute(() -> {
+                throw new IllegalStateException("provider error");
+            }));
+        }
+
+        assertEquals(1, llmBulkhead.getLimit());
+
+        // Successful calls raise it again
+        for (int i = 0; i < 10; i++) {
+            llmBulkhead.execute(() -> "ok");
+        }
+        assertTrue(llmBulkhead.getLimit() > 1);
+    }
+
+    @Test
+    void testCallsRejectedByOpenCircuitLeaveTheLimitUnchanged() {
+        int limit = llmBulkhead.getLimit();
+        for (int i = 0; i < 10; i++) {
+            assertThrows(CircuitBreaker.CircuitOpenException.class, () -> llmBulkhead.execute(() -> {
+                throw new CircuitBreaker.CircuitOpenException("circuit open");
+            }));
+        }
+
+        assertEquals(limit, llmBulkhead.getLimit());
+        assertEquals(0, llmBulkhead.getInFlight());
+    }
+
+    private void waitUntilQueued() throws InterruptedException {
+        for (int i = 0; i < 100 && llmBulkhead.getQueued() == 0; i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, llmBulkhead.getQueued());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.chatbot.service;
+
+import com.chatbot.model.KnowledgeBase;
+import com.chatbot.model.RetrievedDocument;
+import com.chatbot.repository.KnowledgeBaseRepository;
+import com.theokanning.openai.embedding.Embedding;
+import com.theokanning.openai.embedding.EmbeddingRequest;
+import com.theokanning.openai.embedding.EmbeddingResult;
+import com.theokanning.openai.service.OpenAiService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {"rag.local-embedding.mode=PREFILTER", "rag.local-embedding.prefilter-candidates=2"})
+@ActiveProfiles("test")
+class LocalEmbeddingRetrievalIntegrationTest {
+
+    @Autowired
+    private RagService ragService;
+
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private KnowledgeBaseRepository knowledgeBaseRepository;
+
+    @MockBean
+    private OpenAiService openAiService;
+
+    @BeforeEach
+    void setUp() {
+        saveDocument("express-shipping", "Express Shipping", "shipping",
+            "Express shipping delivers within two business days.", "[0.0, 1.0, 0.0]");
+        saveDocument("standard-shipping", "Standard Shipping", "shipping",
+            "Standard shipping delivers within five to seven business days.", "[1.0, 0.0, 0.0]");
+        saveDocument("return-policy", "Return Policy", "returns",
+            "Items can be returned within thirty days for a refund.", "[0.7, 0.7, 0.0]");
+        ragService.invalidateLexicalIndex();
+        vectorIndexService.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        knowledgeBaseRepository.deleteAll();
+        ragService.invalidateLexicalIndex();
+        vectorIndexService.refresh(true);
+    }
+
+    @Test
+    void testLocalCandidatesAreRerankedWithProviderEmbedding() {
+        mockQueryEmbedding(List.of(1.0, 0.0, 0.0));
+
+        List<RetrievedDocument> documents = ragService.retrieveRelevantDocuments("shipping business days", 2);
+
+        // Return Policy is closer to the provider vector than Express Shipping, but fails the local prefilter
+        assertEquals(List.of("Standard Shipping", "Express Shipping"),
+            documents.stream().map(RetrievedDocument::title).toList());
+        assertEquals(1.0, documents.get(0).similarity(), 1e-6);
+    }
+
+    @Test
+    void testProviderOutageFallsBackToLocalEmbeddings() {
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class)))
+            .thenThrow(new RuntimeException("OpenAI unavailable"));
+
+        List<RetrievedDocument> documents = ragService.retrieveRelevantDocuments("Can I get a refund on returned items?", 3);
+        List<RetrievedDocument> inCategory = ragService.retrieveRelevantDocumentsByCategory(
+            "express delivery", "shipping", 3);
+
+        assertEquals("Return Policy", documents.get(0).title());
+        assertTrue(documents.get(0).similarity() > 0);
+        assertEquals("Express Shipping", inCategory.get(0).title());
+        assertTrue(inCategory.stream().allMatch(document -> "shipping".equals(document.category())));
+    }
+
+    @Test
+    void testLocalMatchesNeedNoProvider() {
+        List<RetrievedDocument> documents = ragService.retrieveLocalMatches("returns and refunds", List.of(), 1);
+
+        assertEquals(List.of("Return Policy"), documents.stream().map(RetrievedDocument::title).toList());
+        verifyNoInteractions(openAiService);
+    }
+
+    private void mockQueryEmbedding(List<Double> vector) {
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            Embedding embedding = new Embedding();
+            embedding.setEmbedding(vector);
+            embedding.setIndex(0);
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(List.of(embedding));
+            return result;
+        });
+    }
+
+    private void saveDocument(String documentId, String title, String category, String content, String embedding) {
+        KnowledgeBase document = new KnowledgeBase(documentId, title, content, category, "[]");
+        document.setEmbedding(embedding);
+        document.setEmbeddingModel("text-embedding-ada-002");
+        knowledgeBaseRepository.save(document);
+    }
+}
@@ -0,0 +1,60 @@
+package com.chatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageFeatureExtractorTest {
+
+    private final MessageFeatureExtractor extractor = MessageFeatureExtractor.withDefaults();
+
+    @Test
+    void testExtractsAllOrderNumberFormats() {
+        MessageFeatures features = extractor.extract("Compare ORD-001, ord-001-002 and (ORD-7)? Not XORD-9 or ORD-12a");
+
+        assertEquals(List.of("ORD-001", "ORD-001-002", "ORD-7"), features.getOrderNumbers());
+        assertEquals("ORD-001", features.getFirstOrderNumber());
+    }
+
+    @Test
+    void testDetectsIntentSignalsCaseInsensitively() {
+        MessageFeatures features = extractor.extract("Where is my ORDER? Show me RECENT ones");
+
+        assertTrue(features.has(MessageSignal.ORDER));
+        assertTrue(features.has(MessageSignal.STATUS_QUESTION));
+        assertTrue(features.has(MessageSignal.RECENCY));
+        assertFalse(features.has(MessageSignal.HISTORY));
+        assertTrue(features.getOrderNumbers().isEmpty());
+    }
+
+    @Test
+    void testFollowUpKeywordsMatchWholeWordsOnly() {
+        assertFalse(extractor.extract("Show me my order history").has(MessageSignal.FOLLOW_UP));
+        assertTrue(extractor.extract("How is ORD-001 doing").has(MessageSignal.FOLLOW_UP));
+        assertTrue(extractor.extract("can I change the address?").has(MessageSignal.FOLLOW_UP));
+    }
+
+    @Test
+    void testStatusFollowsConfiguredPriority() {
+        assertEquals("SHIPPED", extractor.extract("delivered or shipped orders").getStatus());
+        assertEquals("CANCELLED", extractor.extract("my cancelled orders").getStatus());
+        assertNull(extractor.extract("my orders").getStatus());
+    }
+
+    @Test
+    void testConfiguredKeywordsAreAdded() {
+        MessageFeatureExtractor custom = new MessageFeatureExtractor(
+            Map.of(MessageSignal.RECENCY, List.of("newest")), List.of("pending", "shipped"));
+
+        MessageFeatures features = custom.extract("Any newest pending orders?");
+
+        assertTrue(features.has(MessageSignal.RECENCY));
+        assertEquals("PENDING", features.getStatus());
+    }
+}
@@ -0,0 +1,53 @@
+package com.chatbot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class QueryEmbeddingCacheTest {
+
+    private final QueryEmbeddingCache cache = new QueryEmbeddingCache();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "maxBytes", 1024L * 1024);
+        cache.init();
+    }
+
+    @Test
+    void testReturnsStoredEmbeddingOnlyForCachedQueries() {
+        float[] embedding = {0.1f, 0.2f, 0.3f};
+        assertNull(cache.getIfPresent("model-a", "Where is my order?"));
+
+        cache.put("model-a", "Where is my order?", embedding);
+
+        assertArrayEquals(embedding, cache.getIfPresent("model-a", "Where is my order?"));
+        assertNull(cache.getIfPresent("model-a", "Where is my refund?"));
+    }
+
+    @Test
+    void testSpellingsThatNormalizeAlikeShareAnEntry() {
+        float[] embedding = {0.4f, 0.5f};
+        cache.put("model-a", "  Where IS my\torder? ", embedding);
+
+        assertArrayEquals(embedding, cache.getIfPresent("model-a", "where is my order?"));
+        assertArrayEquals(embedding, cache.getIfPresent("model-a", "WHERE  is MY order?"));
+    }
+
+    @Test
+    void testEntriesAreScopedToTheirModel() {
+        cache.put("model-a", "Where is my order?", new float[] {1.0f, 0.0f});
+
+        assertNull(cache.getIfPresent("model-b", "Where is my order?"));
+
+        // Switching models drops the previous model's entries
+        cache.put("model-b", "Where is my order?", new float[] {0.0f, 1.0f});
+        assertArrayEquals(new float[] {0.0f, 1.0f}, cache.getIfPresent("model-b", "Where is my order?"));
+        assertNull(cache.getIfPresent("model-a", "Where is my order?"));
+    }
+}
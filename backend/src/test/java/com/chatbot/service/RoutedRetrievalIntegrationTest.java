@@ -0,0 +1,146 @@
+package com.chatbot.service;
+
+import com.chatbot.model.KnowledgeBase;
+import com.chatbot.model.RetrievedDocument;
+import com.chatbot.repository.KnowledgeBaseRepository;
+import com.theokanning.openai.embedding.Embedding;
+import com.theokanning.openai.embedding.EmbeddingRequest;
+import com.theokanning.openai.embedding.EmbeddingResult;
+import com.theokanning.openai.service.OpenAiService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "rag.routing.min-similarity=0.7")
+@ActiveProfiles("test")
+class RoutedRetrievalIntegrationTest {
+
+    @Autowired
+    private RagService ragService;
+
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private IntentCategoryRouter intentCategoryRouter;
+
+    @Autowired
+    private KnowledgeBaseRepository knowledgeBaseRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private OpenAiService openAiService;
+
+    @BeforeEach
+    void setUp() {
+        saveDocument("order-status-overview", "Order Status Overview", "order-management", "[1.0, 0.0, 0.0]");
+        saveDocument("status-transitions", "Order Status Transitions", "order-management", "[0.8, 0.6, 0.0]");
+        saveDocument("fulfillment-workflow", "Fulfillment Workflow", "fulfillment", "[0.6, 0.0, 0.8]");
+        saveDocument("shipping-methods", "Shipping Methods", "shipping", "[0.0, 1.0, 0.0]");
+        saveDocument("track-order-api", "Track Order API", "api-documentation", "[0.0, 0.0, 1.0]");
+        vectorIndexService.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        knowledgeBaseRepository.deleteAll();
+        vectorIndexService.refresh(true);
+    }
+
+    @Test
+    void testIntentsMapToConfiguredCategories() {
+        assertEquals(List.of("order-management", "fulfillment"), intentCategoryRouter.categoriesFor("ORDER_STATUS_INQUIRY"));
+        assertEquals(List.of("shipping", "fulfillment"), intentCategoryRouter.categoriesFor("TRACKING_INFO"));
+        assertTrue(intentCategoryRouter.categoriesFor("GENERAL_INQUIRY").isEmpty());
+        assertTrue(intentCategoryRouter.categoriesFor("UNKNOWN").isEmpty());
+    }
+
+    @Test
+    void testScopedSearchOnlyReturnsRoutedCategories() {
+        // Closest to the API document, but it is outside the routed categories
+        mockQueryEmbedding(List.of(0.5, 0.0, 0.9));
+        double scoped = routingCount("scoped");
+        long searches = searchCount();
+
+        List<RetrievedDocument> documents = ragService.retrieveRoutedDocuments(
+            "What happens after I place an order?", List.of("order-management", "fulfillment"), 2);
+
+        assertEquals(List.of("Fulfillment Workflow", "Order Status Overview"),
+            documents.stream().map(RetrievedDocument::title).toList());
+        assertEquals(scoped + 1, routingCount("scoped"));
+        // Both categories are covered by a single search
+        assertEquals(searches + 1, searchCount());
+    }
+
+    @Test
+    void testWeakScopedMatchesFallBackToAllDocuments() {
+        mockQueryEmbedding(List.of(0.0, 0.0, 1.0));
+        double global = routingCount("global");
+
+        List<RetrievedDocument> documents = ragService.retrieveRoutedDocuments(
+            "Which endpoint returns tracking events?", List.of("shipping"), 2);
+
+        assertEquals("Track Order API", documents.get(0).title());
+        assertEquals(global + 1, routingCount("global"));
+    }
+
+    @Test
+    void testCategorySearchUsesPartialIndex() {
+        List<RetrievedDocument> documents = vectorIndexService.search(
+            RagService.VectorBackend.EXACT, new float[] {1.0f, 0.0f, 0.0f}, List.of("order-management"), 5);
+
+        assertEquals(List.of("Order Status Overview", "Order Status Transitions"),
+            documents.stream().map(RetrievedDocument::title).toList());
+        assertTrue(vectorIndexService.search(
+            RagService.VectorBackend.EXACT, new float[] {1.0f, 0.0f, 0.0f}, List.of("returns"), 5).isEmpty());
+    }
+
+    @Test
+    void testSearchAcrossCategoriesMergesPartitions() {
+        List<RetrievedDocument> documents = vectorIndexService.search(
+            RagService.VectorBackend.EXACT, new float[] {0.0f, 0.6f, 0.8f}, List.of("shipping", "fulfillment", "returns"), 5);
+
+        assertEquals(List.of("Fulfillment Workflow", "Shipping Methods"),
+            documents.stream().map(RetrievedDocument::title).toList());
+    }
+
+    private long searchCount() {
+        return meterRegistry.timer("rag.retrieval.latency", "backend", "exact").count();
+    }
+
+    private double routingCount(String outcome) {
+        return meterRegistry.counter("rag.retrieval.routing", "outcome", outcome).count();
+    }
+
+    private void mockQueryEmbedding(List<Double> vector) {
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            Embedding embedding = new Embedding();
+            embedding.setEmbedding(vector);
+            embedding.setIndex(0);
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(List.of(embedding));
+            return result;
+        });
+    }
+
+    private void saveDocument(String documentId, String title, String category, String embedding) {
+        KnowledgeBase document = new KnowledgeBase(documentId, title, title + " content.", category, "[]");
+        document.setEmbedding(embedding);
+        document.setEmbeddingModel("text-embedding-ada-002");
+        knowledgeBaseRepository.save(document);
+    }
+}
@@ -0,0 +1,144 @@
+package com.chatbot.service;
+
+import com.chatbot.dto.ChatResponse;
+import com.chatbot.llm.EmbeddingProvider;
+import com.chatbot.model.Customer;
+import com.chatbot.model.KnowledgeBase;
+import com.chatbot.repository.CustomerRepository;
+import com.chatbot.repository.KnowledgeBaseRepository;
+import com.theokanning.openai.completion.chat.ChatCompletionChoice;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatCompletionResult;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import com.theokanning.openai.embedding.Embedding;
+import com.theokanning.openai.embedding.EmbeddingRequest;
+import com.theokanning.openai.embedding.EmbeddingResult;
+import com.theokanning.openai.service.OpenAiService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "rag.hybrid.mode=LEXICAL_FIRST")
+@ActiveProfiles("test")
+class SemanticCacheLexicalFirstIntegrationTest {
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private RagService ragService;
+
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private SemanticResponseCache semanticResponseCache;
+
+    @Autowired
+    private KnowledgeBaseRepository knowledgeBaseRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @MockBean
+    private OpenAiService openAiService;
+
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        KnowledgeBase document = new KnowledgeBase("express-courier", "Express Courier",
+            "How long the express courier will take: the express courier takes 2-3 business days.", "shipping", "[\"express\"]");
+        document.setEmbedding("[0.6, 0.8, 0.0]");
+        document.setEmbeddingModel("text-embedding-ada-002");
+        knowledgeBaseRepository.save(document);
+        ragService.invalidateLexicalIndex();
+        vectorIndexService.rebuild();
+        semanticResponseCache.invalidateAll();
+        customer = new Customer();
+        customer.setEmail("guest@example.com");
+        customer.setFirstName("Test");
+        customer.setLastName("User");
+        customer.setPassword("$2a$10$encodedPassword");
+        customer.setEnabled(true);
+        customer = customerRepository.save(customer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.delete(customer);
+        knowledgeBaseRepository.deleteAll();
+        ragService.invalidateLexicalIndex();
+        vectorIndexService.refresh(true);
+        semanticResponseCache.invalidateAll();
+    }
+
+    @Test
+    void testConfidentLexicalRetrievalStillUsesSemanticCache() {
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            Embedding embedding = new Embedding();
+            embedding.setEmbedding(List.of(0.6, 0.8, 0.0));
+            embedding.setIndex(0);
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(List.of(embedding));
+            return result;
+        });
+        ChatMessage aiMessage = new ChatMessage();
+        aiMessage.setContent("The express courier takes 2-3 business days.");
+        ChatCompletionChoice choice = new ChatCompletionChoice();
+        choice.setMessage(aiMessage);
+        ChatCompletionResult completion = new ChatCompletionResult();
+        completion.setChoices(List.of(choice));
+        when(openAiService.createChatCompletion(any(ChatCompletionRequest.class))).thenReturn(completion);
+        double hybridBefore = meterRegistry.counter("rag.retrieval.lexical-first", "outcome", "hybrid").count();
+        double lexicalBefore = meterRegistry.counter("rag.retrieval.lexical-first", "outcome", "lexical").count();
+
+        ChatResponse first = chatService.processMessage("How long will the express courier take?", "guest@example.com");
+        ChatResponse second = chatService.processMessage("how long will the express courier take", "guest@example.com");
+
+        // Retrieval answered lexically both times, yet the second reply comes from the semantic cache
+        assertTrue(meterRegistry.counter("rag.retrieval.lexical-first", "outcome", "lexical").count() > lexicalBefore);
+        assertEquals(hybridBefore, meterRegistry.counter("rag.retrieval.lexical-first", "outcome", "hybrid").count());
+        assertEquals(first.getMessage(), second.getMessage());
+        verify(openAiService, times(1)).createChatCompletion(any(ChatCompletionRequest.class));
+    }
+
+    @Test
+    void testEmbeddingModelChangeClearsCachedReplies() {
+        float[] question = {0.6f, 0.8f, 0.0f};
+        semanticResponseCache.put(question, new ChatResponse("Express takes 2-3 business days.", "GENERAL_INQUIRY", 0.9));
+        assertNotNull(semanticResponseCache.lookup(question, "GENERAL_INQUIRY"));
+
+        EmbeddingProvider original = (EmbeddingProvider) ReflectionTestUtils.getField(semanticResponseCache, "embeddingProvider");
+        EmbeddingProvider otherModel = mock(EmbeddingProvider.class);
+        when(otherModel.getModel()).thenReturn("text-embedding-3-small");
+        ReflectionTestUtils.setField(semanticResponseCache, "embeddingProvider", otherModel);
+        try {
+            // The same vector from another model does not mean the same question
+            assertNull(semanticResponseCache.lookup(question, "GENERAL_INQUIRY"));
+        } finally {
+            ReflectionTestUtils.setField(semanticResponseCache, "embeddingProvider", original);
+        }
+    }
+}
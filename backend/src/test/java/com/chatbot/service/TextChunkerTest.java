@@ -0,0 +1,50 @@
+package com.chatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextChunkerTest {
+
+    // One token per word keeps the expected chunks easy to read
+    private static int words(String text) {
+        return text.isBlank() ? 0 : text.strip().split("\\s+").length;
+    }
+
+    @Test
+    void testPacksSentencesWithOverlap() {
+        TextChunker chunker = new TextChunker(TextChunkerTest::words, 8, 3);
+
+        List<String> chunks = chunker.chunk("One two three. Four five six. Seven eight nine. Ten eleven twelve.");
+
+        assertEquals(List.of(
+            "One two three. Four five six.",
+            "Four five six. Seven eight nine.",
+            "Seven eight nine. Ten eleven twelve."), chunks);
+    }
+
+    @Test
+    void testClosesChunksAtParagraphEnds() {
+        TextChunker chunker = new TextChunker(TextChunkerTest::words, 10, 0);
+
+        List<String> chunks = chunker.chunk("Shipping takes five days. Express takes two.\n\nReturns are free. Refunds take a week.");
+
+        assertEquals(List.of("Shipping takes five days. Express takes two.", "Returns are free. Refunds take a week."), chunks);
+    }
+
+    @Test
+    void testSplitsLongSentencesAndHandlesBlankText() {
+        TextChunker chunker = new TextChunker(TextChunkerTest::words, 4, 1);
+
+        List<String> chunks = chunker.chunk("a b c d e f g h i j");
+
+        assertTrue(chunks.stream().allMatch(chunk -> words(chunk) <= 4));
+        assertEquals("a b c d e f g h i j", String.join(" ", chunks.get(0), chunks.get(1), chunks.get(2)));
+        assertTrue(chunker.chunk("  ").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(TextChunkerTest::words, 4, 4));
+    }
+}
@@ -0,0 +1,97 @@
+package com.chatbot.service;
+
+import com.chatbot.model.KnowledgeBase;
+import com.chatbot.model.RetrievedDocument;
+import com.chatbot.repository.KnowledgeBaseRepository;
+import com.theokanning.openai.embedding.Embedding;
+import com.theokanning.openai.embedding.EmbeddingRequest;
+import com.theokanning.openai.embedding.EmbeddingResult;
+import com.theokanning.openai.service.OpenAiService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "rag.retrieval.backend=HNSW")
+@ActiveProfiles("test")
+class VectorIndexServiceIntegrationTest {
+
+    @Autowired
+    private RagService ragService;
+
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private KnowledgeBaseRepository knowledgeBaseRepository;
+
+    @MockBean
+    private OpenAiService openAiService;
+
+    @BeforeEach
+    void setUp() {
+        saveDocument("standard-shipping", "Standard Shipping", "shipping", "[1.0, 0.0, 0.0]", "text-embedding-ada-002");
+        saveDocument("express-shipping", "Express Shipping", "shipping", "[0.8, 0.6, 0.0]", "text-embedding-ada-002");
+        saveDocument("return-policy", "Return Policy", "returns", "[0.9, 0.0, 0.436]", "text-embedding-ada-002");
+        saveDocument("old-model", "Old Model", "shipping", "[1.0, 0.0, 0.0]", "older-model");
+        vectorIndexService.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        knowledgeBaseRepository.deleteAll();
+        vectorIndexService.refresh(true);
+    }
+
+    @Test
+    void testRetrievesFromInProcessIndexWithSimilarity() {
+        mockQueryEmbedding(List.of(1.0, 0.0, 0.0));
+
+        List<RetrievedDocument> documents = ragService.retrieveRelevantDocuments("How long does standard shipping take?", 3);
+
+        // Ordered by cosine similarity; the row embedded with another model is not indexed
+        assertEquals(List.of("Standard Shipping", "Return Policy", "Express Shipping"),
+            documents.stream().map(RetrievedDocument::title).toList());
+        assertEquals(1.0, documents.get(0).similarity(), 1e-6);
+        assertTrue(documents.get(1).similarity() > documents.get(2).similarity());
+    }
+
+    @Test
+    void testCategorySearchOnlyReturnsThatCategory() {
+        mockQueryEmbedding(List.of(0.9, 0.0, 0.5));
+
+        List<RetrievedDocument> documents = ragService.retrieveRelevantDocumentsByCategory(
+            "Can I send back a shipped item?", "shipping", 3);
+
+        assertEquals(List.of("Standard Shipping", "Express Shipping"),
+            documents.stream().map(RetrievedDocument::title).toList());
+    }
+
+    private void mockQueryEmbedding(List<Double> vector) {
+        when(openAiService.createEmbeddings(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            Embedding embedding = new Embedding();
+            embedding.setEmbedding(vector);
+            embedding.setIndex(0);
+            EmbeddingResult result = new EmbeddingResult();
+            result.setData(List.of(embedding));
+            return result;
+        });
+    }
+
+    private void saveDocument(String documentId, String title, String category, String embedding, String model) {
+        KnowledgeBase document = new KnowledgeBase(documentId, title, title + " details", category, "[]");
+        document.setEmbedding(embedding);
+        document.setEmbeddingModel(model);
+        knowledgeBaseRepository.save(document);
+    }
+}
@@ -0,0 +1,221 @@
+package com.chatbot.websocket;
+
+import com.chatbot.dto.ChatResponse;
+import com.chatbot.model.Customer;
+import com.chatbot.repository.CustomerRepository;
+import com.chatbot.service.ChatService;
+import com.chatbot.service.ChatStreamListener;
+import com.chatbot.service.JwtService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.theokanning.openai.service.OpenAiService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class ChatWebSocketIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ChatWebSocketHandler chatWebSocketHandler;
+
+    @MockBean
+    private ChatService chatService;
+
+    @MockBean
+    private OpenAiService openAiService;
+
+    private final StandardWebSocketClient client = new StandardWebSocketClient();
+
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        customer = new Customer();
+        customer.setEmail("socket@example.com");
+        customer.setFirstName("Socket");
+        customer.setLastName("User");
+        customer.setPassword("$2a$10$encodedPassword");
+        customer.setEnabled(true);
+        customer = customerRepository.save(customer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.delete(customer);
+    }
+
+    @Test
+    void testHandshakeRejectsMissingInvalidAndExpiredTokens() {
+        assertThrows(ExecutionException.class, () -> connect(new WebSocketHttpHeaders(), new FrameCollector()));
+        assertThrows(ExecutionException.class, () -> connect(protocolHeaders("not-a-jwt"), new FrameCollector()));
+
+        Object expiration = ReflectionTestUtils.getField(jwtService, "jwtExpiration");
+        String expired;
+        try {
+            ReflectionTestUtils.setField(jwtService, "jwtExpiration", -1000L);
+            expired = jwtService.generateToken(customer.getId(), customer.getEmail());
+        } finally {
+            ReflectionTestUtils.setField(jwtService, "jwtExpiration", expiration);
+        }
+        assertThrows(ExecutionException.class, () -> connect(protocolHeaders(expired), new FrameCollector()));
+    }
+
+    @Test
+    void testStreamsTokenFramesAndDoneFrame() throws Exception {
+        doAnswer(invocation -> {
+            ChatStreamListener listener = invocation.getArgument(2);
+            listener.onToken("Your order ");
+            listener.onToken("has shipped.");
+            listener.onComplete(new ChatResponse("Your order has shipped.", "ORDER_STATUS_INQUIRY", 0.9));
+            return null;
+        }).when(chatService).streamMessage(eq("Where is my order?"), eq("socket@example.com"), any());
+
+        FrameCollector frames = new FrameCollector();
+        WebSocketSession session = connect(protocolHeaders(validToken()), frames);
+        assertEquals("bearer", session.getAcceptedProtocol());
+        session.sendMessage(new TextMessage("{\"message\": \"Where is my order?\"}"));
+
+        assertEquals("Your order ", frames.next("token").get("content").asText());
+        assertEquals("has shipped.", frames.next("token").get("content").asText());
+        assertEquals("Your order has shipped.", frames.next("done").get("response").get("message").asText());
+
+        session.sendMessage(new TextMessage("{\"message\": \" \"}"));
+        assertEquals(400, frames.next("error").get("status").asInt());
+        session.close();
+    }
+
+    @Test
+    void testSecondMessageWhileReplyInFlightIsRejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            ChatStreamListener listener = invocation.getArgument(2);
+            listener.onComplete(new ChatResponse("Done.", "GENERAL_INQUIRY", 0.8));
+            return null;
+        }).when(chatService).streamMessage(anyString(), anyString(), any());
+
+        FrameCollector frames = new FrameCollector();
+        WebSocketSession session = connect(authorizationHeaders(validToken()), frames);
+        session.sendMessage(new TextMessage("{\"message\": \"First question\"}"));
+        session.sendMessage(new TextMessage("{\"message\": \"Second question\"}"));
+
+        assertEquals(409, frames.next("error").get("status").asInt());
+        release.countDown();
+        assertEquals("Done.", frames.next("done").get("response").get("message").asText());
+        session.close();
+    }
+
+    @Test
+    void testConnectionIsClosedWhenTokenExpires() throws Exception {
+        Object expiration = ReflectionTestUtils.getField(jwtService, "jwtExpiration");
+        String shortLived;
+        try {
+            ReflectionTestUtils.setField(jwtService, "jwtExpiration", 1500L);
+            shortLived = jwtService.generateToken(customer.getId(), customer.getEmail());
+        } finally {
+            ReflectionTestUtils.setField(jwtService, "jwtExpiration", expiration);
+        }
+
+        FrameCollector frames = new FrameCollector();
+        connect(protocolHeaders(shortLived), frames);
+
+        assertEquals(CloseStatus.POLICY_VIOLATION.getCode(), frames.closed.get(10, TimeUnit.SECONDS).getCode());
+    }
+
+    @Test
+    void testDisabledAccountIsRejectedAtHandshakeAndRevokedConnectionsAreClosed() throws Exception {
+        FrameCollector frames = new FrameCollector();
+        connect(protocolHeaders(validToken()), frames);
+        customer.setEnabled(false);
+        customer = customerRepository.save(customer);
+
+        assertThrows(ExecutionException.class, () -> connect(protocolHeaders(validToken()), new FrameCollector()));
+        assertTrue(chatWebSocketHandler.closeConnections(customer.getEmail(), "Account disabled") >= 1);
+        assertEquals(CloseStatus.POLICY_VIOLATION.getCode(), frames.closed.get(5, TimeUnit.SECONDS).getCode());
+    }
+
+    private String validToken() {
+        return jwtService.generateToken(customer.getId(), customer.getEmail());
+    }
+
+    private WebSocketSession connect(WebSocketHttpHeaders headers, FrameCollector frames) throws Exception {
+        return client.execute(frames, headers, URI.create("ws://localhost:" + port + "/ws/chat")).get(5, TimeUnit.SECONDS);
+    }
+
+    private static WebSocketHttpHeaders protocolHeaders(String token) {
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.setSecWebSocketProtocol(List.of("bearer", token));
+        return headers;
+    }
+
+    private static WebSocketHttpHeaders authorizationHeaders(String token) {
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.add("Authorization", "Bearer " + token);
+        return headers;
+    }
+
+    private class FrameCollector extends TextWebSocketHandler {
+
+        private final BlockingQueue<JsonNode> received = new LinkedBlockingQueue<>();
+        private final CompletableFuture<CloseStatus> closed = new CompletableFuture<>();
+
+        @Override
+        protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+            received.add(objectMapper.readTree(message.getPayload()));
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+            closed.complete(status);
+        }
+
+        JsonNode next(String type) throws InterruptedException {
+            JsonNode frame = received.poll(5, TimeUnit.SECONDS);
+            assertEquals(type, frame == null ? null : frame.get("type").asText());
+            return frame;
+        }
+    }
+}
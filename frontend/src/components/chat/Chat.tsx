@@ -67,12 +67,28 @@ const Chat: React.FC = () => {
     setIsLoading(true);
     setError('');
 
+    const botMessageId = (Date.now() + 1).toString();
+    let streamStarted = false;
+
     try {
-      // Call backend chat API
-      const response = await chatService.sendMessage(inputText);
-      
+      // Call backend streaming chat API and show the reply as it is generated
+      const response = await chatService.streamMessage(inputText, (token) => {
+        if (!streamStarted) {
+          streamStarted = true;
+          setIsLoading(false);
+          setMessages(prev => [...prev, {
+            id: botMessageId,
+            text: token,
+            sender: 'bot',
+            timestamp: new Date()
+          }]);
+        } else {
+          setMessages(prev => prev.map(m => m.id === botMessageId ? { ...m, text: m.text + token } : m));
+        }
+      });
+
       const botMessage: Message = {
-        id: (Date.now() + 1).toString(),
+        id: botMessageId,
         text: response.message,
         sender: 'bot',
         timestamp: new Date(response.timestamp),
@@ -80,7 +96,9 @@ const Chat: React.FC = () => {
         confidence: response.confidence
       };
 
-      setMessages(prev => [...prev, botMessage]);
+      setMessages(prev => streamStarted
+        ? prev.map(m => m.id === botMessageId ? botMessage : m)
+        : [...prev, botMessage]);
     } catch (error: any) {
       console.error('Error sending message:', error);
       setError(error.message || 'Failed to send message. Please try again.');
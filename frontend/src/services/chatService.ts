@@ -62,6 +62,81 @@ class ChatService {
     }
   }
 
+  /**
+   * Send a message to the streaming chat API and receive the reply incrementally
+   * @param message User message to send
+   * @param onToken Called with each fragment of the reply as it arrives
+   * @returns Final ChatResponse with the complete reply, intent and confidence
+   */
+  async streamMessage(message: string, onToken: (token: string) => void): Promise<ChatResponse> {
+    const token = authService.getToken();
+    if (!token) {
+      throw new Error('Authentication required');
+    }
+
+    const response = await fetch(`${environment.getApiUrl()}/api/chat/stream`, {
+      method: 'POST',
+      headers: {
+        'Content-Type': 'application/json',
+        'Accept': 'text/event-stream',
+        'Authorization': `Bearer ${token}`
+      },
+      body: JSON.stringify({ message })
+    });
+
+    if (response.status === 401) {
+      throw new Error('Authentication failed. Please log in again.');
+    } else if (response.status === 429) {
+      throw new Error('Rate limit exceeded. Please wait a moment before sending another message.');
+    } else if (!response.ok || !response.body) {
+      throw new Error('Failed to send message. Please try again.');
+    }
+
+    const reader = response.body.getReader();
+    const decoder = new TextDecoder();
+    let buffer = '';
+    let finalResponse: ChatResponse | null = null;
+
+    while (true) {
+      const { done, value } = await reader.read();
+      if (done) break;
+      buffer += decoder.decode(value, { stream: true });
+
+      // Events are separated by a blank line
+      let boundary = buffer.indexOf('\n\n');
+      while (boundary !== -1) {
+        const rawEvent = buffer.slice(0, boundary);
+        buffer = buffer.slice(boundary + 2);
+        boundary = buffer.indexOf('\n\n');
+
+        let eventName = 'message';
+        let data = '';
+        for (const line of rawEvent.split('\n')) {
+          if (line.startsWith('event:')) {
+            eventName = line.slice(6).trim();
+          } else if (line.startsWith('data:')) {
+            data += line.slice(5);
+          }
+        }
+        if (!data) continue;
+
+        const payload = JSON.parse(data);
+        if (eventName === 'token') {
+          onToken(payload.content);
+        } else if (eventName === 'done') {
+          finalResponse = payload as ChatResponse;
+        } else if (eventName === 'error') {
+          throw new Error((payload as ChatError).error);
+        }
+      }
+    }
+
+    if (!finalResponse) {
+      throw new Error('Failed to send message. Please try again.');
+    }
+    return finalResponse;
+  }
+
   /**
    * Check if chat service is healthy
    * @returns Promise<boolean>